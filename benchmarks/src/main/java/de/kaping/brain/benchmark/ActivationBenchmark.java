@@ -0,0 +1,77 @@
+package de.kaping.brain.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.kaping.brain.model.ActivationFunction;
+
+/**
+ * Vergleicht die Geschwindigkeit aller {@link ActivationFunction}s. Je
+ * Aufruf werden {@value #SAMPLES} Werte berechnet, gleichmäßig über
+ * [-RANGE, RANGE] verteilt, was den üblichen Summen innerhalb der Netzwerke
+ * entspricht. Vor der Messung wird geprüft, dass jede Sigmoid-Variante
+ * höchstens {@link ActivationFunction#getMaxError()} von der ursprünglichen
+ * Berechnung ({@link ActivationFunction#LEGACY_SIGMOID}) abweicht.
+ * <p>
+ * Aufruf: <code>java -jar target/benchmarks.jar ActivationBenchmark</code>
+ *
+ * @author MPreloaded
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ActivationBenchmark {
+
+	private static final int SAMPLES = 4096;
+	private static final double RANGE = 8.;
+
+	@Param
+	public ActivationFunction function;
+
+	private double[] inputs;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		inputs = new double[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++)
+			inputs[i] = -RANGE + 2 * RANGE * i / (SAMPLES - 1);
+
+		double maxError = function.getMaxError();
+		if (Double.isNaN(maxError))
+			return;
+
+		for (int i = 0; i < SAMPLES; i++) {
+			double error = Math.abs(function.apply(inputs[i])
+				- ActivationFunction.LEGACY_SIGMOID.apply(inputs[i]));
+
+			if (error > maxError)
+				throw new IllegalStateException(function + " deviates by "
+					+ error + " at " + inputs[i] + ", allowed " + maxError);
+		}
+	}
+
+	@Benchmark
+	public double apply() {
+		double sum = 0.;
+
+		for (int i = 0; i < SAMPLES; i++)
+			sum += function.apply(inputs[i]);
+
+		return sum;
+	}
+}
@@ -0,0 +1,70 @@
+package de.kaping.brain.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.kaping.brain.model.Pool;
+import de.kaping.brain.model.PopulationArena;
+
+/**
+ * Benchmark des Speicherbedarfs einer Generation im eingeschwungenen Zustand,
+ * mit und ohne {@link PopulationArena}. Aussagekräftig ist vor allem
+ * <code>gc.alloc.rate.norm</code> (Bytes pro Generation), daher immer mit
+ * <code>-prof gc</code> ausführen. Vor jeder Iteration wird die Population
+ * neu initialisiert und einige Generationen lang eingeschwungen, damit die
+ * Puffer ihre endgültige Größe erreicht haben.
+ *
+ * @author MPreloaded
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+	private static final int SETTLE = 20;
+
+	@Param({ "100", "1000" })
+	public int population;
+
+	@Param({ "true", "false" })
+	public boolean arena;
+
+	private Pool pool;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		pool = Pool.getInstance();
+		pool.setParallelism(1);
+		pool.setArena(arena ? new PopulationArena() : null);
+		Fixtures.pool(1L, population);
+
+		for (int i = 0; i < SETTLE; i++) {
+			pool.evaluateGenomes();
+			pool.newGeneration();
+		}
+		pool.evaluateGenomes();
+	}
+
+	@Benchmark
+	public Pool newGeneration() {
+		pool.newGeneration();
+		pool.evaluateGenomes();
+
+		return pool;
+	}
+}
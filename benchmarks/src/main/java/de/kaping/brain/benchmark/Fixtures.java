@@ -0,0 +1,166 @@
+package de.kaping.brain.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import de.kaping.brain.model.Gene;
+import de.kaping.brain.model.GeneTable;
+import de.kaping.brain.model.Genome;
+import de.kaping.brain.model.Neuron;
+import de.kaping.brain.model.Pool;
+import de.kaping.brain.model.Type;
+import de.kaping.usage.xor.Function;
+
+/**
+ * Erzeugt reproduzierbare Netzwerke und Populationen für die Benchmarks. Alle
+ * Netzwerke verwenden die notwendigen Neuronen des Pools, der dafür mit der
+ * XOR-Funktion initialisiert wird.
+ *
+ * @author MPreloaded
+ */
+final class Fixtures {
+
+	static final int INPUTS = 2;
+	static final int OUTPUTS = 1;
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Setzt den Pool zurück und initialisiert eine neue Population.
+	 *
+	 * @param seed
+	 *           Startwert der Zufallsquelle
+	 * @param population
+	 *           Größe der Population
+	 * @return initialisierter Pool
+	 */
+	static Pool pool(long seed, int population) {
+		Pool pool = Pool.getInstance();
+
+		pool.getSpecies().clear();
+		pool.setSeed(seed);
+		pool.setPopulation(population);
+		pool.initializePool(INPUTS, OUTPUTS, Function.getInstance());
+
+		return pool;
+	}
+
+	/**
+	 * Erzeugt ein vorwärtsgerichtetes Netzwerk mit genau <code>genes</code>
+	 * Verbindungen und etwa <code>genes / 4</code> versteckten Neuronen. Der
+	 * Pool muss bereits initialisiert sein.
+	 *
+	 * @param genes
+	 *           Anzahl Verbindungen
+	 * @param random
+	 *           Zufallsquelle
+	 * @return neues Netzwerk
+	 */
+	static Genome network(int genes, SplittableRandom random) {
+		Pool pool = Pool.getInstance();
+		List<Neuron> essential = pool.getEssentialNeurons();
+		int sources = INPUTS + 1;
+		int hidden = Math.max(2, genes / 4);
+
+		/* Reihenfolge: Input und Bias, versteckte Neuronen, Output */
+		Neuron[] nodes = new Neuron[sources + hidden + OUTPUTS];
+		for (int i = 0; i < sources; i++)
+			nodes[i] = essential.get(i);
+		for (int i = 0; i < hidden; i++)
+			nodes[sources + i] = new Neuron(Type.HIDDEN, pool.newInnovation());
+		for (int i = 0; i < OUTPUTS; i++)
+			nodes[sources + hidden + i] = essential.get(sources + i);
+
+		List<Neuron> neurons = new ArrayList<Neuron>();
+		for (Neuron n : nodes)
+			neurons.add(n);
+
+		Genome genome = new Genome(neurons, false, 0);
+		Set<Long> used = new HashSet<Long>();
+
+		while (genome.getGeneTable().size() < genes) {
+			int a = random.nextInt(nodes.length);
+			int b = random.nextInt(nodes.length);
+			int from = Math.min(a, b);
+			int to = Math.max(a, b);
+
+			/* keine Verbindung in Input/Bias und keine aus einem Output */
+			if (from == to || to < sources
+				|| from >= sources + hidden)
+				continue;
+			if (!used.add(((long) from << 32) | to))
+				continue;
+
+			genome.addGene(gene(nodes[from], nodes[to], random));
+		}
+
+		genome.setFitness(random.nextDouble());
+		return genome;
+	}
+
+	/**
+	 * Erzeugt einen Verwandten eines Netzwerkes: gleiche Verbindungen mit
+	 * leicht veränderten Gewichtungen und <code>extra</code> zusätzlichen
+	 * Verbindungen zwischen bestehenden Neuronen.
+	 *
+	 * @param genome
+	 *           Ausgangsnetzwerk
+	 * @param extra
+	 *           Anzahl zusätzlicher Verbindungen
+	 * @param random
+	 *           Zufallsquelle
+	 * @return neues Netzwerk
+	 */
+	static Genome relative(Genome genome, int extra, SplittableRandom random) {
+		Genome relative = genome.copyGenome();
+		List<Neuron> neurons = relative.getNeurons();
+		GeneTable table = relative.getGeneTable();
+
+		for (int i = 0; i < table.size(); i++)
+			relative.setWeight(i,
+				table.getWeight(i) + random.nextDouble() * 0.2 - 0.1);
+
+		int target = table.size() + extra;
+		int attempts = 0;
+
+		while (table.size() < target && attempts++ < extra * 100) {
+			Neuron a = neurons.get(random.nextInt(neurons.size()));
+			Neuron b = neurons.get(random.nextInt(neurons.size()));
+
+			/* nur in Richtung der topologischen Sortierung, ohne Zyklus */
+			if (relative.getOrder().getPosition(a) > relative.getOrder()
+				.getPosition(b)) {
+				Neuron t = a;
+				a = b;
+				b = t;
+			}
+			if (a == b || b.getType() == Type.INPUT || b.getType() == Type.BIAS
+				|| a.getType() == Type.OUTPUT || contains(relative, a, b))
+				continue;
+
+			relative.addGene(gene(a, b, random));
+		}
+
+		relative.setFitness(random.nextDouble());
+		return relative;
+	}
+
+	private static Gene gene(Neuron origin, Neuron into,
+			SplittableRandom random) {
+		Gene gene = new Gene(origin, into, random.nextDouble() * 4 - 2);
+		Pool.getInstance().defineHistoricalMarking(gene);
+
+		return gene;
+	}
+
+	private static boolean contains(Genome genome, Neuron origin, Neuron into) {
+		List<Neuron> neurons = genome.getNeurons();
+
+		return genome.getGeneTable().indexOf(neurons.indexOf(origin),
+			neurons.indexOf(into)) >= 0;
+	}
+}
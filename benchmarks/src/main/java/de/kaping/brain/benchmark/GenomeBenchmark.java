@@ -0,0 +1,159 @@
+package de.kaping.brain.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.kaping.brain.model.CompiledNetwork;
+import de.kaping.brain.model.Gene;
+import de.kaping.brain.model.GeneTable;
+import de.kaping.brain.model.Genome;
+import de.kaping.brain.model.NetworkState;
+import de.kaping.brain.model.Neuron;
+import de.kaping.brain.model.Pool;
+
+/**
+ * Benchmarks der Operationen auf einzelnen Netzwerken in Abhängigkeit von der
+ * Anzahl Verbindungen. <code>parent2</code> ist ein Verwandter von
+ * <code>parent1</code> mit etwa 10% zusätzlichen Verbindungen.
+ * <p>
+ * Aufruf: <code>java -jar target/benchmarks.jar GenomeBenchmark -prof gc</code>
+ *
+ * @author MPreloaded
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GenomeBenchmark {
+
+	private static final int PAIRS = 1024;
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int genes;
+
+	private SplittableRandom random;
+	private Genome parent1;
+	private Genome parent2;
+	private NetworkState state;
+
+	/* Verbindungen in Gegenrichtung bestehender Verbindungen (Zyklus) */
+	private Gene[] cycles;
+
+	/* zufällige Paare von Neuronen für die Zykluserkennung */
+	private Neuron[] origins;
+	private Neuron[] targets;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Fixtures.pool(1L, 100);
+		random = new SplittableRandom(42L);
+		parent1 = Fixtures.network(genes, random);
+		parent2 = Fixtures.relative(parent1, genes / 10 + 1, random);
+		state = new NetworkState(Fixtures.INPUTS, Fixtures.OUTPUTS);
+
+		List<Gene> g = parent1.getGenes();
+		List<Neuron> n = parent1.getNeurons();
+		cycles = new Gene[PAIRS];
+		origins = new Neuron[PAIRS];
+		targets = new Neuron[PAIRS];
+
+		for (int i = 0; i < PAIRS; i++) {
+			Gene gene = g.get(random.nextInt(g.size()));
+			cycles[i] = new Gene(gene.getInto(), gene.getOrigin(), 1.);
+			origins[i] = n.get(random.nextInt(n.size()));
+			targets[i] = n.get(random.nextInt(n.size()));
+		}
+
+		/* Phänotyp einmalig erzeugen */
+		parent1.getNetwork();
+	}
+
+	@Setup(Level.Iteration)
+	public void forgetInnovations() {
+		Pool pool = Pool.getInstance();
+		pool.getInnovationRegistry().newGeneration(pool.getGeneration());
+	}
+
+	@Benchmark
+	public void simulateGenome() {
+		parent1.simulateGenome();
+	}
+
+	@Benchmark
+	public double simulateState() {
+		state.setInput(0, 1.);
+		state.setInput(1, 0.);
+		state.simulate(parent1);
+
+		return state.getOutput(0);
+	}
+
+	@Benchmark
+	public CompiledNetwork compile() {
+		return CompiledNetwork.compile(parent1);
+	}
+
+	@Benchmark
+	public Genome matchGenomes() {
+		return parent1.matchGenomes(parent2, random);
+	}
+
+	@Benchmark
+	public double deltaStructure() {
+		return parent1.deltaStructure(parent2);
+	}
+
+	@Benchmark
+	public double deltaWeight() {
+		return parent1.deltaWeight(parent2);
+	}
+
+	@Benchmark
+	public GeneTable copyGeneTable() {
+		return parent1.getGeneTable().copy();
+	}
+
+	@Benchmark
+	public Genome copyGenome() {
+		return parent1.copyGenome();
+	}
+
+	/* enthält copyGenome, siehe dort */
+	@Benchmark
+	public Genome mutateGenome() {
+		Genome child = parent1.copyGenome();
+		child.mutateGenome(random);
+
+		return child;
+	}
+
+	/* Zyklus wird erkannt, das Netzwerk bleibt unverändert */
+	@Benchmark
+	public boolean addGeneRejectsCycle() {
+		return parent1.addGene(cycles[next++ & (PAIRS - 1)]);
+	}
+
+	@Benchmark
+	public boolean wouldCreateCycle() {
+		int i = next++ & (PAIRS - 1);
+
+		return parent1.getOrder().wouldCreateCycle(origins[i], targets[i]);
+	}
+}
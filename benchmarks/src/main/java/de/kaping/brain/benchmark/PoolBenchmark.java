@@ -0,0 +1,58 @@
+package de.kaping.brain.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.kaping.brain.model.Pool;
+
+/**
+ * Benchmark einer vollständigen Generation (Erzeugung und Bewertung) in
+ * Abhängigkeit von der Größe der Population und der Anzahl Threads. Die
+ * Population wird vor jeder Iteration neu initialisiert, damit alle
+ * Iterationen bei ähnlich großen Netzwerken beginnen.
+ *
+ * @author MPreloaded
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PoolBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int population;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private Pool pool;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		pool = Pool.getInstance();
+		pool.setParallelism(threads);
+		Fixtures.pool(1L, population);
+	}
+
+	@Benchmark
+	public Pool newGeneration() {
+		pool.newGeneration();
+		pool.evaluateGenomes();
+
+		return pool;
+	}
+}
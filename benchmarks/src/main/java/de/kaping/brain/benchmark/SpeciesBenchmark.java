@@ -0,0 +1,70 @@
+package de.kaping.brain.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.kaping.brain.model.Genome;
+import de.kaping.brain.model.Species;
+
+/**
+ * Benchmark der Einteilung in Spezies. Die Kandidaten sind abwechselnd
+ * Verwandte der Spezies und fremde Netzwerke gleicher Größe.
+ *
+ * @author MPreloaded
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpeciesBenchmark {
+
+	private static final int CANDIDATES = 64;
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int genes;
+
+	@Param({ "10", "100" })
+	public int genomes;
+
+	private Species species;
+	private Genome[] candidates;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Fixtures.pool(1L, 100);
+		SplittableRandom random = new SplittableRandom(42L);
+		Genome base = Fixtures.network(genes, random);
+
+		species = new Species();
+		species.addGenome(base);
+		for (int i = 1; i < genomes; i++)
+			species.addGenome(Fixtures.relative(base, genes / 20 + 1, random));
+
+		candidates = new Genome[CANDIDATES];
+		for (int i = 0; i < CANDIDATES; i++)
+			candidates[i] = (i % 2 == 0)
+				? Fixtures.relative(base, genes / 10 + 1, random)
+				: Fixtures.network(genes, random);
+	}
+
+	@Benchmark
+	public boolean isSameSpecies() {
+		return species.isSameSpecies(candidates[next++ & (CANDIDATES - 1)]);
+	}
+}
@@ -0,0 +1,221 @@
+package de.kaping.brain;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import de.kaping.brain.model.CheckpointJournal;
+import de.kaping.brain.model.Evolution;
+import de.kaping.brain.model.FitnessFunction;
+import de.kaping.brain.model.LineageStore;
+import de.kaping.brain.model.Pool;
+
+/**
+ * Führt die Evolution ohne Oberfläche über die Kommandozeile aus. Es wird
+ * weder das JavaFX-Toolkit gestartet noch ein Fenster geöffnet, so dass der
+ * Lauf auch auf Servern ohne Anzeige möglich ist.
+ * <p>
+ * Aufruf: <code>BatchRunner [Optionen]</code>
+ * <ul>
+ * <li><code>--generations N</code> Anzahl Generationen (Standard 100), bzw.
+ * Obergrenze bei <code>--target</code></li>
+ * <li><code>--target F</code> bis zum Erreichen der Bewertung F laufen</li>
+ * <li><code>--seed S</code> Startwert der Zufallsquelle</li>
+ * <li><code>--threads T</code> Anzahl Threads (Standard 1)</li>
+ * <li><code>--population P</code> Größe der Population</li>
+ * <li><code>--report K</code> Ausgabe alle K Generationen (Standard 10, 0 =
+ * nur Ergebnis)</li>
+ * <li><code>--function KLASSE</code> Bewertungsfunktion mit statischer
+ * <code>getInstance()</code>-Methode oder Standardkonstruktor (Standard
+ * XOR)</li>
+ * <li><code>--inputs I</code>, <code>--outputs O</code> Anzahl Input- und
+ * Outputneuronen (Standard 2 und 1)</li>
+ * <li><code>--checkpoint DATEI</code> Zustand am Ende in DATEI sichern</li>
+ * <li><code>--checkpoint-every K</code> zusätzlich alle K Generationen
+ * sichern (Standard 0 = nur am Ende)</li>
+ * <li><code>--checkpoint-full K</code> zwischen vollständigen Checkpoints nur
+ * die Änderungen in ein Journal schreiben, höchstens K hintereinander</li>
+ * <li><code>--resume DATEI</code> Lauf aus einem Checkpoint fortsetzen,
+ * Startwert, Größe der Netzwerke und Generation stammen dann aus DATEI</li>
+ * <li><code>--lineage DATEI</code> Stammbaum aller Netzwerke in DATEI
+ * schreiben bzw. an DATEI anhängen</li>
+ * </ul>
+ *
+ * @author MPreloaded
+ */
+public class BatchRunner {
+
+	private static final String DEFAULT_FUNCTION = "de.kaping.usage.xor.Function";
+
+	public static void main(String[] args) throws Exception {
+		int generations = 100;
+		double target = Double.NaN;
+		Long seed = null;
+		int threads = 1;
+		int population = 0;
+		int report = 10;
+		String function = DEFAULT_FUNCTION;
+		int inputs = 2;
+		int outputs = 1;
+		Path checkpoint = null;
+		int checkpointEvery = 0;
+		int checkpointFull = 0;
+		Path resume = null;
+		Path lineage = null;
+
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+
+			if (i + 1 >= args.length)
+				usage("Missing value for " + option);
+			String value = args[++i];
+
+			switch (option) {
+			case "--generations":
+				generations = Integer.parseInt(value);
+				break;
+			case "--target":
+				target = Double.parseDouble(value);
+				break;
+			case "--seed":
+				seed = Long.parseLong(value);
+				break;
+			case "--threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "--population":
+				population = Integer.parseInt(value);
+				break;
+			case "--report":
+				report = Integer.parseInt(value);
+				break;
+			case "--function":
+				function = value;
+				break;
+			case "--inputs":
+				inputs = Integer.parseInt(value);
+				break;
+			case "--outputs":
+				outputs = Integer.parseInt(value);
+				break;
+			case "--checkpoint":
+				checkpoint = Paths.get(value);
+				break;
+			case "--checkpoint-every":
+				checkpointEvery = Integer.parseInt(value);
+				break;
+			case "--checkpoint-full":
+				checkpointFull = Integer.parseInt(value);
+				break;
+			case "--resume":
+				resume = Paths.get(value);
+				break;
+			case "--lineage":
+				lineage = Paths.get(value);
+				break;
+			default:
+				usage("Unknown option " + option);
+			}
+		}
+
+		Pool pool = Pool.getInstance();
+		pool.setParallelism(threads);
+
+		Evolution evolution;
+		if (resume != null) {
+			evolution = Evolution.resume(resume, loadFunction(function));
+			if (population > 0)
+				pool.setPopulation(population);
+		} else {
+			if (seed != null)
+				pool.setSeed(seed);
+			if (population > 0)
+				pool.setPopulation(population);
+			evolution = Evolution.start(inputs, outputs, loadFunction(function));
+		}
+
+		LineageStore store = (lineage != null) ? LineageStore.open(lineage)
+			: null;
+		evolution.setLineageStore(store);
+
+		CheckpointJournal journal = (checkpoint != null && checkpointFull > 0)
+			? new CheckpointJournal(checkpoint, checkpointFull) : null;
+
+		if (checkpoint != null && checkpointEvery > 0) {
+			final Path file = checkpoint;
+			final int every = checkpointEvery;
+			evolution.addListener(e -> {
+				if (e.getGenerations() % every != 0)
+					return;
+				if (journal != null)
+					e.getPool().checkpoint(journal);
+				else
+					e.getPool().checkpoint(file);
+			});
+		}
+
+		if (report > 0) {
+			final int every = report;
+			evolution.addListener(e -> {
+				if (e.getGenerations() % every == 0)
+					System.out.printf("gen %6d  best %12.4f  species %4d  %8.2f gen/s%n",
+						e.getPool().getGeneration(), e.getBestFitness(),
+						e.getPool().getSpecies().size(),
+						e.getGenerationsPerSecond());
+			});
+		}
+
+		boolean reached = true;
+		if (Double.isNaN(target))
+			evolution.run(generations);
+		else
+			reached = evolution.runUntil(target, generations);
+
+		System.out.printf("generations %d  time %.3f s  %.2f gen/s%n",
+			evolution.getGenerations(), evolution.getElapsedNanos() / 1e9,
+			evolution.getGenerationsPerSecond());
+		System.out.printf("best fitness %.4f  genes %d  species %d%n",
+			evolution.getBestFitness(),
+			evolution.getBestGenome().getGenes().size(),
+			pool.getSpecies().size());
+		if (!Double.isNaN(target))
+			System.out.println(reached ? "target reached" : "target missed");
+
+		if (store != null) {
+			System.out.printf("lineage %d records, best has %d ancestors%n",
+				store.size(), store.forEachAncestor(
+					evolution.getBestGenome().getLineage(), -1, r -> true));
+			store.close();
+		}
+
+		if (journal != null)
+			pool.checkpoint(journal).join();
+		else if (checkpoint != null)
+			pool.checkpoint(checkpoint).join();
+
+		pool.setParallelism(1);
+		System.exit(reached ? 0 : 1);
+	}
+
+	/* Lädt die Bewertungsfunktion über getInstance() oder den Konstruktor */
+	private static FitnessFunction loadFunction(String name) throws Exception {
+		Class<?> type = Class.forName(name);
+
+		try {
+			Method getInstance = type.getMethod("getInstance");
+			return (FitnessFunction) getInstance.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return (FitnessFunction) type.getDeclaredConstructor().newInstance();
+		}
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: BatchRunner [--generations N] [--target F]"
+			+ " [--seed S] [--threads T] [--population P] [--report K]"
+			+ " [--function CLASS] [--inputs I] [--outputs O]"
+			+ " [--checkpoint FILE] [--checkpoint-every K]"
+			+ " [--checkpoint-full K] [--resume FILE] [--lineage FILE]");
+		System.exit(2);
+	}
+}
@@ -5,15 +5,15 @@ import java.io.IOException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import de.kaping.brain.model.Neuron;
+import de.kaping.brain.model.Evolution;
+import de.kaping.brain.model.GenerationStats;
+import de.kaping.brain.model.GenomeHistory;
 import de.kaping.brain.model.Pool;
 import de.kaping.brain.model.Species;
-import de.kaping.brain.model.SpeciesHistory;
 import de.kaping.brain.view.BrainOverviewController;
+import de.kaping.brain.view.PoolAdapter;
 import de.kaping.usage.xor.Function;
 import javafx.application.Application;
-import javafx.beans.property.IntegerProperty;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
@@ -24,10 +24,10 @@ public class MainApp extends Application {
 	private static final Logger log = LogManager.getLogger();
 	private Stage primaryStage;
 	private BorderPane rootLayout;
-	private ObservableList<Neuron> neurons;
+	private Evolution evolution;
+	private PoolAdapter adapter;
 
 	public Pool myPool = Pool.getInstance();
-	public SpeciesHistory myHistory = SpeciesHistory.INSTANCE; 
 
 	@Override
 	public void start(Stage primaryStage) {
@@ -40,7 +40,9 @@ public class MainApp extends Application {
 	}
 
 	public MainApp() {
-		this.neurons = myPool.initializePool(2, 1, Function.getInstance());
+		this.evolution = Evolution.start(2, 1, Function.getInstance());
+		this.evolution.setGenomeHistory(new GenomeHistory());
+		this.adapter = new PoolAdapter(myPool);
 		log.debug(
 			"Pool initialized with " + myPool.getSpecies().size() + " species");
 
@@ -48,37 +50,46 @@ public class MainApp extends Application {
 	}
 
 	/**
-	 * Speicher die History für Alle Genome
+	 * Führt eine Generation der Evolution aus, nachdem der entsprechende
+	 * Button geklickt wurde (wird vom PoolOverviewController aufgerufen).
+	 * Die History wird dabei von der Evolution gespeichert, danach wird die
+	 * Anzeige aktualisiert.
 	 */
-	public void saveHistory(){
+	public void execNewGeneration() {
+		evolution.step();
 		for (Species s : myPool.getSpecies()) {
-			myHistory.addEntry(s);
+			log.debug("NewGen Count for " + s.getID() + ": " + s.getGenomeCount());
 		}
+
+		adapter.refresh();
+		myPool.printBestGenome();
 	}
-	
-	
+
 	/**
-	 * Ruft newGeneration auf, nachdem der entsprechende Button geklickt wurde
-	 * (wird vom PoolOverviewController aufgerufen). Nach Abschluss werden alle
-	 * Netzwerke bewertet.
-	 * Speichert ausserdem die History der Genomes
+	 * Gibt die beobachtbare Sicht der Oberfläche auf den Pool zurück.
+	 * 
+	 * @return Sicht auf den Pool
 	 */
-	public void execNewGeneration() {
-		// History speichern, bevor newGeneration aufgerufen wird
-		saveHistory();
-		
-		myPool.newGeneration();
-		myPool.evaluateGenomes(neurons);
-		for (Species s : myPool.getSpecies()) {
-			IntegerProperty i = s.countGenomesProperty();
-			log.debug("NewGen Count for " + s.getID() + ": " + i.get());
-		}
+	public PoolAdapter getPoolAdapter() {
+		return adapter;
+	}
 
-		myPool.printBestGenome();
+	/**
+	 * Gibt die History aller Generationen zurück.
+	 * 
+	 * @return History der Evolution
+	 */
+	public GenerationStats getStatistics() {
+		return evolution.getStatistics();
 	}
 
-	public ObservableList<Species> getPoolSpecies() {
-		return myPool.getSpecies();
+	/**
+	 * Gibt die History der einzelnen Genomes zurück.
+	 * 
+	 * @return History der Genomes
+	 */
+	public GenomeHistory getGenomeHistory() {
+		return evolution.getGenomeHistory();
 	}
 
 	/**
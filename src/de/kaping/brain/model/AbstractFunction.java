@@ -9,8 +9,37 @@ package de.kaping.brain.model;
  * 
  * @author MPreloaded
  */
-public abstract class AbstractFunction {
+public abstract class AbstractFunction implements FitnessFunction {
 	
 	public abstract double evaluateNetwork(Genome genome, Object... args);
 
+	/**
+	 * Adapter auf {@link FitnessFunction}: leitet an
+	 * {@link #evaluateNetwork(Genome, Object...)} mit den Argumenten des
+	 * Kontextes weiter. Da dabei die Neuronen verwendet werden, ist dies nur
+	 * für serielle Bewertung sicher.
+	 * 
+	 * @param genome
+	 *           zu bewertendes Netzwerk
+	 * @param context
+	 *           Bewertungskontext des aufrufenden Threads
+	 * @return Bewertung des Netzwerkes
+	 */
+	@Override
+	public double evaluate(Genome genome, EvaluationContext context) {
+		return evaluateNetwork(genome, context.getArguments());
+	}
+
+	/**
+	 * Bewertungen auf Basis der Neuronen dürfen nicht parallel laufen.
+	 * Unterklassen, die {@link #evaluate(Genome, EvaluationContext)} selbst
+	 * implementieren, können dies überschreiben.
+	 * 
+	 * @return Wahrheitswert, ob parallele Bewertung möglich ist
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return false;
+	}
+
 }
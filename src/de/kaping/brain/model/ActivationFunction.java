@@ -0,0 +1,135 @@
+package de.kaping.brain.model;
+
+/**
+ * Aktivierungsfunktionen, mit denen die Summe aller eingehenden, gewichteten
+ * Werte eines Neurons verrechnet wird. Die Funktion wird für den gesamten Pool
+ * eingestellt ({@link Pool#setActivationFunction(ActivationFunction)}) und
+ * beim Kompilieren eines Netzwerkes übernommen.
+ * <p>
+ * {@link #LEGACY_SIGMOID} ist die ursprüngliche Berechnung über
+ * <code>Math.pow</code> und dient nur noch als Referenz. Alle anderen
+ * Sigmoid-Varianten berechnen die gleiche Kurve schneller, mit einem Fehler
+ * von höchstens {@link #getMaxError()} gegenüber der Referenz.
+ *
+ * @author MPreloaded
+ */
+public enum ActivationFunction {
+
+	/** Ursprüngliche Berechnung: 1 / (1 + 5^-x) */
+	LEGACY_SIGMOID(0.) {
+		@Override
+		public double apply(double value) {
+			return 1 / (1 + Math.pow(5., -1 * value));
+		}
+	},
+
+	/** Gleiche Kurve wie die Referenz, über <code>Math.exp</code> berechnet */
+	STEEPENED_SIGMOID(1e-15) {
+		@Override
+		public double apply(double value) {
+			return 1 / (1 + Math.exp(-STEEPNESS * value));
+		}
+	},
+
+	/**
+	 * Gleiche Kurve wie die Referenz, über eine Tabelle mit linearer
+	 * Interpolation berechnet. Außerhalb der Tabelle wird auf 0 bzw. 1
+	 * gerundet.
+	 */
+	LOOKUP_SIGMOID(1e-6) {
+		@Override
+		public double apply(double value) {
+			if (value <= -TABLE_RANGE)
+				return 0.;
+			if (value >= TABLE_RANGE)
+				return 1.;
+
+			double pos = (value + TABLE_RANGE) * TABLE_SCALE;
+			int i = (int) pos;
+			double frac = pos - i;
+
+			return TABLE[i] + (TABLE[i + 1] - TABLE[i]) * frac;
+		}
+	},
+
+	/**
+	 * Tangens Hyperbolicus, Wertebereich (-1, 1). Über <code>Math.exp</code>
+	 * berechnet, da <code>Math.tanh</code> deutlich langsamer ist.
+	 */
+	TANH(Double.NaN) {
+		@Override
+		public double apply(double value) {
+			if (value > 20.)
+				return 1.;
+			if (value < -20.)
+				return -1.;
+			return 1 - 2 / (1 + Math.exp(2 * value));
+		}
+	},
+
+	/** Rectified Linear Unit, Wertebereich [0, unendlich) */
+	RELU(Double.NaN) {
+		@Override
+		public double apply(double value) {
+			return (value > 0.) ? value : 0.;
+		}
+	},
+
+	/**
+	 * Tangente der Referenz im Ursprung, auf den Wertebereich [0, 1]
+	 * begrenzt.
+	 */
+	CLAMPED_LINEAR(Double.NaN) {
+		@Override
+		public double apply(double value) {
+			double linear = 0.5 + 0.25 * STEEPNESS * value;
+
+			if (linear < 0.)
+				return 0.;
+			if (linear > 1.)
+				return 1.;
+			return linear;
+		}
+	};
+
+	/* 5^-x = e^(-ln(5) * x) */
+	private static final double STEEPNESS = Math.log(5.);
+
+	/* Tabelle für LOOKUP_SIGMOID über [-TABLE_RANGE, TABLE_RANGE] */
+	private static final double TABLE_RANGE = 12.;
+	private static final int TABLE_SIZE = 8192;
+	private static final double TABLE_SCALE = TABLE_SIZE / (2 * TABLE_RANGE);
+	private static final double[] TABLE = new double[TABLE_SIZE + 1];
+
+	static {
+		for (int i = 0; i <= TABLE_SIZE; i++)
+			TABLE[i] = 1 / (1 + Math
+				.exp(-STEEPNESS * (i / TABLE_SCALE - TABLE_RANGE)));
+	}
+
+	private final double maxError;
+
+	private ActivationFunction(double maxError) {
+		this.maxError = maxError;
+	}
+
+	/**
+	 * Verrechnet die Summe aller eingehenden Werte.
+	 *
+	 * @param value
+	 *           eingehender Wert
+	 * @return Wert des Neurons
+	 */
+	public abstract double apply(double value);
+
+	/**
+	 * Gibt den maximalen absoluten Fehler gegenüber {@link #LEGACY_SIGMOID}
+	 * zurück. <code>NaN</code>, wenn die Funktion keine Näherung der Referenz
+	 * ist.
+	 *
+	 * @return maximaler absoluter Fehler
+	 */
+	public double getMaxError() {
+		return maxError;
+	}
+}
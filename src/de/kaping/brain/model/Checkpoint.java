@@ -0,0 +1,773 @@
+package de.kaping.brain.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vollständiger Zustand eines {@link Pool} zwischen zwei Generationen:
+ * Spezies, Netzwerke mit Verbindungen, Neuronen, Raten und Abstammung (siehe
+ * {@link LineageStore}), die {@link InnovationRegistry}, Startwert,
+ * Generation und die Zähler der IDs.
+ * Ein mit gleichem Startwert fortgesetzter Lauf erzeugt damit genau die
+ * gleichen Generationen wie ein ununterbrochener (siehe
+ * {@link RandomSource}).
+ * <p>
+ * {@link #of(Pool)} hält nur Verweise auf die Verbindungen der Netzwerke fest,
+ * deren Abschnitte dabei zur gemeinsamen Nutzung freigegeben werden (siehe
+ * {@link GeneTable}). Die Evolution kann also sofort weiterlaufen, während
+ * {@link #write(Path)} die Datei in einem anderen Thread schreibt. Alle
+ * übrigen Werte, die sich in der nächsten Generation ändern können (z.B. die
+ * Innovationsnummern der Neuronen), werden sofort kopiert.
+ * <p>
+ * Die Datei ist binär: Ganzzahlen als Varint, Innovationsnummern der
+ * Verbindungen als Abstand zur vorherigen, Gewichtungen und Bewertungen
+ * bitgenau als <code>double</code>, die Aktivität als Bitfeld. Geschrieben wird
+ * über einen {@link FileChannel} in eine temporäre Datei, die erst am Ende
+ * umbenannt wird; gelesen wird über eine eingeblendete Datei (mmap).
+ *
+ * @author MPreloaded
+ */
+public final class Checkpoint {
+
+	/* "NEAT" */
+	private static final int MAGIC = 0x4e454154;
+	private static final int VERSION = 2;
+
+	/* Größe des Schreibpuffers */
+	private static final int BUFFER = 1 << 16;
+
+	/* Pool */
+	long seed;
+	int generation;
+	int population;
+	int inputs;
+	int outputs;
+	ActivationFunction activation;
+	double topFitness;
+	int genomeID;
+	int speciesID;
+	boolean evaluated;
+
+	/* InnovationRegistry */
+	InnovationRegistry.Scope scope;
+	int window;
+	int registryGeneration;
+	int innovation;
+
+	/* Neuronen aller Netzwerke, über ihren Index referenziert */
+	Type[] types;
+	int[] neuronInnovations;
+	double[] values;
+	int[] essential;
+	int[] split;
+
+	/* je Verbindung der Registry: Ursprung, Ziel, Nummer, letztes Auftreten */
+	int[] links;
+
+	List<SpeciesData> species;
+
+	Checkpoint() {
+		super();
+	}
+
+	/**
+	 * Hält den aktuellen Zustand eines Pools fest. Darf nicht gleichzeitig mit
+	 * {@link Pool#newGeneration()} aufgerufen werden.
+	 *
+	 * @param pool
+	 *           zu sichernder Pool
+	 * @return Checkpoint des Pools
+	 */
+	public static Checkpoint of(Pool pool) {
+		return of(pool, new ArrayList<Neuron>(), new ArrayList<Genome>());
+	}
+
+	/*
+	 * Wie of(Pool), hängt zusätzlich alle Neuronen in der Reihenfolge ihrer
+	 * Indizes an neurons und alle Netzwerke in der Reihenfolge der Spezies an
+	 * genomes an (für CheckpointJournal).
+	 */
+	static Checkpoint of(Pool pool, List<Neuron> neurons,
+			List<Genome> genomes) {
+		Checkpoint c = new Checkpoint();
+		Map<Neuron, Integer> ids = new IdentityHashMap<Neuron, Integer>();
+
+		c.seed = pool.getRandomSource().getSeed();
+		c.generation = pool.getGeneration();
+		c.population = pool.getPopulation();
+		c.inputs = pool.getInputs();
+		c.outputs = pool.getOutputs();
+		c.activation = pool.getActivationFunction();
+		c.topFitness = pool.getTopFitness();
+		c.genomeID = Genome.getMaxID();
+		c.speciesID = Species.getMaxID();
+		c.evaluated = pool.isEvaluated();
+
+		List<Neuron> essential = pool.getEssentialNeurons();
+		c.essential = new int[essential.size()];
+		for (int i = 0; i < essential.size(); i++)
+			c.essential[i] = id(ids, neurons, essential.get(i));
+
+		c.species = new ArrayList<SpeciesData>(pool.getSpecies().size());
+		for (Species s : pool.getSpecies()) {
+			SpeciesData sd = new SpeciesData(s.getID(), s.getTopFitness(),
+				s.getAverageFitness(), s.getStaleness(), s.getGenomes().size());
+
+			for (Genome g : s.getGenomes()) {
+				List<Neuron> own = g.getNeurons();
+				GenomeData gd = new GenomeData(g.getID(), g.getFitness(),
+					g.getAdjustedFitness(), g.getRates().clone(),
+					new int[own.size()], g.getGeneTable().share(),
+					g.getLineage(), g.getParent1(), g.getParent2(),
+					g.getOperators());
+
+				for (int i = 0; i < own.size(); i++)
+					gd.neurons[i] = id(ids, neurons, own.get(i));
+				sd.genomes.add(gd);
+				genomes.add(g);
+			}
+			c.species.add(sd);
+		}
+
+		List<Neuron> split = pool.getNewNeurons();
+		c.split = new int[split.size()];
+		for (int i = 0; i < split.size(); i++)
+			c.split[i] = id(ids, neurons, split.get(i));
+
+		/*
+		 * Die Registry hat keine feste Reihenfolge. Sortiert nach Nummer
+		 * ergeben gleiche Läufe gleiche Indizes für Neuronen, die nur in der
+		 * Registry vorkommen, und damit gleiche Dateien.
+		 */
+		InnovationRegistry registry = pool.getInnovationRegistry();
+		List<LinkData> links = new ArrayList<LinkData>(registry.size());
+		registry.forEach((origin, into, number, lastSeen) -> links
+			.add(new LinkData(origin, into, number, lastSeen)));
+		links.sort(LinkData.ORDER);
+
+		c.links = new int[links.size() * 4];
+		for (int i = 0; i < links.size(); i++) {
+			LinkData l = links.get(i);
+			c.links[i * 4] = id(ids, neurons, l.origin);
+			c.links[i * 4 + 1] = id(ids, neurons, l.into);
+			c.links[i * 4 + 2] = l.innovation;
+			c.links[i * 4 + 3] = l.lastSeen;
+		}
+		c.scope = registry.getScope();
+		c.window = registry.getWindow();
+		c.registryGeneration = registry.getGeneration();
+		c.innovation = registry.getInnovation();
+
+		c.types = new Type[neurons.size()];
+		c.neuronInnovations = new int[neurons.size()];
+		c.values = new double[neurons.size()];
+		for (int i = 0; i < neurons.size(); i++) {
+			Neuron n = neurons.get(i);
+			c.types[i] = n.getType();
+			c.neuronInnovations[i] = n.getInnovation();
+			c.values[i] = n.getValue();
+		}
+
+		return c;
+	}
+
+	/**
+	 * Gibt die Generation zurück, in der der Checkpoint entstanden ist.
+	 *
+	 * @return Generationsnummer
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Schreibt den Checkpoint in eine Datei. Eine bestehende Datei wird erst
+	 * ersetzt, wenn der Checkpoint vollständig geschrieben ist.
+	 *
+	 * @param path
+	 *           Zieldatei
+	 * @throws IOException
+	 *            falls die Datei nicht geschrieben werden kann
+	 */
+	public void write(Path path) throws IOException {
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp,
+			StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING)) {
+			Output out = new Output(channel);
+
+			this.write(out);
+			out.flush();
+			channel.force(false);
+		}
+
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Liest einen Checkpoint aus einer Datei.
+	 *
+	 * @param path
+	 *           Datei eines Checkpoints
+	 * @return gelesener Checkpoint
+	 * @throws IOException
+	 *            falls die Datei nicht gelesen werden kann oder kein
+	 *            gültiger Checkpoint ist
+	 */
+	public static Checkpoint read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path,
+			StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Checkpoint too large: " + path);
+
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				channel.size());
+
+			if (in.remaining() < 8 || in.getInt() != MAGIC)
+				throw new IOException("Not a checkpoint: " + path);
+
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new IOException(
+					"Unsupported checkpoint version " + version + ": " + path);
+
+			return read(in);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("Truncated checkpoint: " + path, e);
+		}
+	}
+
+	/**
+	 * Setzt einen Pool auf den Zustand dieses Checkpoints zurück. Alle
+	 * bisherigen Spezies und Netzwerke des Pools werden verworfen. Der
+	 * Checkpoint selbst bleibt unverändert und kann erneut geladen werden.
+	 *
+	 * @param pool
+	 *           zurückzusetzender Pool
+	 * @param function
+	 *           Bewertungsfunktion für die weiteren Generationen
+	 */
+	public void restore(Pool pool, FitnessFunction function) {
+		Neuron[] neurons = new Neuron[types.length];
+		for (int i = 0; i < neurons.length; i++)
+			neurons[i] = new Neuron(types[i], values[i], null,
+				neuronInnovations[i]);
+
+		InnovationRegistry registry = new InnovationRegistry(scope, window);
+		for (int i = 0; i < links.length; i += 4)
+			registry.restore(neurons[links[i]], neurons[links[i + 1]],
+				links[i + 2], links[i + 3]);
+		registry.restore(registryGeneration, innovation);
+
+		List<Species> list = new ArrayList<Species>(species.size());
+		for (SpeciesData sd : species) {
+			Species s = new Species(sd.id, sd.topFitness, sd.staleness,
+				sd.averageFitness);
+			List<Genome> genomes = new ArrayList<Genome>(sd.genomes.size());
+
+			for (GenomeData gd : sd.genomes) {
+				List<Neuron> own = new ArrayList<Neuron>(gd.neurons.length);
+				for (int n : gd.neurons)
+					own.add(neurons[n]);
+
+				Genome g = new Genome(own, gd.genes.copy(), gd.id);
+				g.setRates(gd.rates.clone());
+				g.setFitness(gd.fitness);
+				g.setAdjustedFitness(gd.adjustedFitness);
+				g.setLineage(gd.lineage, gd.parent1, gd.parent2, gd.operators);
+				genomes.add(g);
+			}
+
+			s.setGenomes(genomes);
+			list.add(s);
+		}
+
+		pool.setSeed(seed);
+		pool.setPopulation(population);
+		pool.setGeneration(generation);
+		pool.setTopFitness(topFitness);
+		pool.setActivationFunction(activation);
+		pool.setFunction(function, inputs, outputs);
+		pool.setEssentialNeurons(select(neurons, essential));
+		pool.setNewNeurons(select(neurons, split));
+		pool.setInnovationRegistry(registry);
+		pool.setSpecies(list);
+		pool.setCurrentSpecies(0);
+		pool.setCurrentGenome(0);
+		Genome.setMaxID(genomeID);
+		Species.setMaxID(speciesID);
+
+		/* gleiche Reihenfolge, also gleiche Durchschnitte und Vertreter */
+		if (evaluated)
+			pool.updateLeaderboard();
+	}
+
+	/* Schreibt alle Werte in der Reihenfolge von read(ByteBuffer) */
+	private void write(Output out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		this.writeState(out);
+
+		out.writeVarint(types.length);
+		for (int i = 0; i < types.length; i++) {
+			out.writeVarint(types[i].ordinal());
+			out.writeSigned(neuronInnovations[i]);
+			out.writeDouble(values[i]);
+		}
+		out.writeIndices(essential);
+		out.writeIndices(split);
+
+		out.writeVarint(links.length / 4);
+		for (int i = 0; i < links.length; i += 4) {
+			out.writeVarint(links[i]);
+			out.writeVarint(links[i + 1]);
+			out.writeVarint(links[i + 2]);
+			out.writeSigned(links[i + 3]);
+		}
+
+		out.writeVarint(species.size());
+		for (SpeciesData sd : species) {
+			out.writeVarint(sd.id);
+			out.writeDouble(sd.topFitness);
+			out.writeDouble(sd.averageFitness);
+			out.writeVarint(sd.staleness);
+			out.writeVarint(sd.genomes.size());
+
+			for (GenomeData gd : sd.genomes)
+				writeGenome(out, gd);
+		}
+	}
+
+	/* Einzelwerte von Pool und Registry */
+	void writeState(Output out) throws IOException {
+		out.writeLong(seed);
+		out.writeVarint(generation);
+		out.writeVarint(population);
+		out.writeVarint(inputs);
+		out.writeVarint(outputs);
+		out.writeVarint(activation.ordinal());
+		out.writeDouble(topFitness);
+		out.writeVarint(genomeID);
+		out.writeVarint(speciesID);
+		out.writeVarint(evaluated ? 1 : 0);
+
+		out.writeVarint(scope.ordinal());
+		out.writeVarint(window);
+		out.writeSigned(registryGeneration);
+		out.writeVarint(innovation);
+	}
+
+	/* Ein Netzwerk, Neuronen als Index in die Tabelle */
+	static void writeGenome(Output out, GenomeData gd) throws IOException {
+		out.writeVarint(gd.id);
+		out.writeDouble(gd.fitness);
+		out.writeDouble(gd.adjustedFitness);
+		out.writeVarint(gd.rates.length);
+		for (double r : gd.rates)
+			out.writeDouble(r);
+		out.writeIndices(gd.neurons);
+		writeGenes(out, gd.genes);
+
+		/* Datensätze um eins verschoben, damit NONE (-1) als 0 passt */
+		out.writeVarlong(gd.lineage + 1);
+		out.writeVarlong(gd.parent1 + 1);
+		out.writeVarlong(gd.parent2 + 1);
+		out.writeVarint(gd.operators);
+	}
+
+	/*
+	 * Schreibt eine Tabelle spaltenweise: Innovationsnummern als Abstand zur
+	 * vorherigen, dann Ursprünge, Ziele, Gewichtungen und Aktivitäten.
+	 */
+	static void writeGenes(Output out, GeneTable genes)
+			throws IOException {
+		int size = genes.size();
+		out.writeVarint(size);
+
+		int previous = 0;
+		for (int i = 0; i < size; i++) {
+			out.writeSigned(genes.getInnovation(i) - previous);
+			previous = genes.getInnovation(i);
+		}
+		for (int i = 0; i < size; i++)
+			out.writeVarint(genes.getSource(i));
+		for (int i = 0; i < size; i++)
+			out.writeVarint(genes.getTarget(i));
+		for (int i = 0; i < size; i++)
+			out.writeDouble(genes.getWeight(i));
+
+		for (int i = 0; i < size; i += 8) {
+			int bits = 0;
+			for (int k = 0; k < 8 && i + k < size; k++)
+				if (genes.isEnabled(i + k))
+				bits |= 1 << k;
+			out.writeByte(bits);
+		}
+	}
+
+	/* Liest alle Werte nach Kopf und Version */
+	private static Checkpoint read(ByteBuffer in) throws IOException {
+		Checkpoint c = new Checkpoint();
+		c.readState(in);
+
+		int count = readVarint(in);
+		c.types = new Type[count];
+		c.neuronInnovations = new int[count];
+		c.values = new double[count];
+		for (int i = 0; i < count; i++) {
+			c.types[i] = Type.values()[readVarint(in)];
+			c.neuronInnovations[i] = readSigned(in);
+			c.values[i] = in.getDouble();
+		}
+		c.essential = readIndices(in, count);
+		c.split = readIndices(in, count);
+
+		c.links = new int[readVarint(in) * 4];
+		for (int i = 0; i < c.links.length; i += 4) {
+			c.links[i] = checkIndex(readVarint(in), count);
+			c.links[i + 1] = checkIndex(readVarint(in), count);
+			c.links[i + 2] = readVarint(in);
+			c.links[i + 3] = readSigned(in);
+		}
+
+		int speciesCount = readVarint(in);
+		c.species = new ArrayList<SpeciesData>(speciesCount);
+		for (int s = 0; s < speciesCount; s++) {
+			SpeciesData sd = new SpeciesData(readVarint(in), in.getDouble(),
+				in.getDouble(), readVarint(in), 0);
+			int genomes = readVarint(in);
+
+			for (int g = 0; g < genomes; g++)
+				sd.genomes.add(readGenome(in, count));
+			c.species.add(sd);
+		}
+
+		return c;
+	}
+
+	/* Gegenstück zu writeState() */
+	void readState(ByteBuffer in) throws IOException {
+		this.seed = in.getLong();
+		this.generation = readVarint(in);
+		this.population = readVarint(in);
+		this.inputs = readVarint(in);
+		this.outputs = readVarint(in);
+		this.activation = ActivationFunction.values()[readVarint(in)];
+		this.topFitness = in.getDouble();
+		this.genomeID = readVarint(in);
+		this.speciesID = readVarint(in);
+		this.evaluated = readVarint(in) != 0;
+
+		this.scope = InnovationRegistry.Scope.values()[readVarint(in)];
+		this.window = readVarint(in);
+		this.registryGeneration = readSigned(in);
+		this.innovation = readVarint(in);
+	}
+
+	/* Gegenstück zu writeGenome(), bound ist die Anzahl Neuronen */
+	static GenomeData readGenome(ByteBuffer in, int bound)
+			throws IOException {
+		int id = readVarint(in);
+		double fitness = in.getDouble();
+		double adjusted = in.getDouble();
+		double[] rates = new double[readVarint(in)];
+		for (int i = 0; i < rates.length; i++)
+			rates[i] = in.getDouble();
+		int[] neurons = readIndices(in, bound);
+		GeneTable genes = readGenes(in, neurons.length);
+
+		return new GenomeData(id, fitness, adjusted, rates, neurons, genes,
+			readVarlong(in) - 1, readVarlong(in) - 1, readVarlong(in) - 1,
+			readVarint(in));
+	}
+
+	/* Gegenstück zu writeGenes() */
+	static GeneTable readGenes(ByteBuffer in, int neurons)
+			throws IOException {
+		int size = readVarint(in);
+		int[] innovations = new int[size];
+		int[] sources = new int[size];
+		int[] targets = new int[size];
+		double[] weights = new double[size];
+
+		int previous = 0;
+		for (int i = 0; i < size; i++)
+			previous = innovations[i] = previous + readSigned(in);
+		for (int i = 0; i < size; i++)
+			sources[i] = checkIndex(readVarint(in), neurons);
+		for (int i = 0; i < size; i++)
+			targets[i] = checkIndex(readVarint(in), neurons);
+		for (int i = 0; i < size; i++)
+			weights[i] = in.getDouble();
+
+		GeneTable genes = new GeneTable(size);
+		int bits = 0;
+		for (int i = 0; i < size; i++) {
+			if ((i & 7) == 0)
+				bits = in.get();
+			genes.add(innovations[i], sources[i], targets[i], weights[i],
+				(bits & 1 << (i & 7)) != 0);
+		}
+
+		return genes;
+	}
+
+	/* Index eines Neurons in der Tabelle des Checkpoints, legt ihn bei Bedarf an */
+	private static int id(Map<Neuron, Integer> ids, List<Neuron> neurons,
+			Neuron n) {
+		Integer id = ids.get(n);
+
+		if (id == null) {
+			id = neurons.size();
+			ids.put(n, id);
+			neurons.add(n);
+		}
+
+		return id;
+	}
+
+	private static List<Neuron> select(Neuron[] neurons, int[] indices) {
+		List<Neuron> list = new ArrayList<Neuron>(indices.length);
+		for (int i : indices)
+			list.add(neurons[i]);
+
+		return list;
+	}
+
+	static int[] readIndices(ByteBuffer in, int bound)
+			throws IOException {
+		int[] indices = new int[readVarint(in)];
+		for (int i = 0; i < indices.length; i++)
+			indices[i] = checkIndex(readVarint(in), bound);
+
+		return indices;
+	}
+
+	static int checkIndex(int index, int bound) throws IOException {
+		if (index < 0 || index >= bound)
+			throw new IOException("Corrupt checkpoint: index " + index
+				+ " out of " + bound);
+
+		return index;
+	}
+
+	/* Varint ohne Vorzeichen (7 Bit je Byte, niederwertige zuerst) */
+	static int readVarint(ByteBuffer in) throws IOException {
+		int value = 0;
+
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0)
+				return value;
+		}
+
+		throw new IOException("Corrupt checkpoint: varint too long");
+	}
+
+	/* Varint ohne Vorzeichen für long */
+	static long readVarlong(ByteBuffer in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0)
+				return value;
+		}
+
+		throw new IOException("Corrupt checkpoint: varint too long");
+	}
+
+	/* Varint mit Vorzeichen (ZigZag) */
+	static int readSigned(ByteBuffer in) throws IOException {
+		int v = readVarint(in);
+
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/* Eintrag der Registry, bevor seine Neuronen einen Index haben */
+	private static final class LinkData {
+
+		/* nach Nummer, bei gleicher Nummer nach den Neuronen */
+		static final Comparator<LinkData> ORDER = Comparator
+			.comparingInt((LinkData l) -> l.innovation)
+			.thenComparingInt(l -> l.origin.getInnovation())
+			.thenComparingInt(l -> l.into.getInnovation());
+
+		final Neuron origin;
+		final Neuron into;
+		final int innovation;
+		final int lastSeen;
+
+		LinkData(Neuron origin, Neuron into, int innovation, int lastSeen) {
+			this.origin = origin;
+			this.into = into;
+			this.innovation = innovation;
+			this.lastSeen = lastSeen;
+		}
+	}
+
+	/* Zustand einer Spezies */
+	static final class SpeciesData {
+		final int id;
+		final double topFitness;
+		final double averageFitness;
+		final int staleness;
+		final List<GenomeData> genomes;
+
+		SpeciesData(int id, double topFitness, double averageFitness,
+				int staleness, int size) {
+			this.id = id;
+			this.topFitness = topFitness;
+			this.averageFitness = averageFitness;
+			this.staleness = staleness;
+			this.genomes = new ArrayList<GenomeData>(size);
+		}
+	}
+
+	/* Zustand eines Netzwerkes, Neuronen als Index in die Tabelle */
+	static final class GenomeData {
+		final int id;
+		final double fitness;
+		final double adjustedFitness;
+		final double[] rates;
+		final int[] neurons;
+		final GeneTable genes;
+		final long lineage;
+		final long parent1;
+		final long parent2;
+		final int operators;
+
+		GenomeData(int id, double fitness, double adjustedFitness,
+				double[] rates, int[] neurons, GeneTable genes, long lineage,
+				long parent1, long parent2, int operators) {
+			this.id = id;
+			this.fitness = fitness;
+			this.adjustedFitness = adjustedFitness;
+			this.rates = rates;
+			this.neurons = neurons;
+			this.genes = genes;
+			this.lineage = lineage;
+			this.parent1 = parent1;
+			this.parent2 = parent2;
+			this.operators = operators;
+		}
+	}
+
+	/*
+	 * Gepufferte Ausgabe in einen FileChannel oder, ohne Channel, in einen
+	 * wachsenden Puffer im Speicher
+	 */
+	static final class Output {
+		private final FileChannel channel;
+		private ByteBuffer buffer;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(BUFFER);
+		}
+
+		Output() {
+			this.channel = null;
+			this.buffer = ByteBuffer.allocate(BUFFER);
+		}
+
+		/* Bisher geschriebener Inhalt, nur ohne Channel */
+		ByteBuffer contents() {
+			ByteBuffer contents = buffer.duplicate();
+			contents.flip();
+
+			return contents;
+		}
+
+		void writeByte(int b) throws IOException {
+			this.require(1);
+			buffer.put((byte) b);
+		}
+
+		void writeInt(int v) throws IOException {
+			this.require(4);
+			buffer.putInt(v);
+		}
+
+		void writeLong(long v) throws IOException {
+			this.require(8);
+			buffer.putLong(v);
+		}
+
+		void writeDouble(double v) throws IOException {
+			this.require(8);
+			buffer.putDouble(v);
+		}
+
+		/* Gegenstück zu readVarint() */
+		void writeVarint(int v) throws IOException {
+			this.require(5);
+			while ((v & ~0x7f) != 0) {
+				buffer.put((byte) (v & 0x7f | 0x80));
+				v >>>= 7;
+			}
+			buffer.put((byte) v);
+		}
+
+		/* Gegenstück zu readVarlong() */
+		void writeVarlong(long v) throws IOException {
+			this.require(10);
+			while ((v & ~0x7fL) != 0) {
+				buffer.put((byte) (v & 0x7f | 0x80));
+				v >>>= 7;
+			}
+			buffer.put((byte) v);
+		}
+
+		/* Gegenstück zu readSigned() */
+		void writeSigned(int v) throws IOException {
+			this.writeVarint(v << 1 ^ v >> 31);
+		}
+
+		void writeIndices(int[] indices) throws IOException {
+			this.writeVarint(indices.length);
+			for (int i : indices)
+				this.writeVarint(i);
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			buffer.clear();
+		}
+
+		private void require(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes)
+				return;
+
+			if (channel != null) {
+				this.flush();
+			} else {
+				ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				buffer = grown.put(buffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,703 @@
+package de.kaping.brain.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+/**
+ * Fortlaufende Sicherung eines Pools aus einem vollständigen
+ * {@link Checkpoint} und einem Journal, an das je Sicherung nur die Änderungen
+ * seit der vorherigen angehängt werden: neue, veränderte und entfernte
+ * Netzwerke, neue und veränderte Neuronen, die Einträge der
+ * {@link InnovationRegistry} und die Zuordnung der Netzwerke zu ihren Spezies.
+ * Überlebende Netzwerke, die sich nicht verändert haben, werden nicht erneut
+ * geschrieben. Nach <code>interval</code> Änderungen wird wieder ein
+ * vollständiger Checkpoint geschrieben und das Journal geleert, so dass beim
+ * Laden höchstens so viele Änderungen nachgespielt werden müssen.
+ * <p>
+ * Netzwerke und Neuronen erhalten dafür eine feste Nummer, die über alle
+ * Sicherungen bis zum nächsten vollständigen Checkpoint erhalten bleibt.
+ * Veränderungen an einem Netzwerk werden über eine Prüfsumme seines gesamten
+ * Inhalts erkannt. Jeder Eintrag des Journals trägt seine Länge und eine
+ * CRC32-Prüfsumme, ein beim Absturz nur teilweise geschriebener Eintrag wird
+ * beim Laden verworfen. Schlägt das Schreiben einer Sicherung fehl, wird die
+ * nächste vollständig geschrieben.
+ * <p>
+ * Gesichert wird über {@link Pool#checkpoint(CheckpointJournal)}, geladen
+ * über {@link #read(Path)} bzw. {@link Pool#resume(Path, FitnessFunction)}.
+ *
+ * @author MPreloaded
+ */
+public final class CheckpointJournal {
+
+	/* "NEAJ" */
+	private static final int MAGIC = 0x4e45414a;
+	private static final int VERSION = 3;
+
+	private final Path path;
+	private final Path log;
+	private final int interval;
+
+	/*
+	 * Änderungen seit dem letzten vollständigen Checkpoint, -1 vor dem ersten
+	 * und nach einem Fehler beim Schreiben (auch vom schreibenden Thread)
+	 */
+	private volatile int deltas;
+
+	/* Stand der letzten Sicherung: feste Nummern der Neuronen */
+	private final Map<Neuron, Integer> neurons;
+	private int[] neuronInnovations;
+	private double[] neuronValues;
+	private int nextNeuron;
+
+	/* feste Nummern und Prüfsummen der Netzwerke */
+	private final Map<Genome, Slot> genomes;
+	private int nextSlot;
+
+	/* Registry: (Ursprung, Ziel) -> (Innovationsnummer, letztes Auftreten) */
+	private Map<Long, Long> links;
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param path
+	 *           Datei des vollständigen Checkpoints, das Journal liegt daneben
+	 *           (siehe {@link #logOf(Path)})
+	 * @param interval
+	 *           Anzahl Änderungen zwischen zwei vollständigen Checkpoints
+	 */
+	public CheckpointJournal(Path path, int interval) {
+		super();
+		if (interval < 1)
+			throw new IllegalArgumentException(
+				"Interval must be positive: " + interval);
+
+		this.path = path;
+		this.log = logOf(path);
+		this.interval = interval;
+		this.deltas = -1;
+		this.neurons = new IdentityHashMap<Neuron, Integer>();
+		this.neuronInnovations = new int[0];
+		this.neuronValues = new double[0];
+		this.genomes = new IdentityHashMap<Genome, Slot>();
+		this.links = new HashMap<Long, Long>();
+	}
+
+	/**
+	 * Gibt die Datei des vollständigen Checkpoints zurück.
+	 *
+	 * @return Datei des Checkpoints
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Gibt die Datei des Journals zu einem Checkpoint zurück.
+	 *
+	 * @param path
+	 *           Datei des Checkpoints
+	 * @return Datei des Journals
+	 */
+	public static Path logOf(Path path) {
+		return path.resolveSibling(path.getFileName() + ".log");
+	}
+
+	/**
+	 * Liest einen Checkpoint und spielt alle vollständig geschriebenen
+	 * Änderungen seines Journals nach. Gibt es kein passendes Journal, wird
+	 * nur der Checkpoint gelesen.
+	 *
+	 * @param path
+	 *           Datei des Checkpoints
+	 * @return Checkpoint mit dem Stand der letzten Sicherung
+	 * @throws IOException
+	 *            falls Checkpoint oder Journal nicht gelesen werden können
+	 */
+	public static Checkpoint read(Path path) throws IOException {
+		Checkpoint base = Checkpoint.read(path);
+		Path log = logOf(path);
+
+		if (!Files.exists(log))
+			return base;
+
+		try (FileChannel channel = FileChannel.open(log,
+			StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Journal too large: " + log);
+
+			ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				channel.size());
+
+			/* Journal eines anderen (z.B. abgebrochenen) Checkpoints */
+			if (in.remaining() < 12 || in.getInt() != MAGIC
+				|| in.getInt() != VERSION || in.getInt() != base.generation)
+				return base;
+
+			Replay replay = new Replay(base);
+			CRC32 crc = new CRC32();
+
+			for (int sequence = 1; in.remaining() >= 8; sequence++) {
+				int length = in.getInt();
+				int checksum = in.getInt();
+
+				/* unvollständig geschriebener letzter Eintrag */
+				if (length < 0 || length > in.remaining())
+					break;
+
+				ByteBuffer record = in.slice();
+				record.limit(length);
+				in.position(in.position() + length);
+
+				crc.reset();
+				crc.update(record.duplicate());
+				if ((int) crc.getValue() != checksum
+					|| Checkpoint.readVarint(record) != sequence)
+					break;
+
+				replay.apply(record);
+			}
+
+			return replay.toCheckpoint();
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt journal: " + log, e);
+		}
+	}
+
+	/*
+	 * Hält den Zustand des Pools fest und gibt die Aufgabe zurück, die ihn
+	 * schreibt (siehe Pool#checkpoint(CheckpointJournal)). Je nach Anzahl
+	 * bisheriger Änderungen ist das ein vollständiger Checkpoint oder ein
+	 * neuer Eintrag im Journal.
+	 */
+	Callable<Void> capture(Pool pool) {
+		List<Neuron> neurons = new ArrayList<Neuron>();
+		List<Genome> genomes = new ArrayList<Genome>();
+		Checkpoint c = Checkpoint.of(pool, neurons, genomes);
+
+		if (deltas < 0 || deltas >= interval)
+			return this.captureFull(c, neurons, genomes);
+
+		return this.captureDelta(c, neurons, genomes);
+	}
+
+	/* Vollständiger Checkpoint, danach beginnt ein leeres Journal */
+	private Callable<Void> captureFull(Checkpoint c, List<Neuron> neurons,
+			List<Genome> genomes) {
+		this.neurons.clear();
+		this.neuronInnovations = c.neuronInnovations.clone();
+		this.neuronValues = c.values.clone();
+		for (int i = 0; i < neurons.size(); i++)
+			this.neurons.put(neurons.get(i), i);
+		this.nextNeuron = neurons.size();
+
+		this.genomes.clear();
+		int k = 0;
+		for (Checkpoint.SpeciesData sd : c.species)
+			for (Checkpoint.GenomeData gd : sd.genomes) {
+			this.genomes.put(genomes.get(k), new Slot(k, hash(gd, gd.neurons)));
+			k++;
+			}
+		this.nextSlot = k;
+
+		this.links = new HashMap<Long, Long>();
+		for (int i = 0; i < c.links.length; i += 4)
+			links.put(link(c.links[i], c.links[i + 1]),
+				entry(c.links[i + 2], c.links[i + 3]));
+
+		this.deltas = 0;
+		int generation = c.generation;
+
+		return () -> {
+			try {
+				/*
+				 * erst den Checkpoint ersetzen, dann das Journal leeren. Bricht
+				 * der Lauf dazwischen ab, passt die Generation im Kopf des alten
+				 * Journals nicht mehr und es wird beim Laden ignoriert.
+				 */
+				c.write(path);
+
+				try (FileChannel channel = FileChannel.open(log,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+					ByteBuffer header = ByteBuffer.allocate(12);
+					header.putInt(MAGIC).putInt(VERSION).putInt(generation)
+						.flip();
+					while (header.hasRemaining())
+						channel.write(header);
+					channel.force(false);
+				}
+			} catch (IOException | RuntimeException e) {
+				this.deltas = -1;
+				throw e;
+			}
+			return null;
+		};
+	}
+
+	/* Änderungen seit der letzten Sicherung als neuer Eintrag im Journal */
+	private Callable<Void> captureDelta(Checkpoint c, List<Neuron> neurons,
+			List<Genome> genomes) {
+		Delta d = new Delta(c, ++deltas);
+
+		/* Neuronen: lokaler Index -> feste Nummer */
+		int[] ids = new int[neurons.size()];
+		d.firstNeuron = nextNeuron;
+		for (int i = 0; i < ids.length; i++) {
+			Neuron n = neurons.get(i);
+			Integer id = this.neurons.get(n);
+
+			if (id == null) {
+				id = nextNeuron++;
+				this.neurons.put(n, id);
+				d.added.add(i);
+			} else if (neuronInnovations[id] != c.neuronInnovations[i]
+				|| Double.compare(neuronValues[id], c.values[i]) != 0) {
+				d.changed.add(i);
+			}
+			ids[i] = id;
+		}
+
+		if (nextNeuron > neuronInnovations.length) {
+			int capacity = Math.max(nextNeuron, neuronInnovations.length * 2);
+			neuronInnovations = Arrays.copyOf(neuronInnovations, capacity);
+			neuronValues = Arrays.copyOf(neuronValues, capacity);
+		}
+
+		boolean[] seen = new boolean[nextNeuron];
+		for (int i = 0; i < ids.length; i++) {
+			seen[ids[i]] = true;
+			neuronInnovations[ids[i]] = c.neuronInnovations[i];
+			neuronValues[ids[i]] = c.values[i];
+		}
+		for (Iterator<Integer> it = this.neurons.values().iterator(); it
+			.hasNext();) {
+			int id = it.next();
+			if (!seen[id]) {
+				d.removedNeurons.add(id);
+				it.remove();
+			}
+		}
+		/* Identitäts-Tabellen haben keine feste Reihenfolge */
+		Collections.sort(d.removedNeurons);
+		d.ids = ids;
+
+		/* Netzwerke: feste Nummern, nur neue und veränderte werden geschrieben */
+		Map<Genome, Slot> current = new IdentityHashMap<Genome, Slot>();
+		int k = 0;
+		for (Checkpoint.SpeciesData sd : c.species) {
+			int[] slots = new int[sd.genomes.size()];
+
+			for (int i = 0; i < slots.length; i++) {
+				Checkpoint.GenomeData gd = sd.genomes.get(i);
+				Genome g = genomes.get(k++);
+				int[] own = translate(gd.neurons, ids);
+				long[] hash = hash(gd, own);
+				Slot slot = this.genomes.remove(g);
+
+				if (slot == null || !Arrays.equals(slot.hash, hash)) {
+					slot = new Slot((slot == null) ? nextSlot++ : slot.id, hash);
+					d.written.add(slot.id);
+					d.bodies.add(new Checkpoint.GenomeData(gd.id, gd.fitness,
+						gd.adjustedFitness, gd.rates, own, gd.genes, gd.lineage,
+						gd.parent1, gd.parent2, gd.operators));
+				}
+
+				current.put(g, slot);
+				slots[i] = slot.id;
+			}
+			d.slots.add(slots);
+		}
+		for (Slot slot : this.genomes.values())
+			d.removedGenomes.add(slot.id);
+		Collections.sort(d.removedGenomes);
+		this.genomes.clear();
+		this.genomes.putAll(current);
+
+		/* Registry: entfernte und neue bzw. veränderte Einträge */
+		Map<Long, Long> links = new HashMap<Long, Long>();
+		for (int i = 0; i < c.links.length; i += 4) {
+			long key = link(ids[c.links[i]], ids[c.links[i + 1]]);
+			long value = entry(c.links[i + 2], c.links[i + 3]);
+
+			links.put(key, value);
+			if (!Long.valueOf(value).equals(this.links.remove(key))) {
+				d.upserts.add(key);
+				d.upserts.add(value);
+			}
+		}
+		d.removedLinks.addAll(this.links.keySet());
+		Collections.sort(d.removedLinks);
+		this.links = links;
+
+		return () -> {
+			ByteBuffer record = d.encode();
+			CRC32 crc = new CRC32();
+			crc.update(record.duplicate());
+
+			ByteBuffer header = ByteBuffer.allocate(8);
+			header.putInt(record.remaining()).putInt((int) crc.getValue())
+				.flip();
+
+			try (FileChannel channel = FileChannel.open(log,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				while (header.hasRemaining())
+					channel.write(header);
+				while (record.hasRemaining())
+					channel.write(record);
+				channel.force(false);
+			} catch (IOException | RuntimeException e) {
+				/*
+				 * Der Stand im Speicher ist schon weitergezählt, das Journal hat
+				 * aber eine Lücke; spätere Einträge würden beim Laden verworfen.
+				 * Die nächste Sicherung wird daher vollständig.
+				 */
+				this.deltas = -1;
+				throw e;
+			}
+			return null;
+		};
+	}
+
+	private static int[] translate(int[] indices, int[] ids) {
+		int[] result = new int[indices.length];
+		for (int i = 0; i < indices.length; i++)
+			result[i] = ids[indices[i]];
+
+		return result;
+	}
+
+	private static long link(int origin, int into) {
+		return (long) origin << 32 | into & 0xffffffffL;
+	}
+
+	private static long entry(int innovation, int lastSeen) {
+		return (long) innovation << 32 | lastSeen & 0xffffffffL;
+	}
+
+	/*
+	 * Prüfsumme (128 Bit) über den gesamten Inhalt eines Netzwerkes, die
+	 * Neuronen über ihre festen Nummern
+	 */
+	private static long[] hash(Checkpoint.GenomeData gd, int[] neurons) {
+		long[] h = { 0x243f6a8885a308d3L, 0x13198a2e03707344L };
+
+		mix(h, gd.id);
+		mix(h, Double.doubleToRawLongBits(gd.fitness));
+		mix(h, Double.doubleToRawLongBits(gd.adjustedFitness));
+		for (double r : gd.rates)
+			mix(h, Double.doubleToRawLongBits(r));
+		mix(h, gd.lineage);
+		mix(h, gd.parent1);
+		mix(h, gd.parent2);
+		mix(h, gd.operators);
+		mix(h, neurons.length);
+		for (int n : neurons)
+			mix(h, n);
+
+		GeneTable genes = gd.genes;
+		mix(h, genes.size());
+		for (int i = 0; i < genes.size(); i++) {
+			mix(h, (long) genes.getInnovation(i) << 32 | genes.getSource(i));
+			mix(h, (long) genes.getTarget(i) << 1 | (genes.isEnabled(i) ? 1 : 0));
+			mix(h, Double.doubleToRawLongBits(genes.getWeight(i)));
+		}
+
+		return h;
+	}
+
+	private static void mix(long[] h, long v) {
+		h[0] = Long.rotateLeft(h[0] ^ v * 0x9e3779b97f4a7c15L, 29)
+			* 0xbf58476d1ce4e5b9L;
+		h[1] = Long.rotateLeft(h[1] + v * 0xc2b2ae3d27d4eb4fL, 31)
+			* 0x94d049bb133111ebL;
+	}
+
+	/* Feste Nummer und Prüfsumme eines Netzwerkes */
+	private static final class Slot {
+		final int id;
+		final long[] hash;
+
+		Slot(int id, long[] hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+	}
+
+	/*
+	 * Ein Eintrag des Journals, beim Festhalten berechnet und erst beim
+	 * Schreiben kodiert
+	 */
+	private static final class Delta {
+		final Checkpoint state;
+		final int sequence;
+		int[] ids;
+		int firstNeuron;
+		/* neue und veränderte Neuronen als lokaler Index */
+		final List<Integer> added = new ArrayList<Integer>();
+		final List<Integer> changed = new ArrayList<Integer>();
+		final List<Integer> removedNeurons = new ArrayList<Integer>();
+		final List<Integer> written = new ArrayList<Integer>();
+		final List<Checkpoint.GenomeData> bodies = new ArrayList<Checkpoint.GenomeData>();
+		final List<Integer> removedGenomes = new ArrayList<Integer>();
+		final List<int[]> slots = new ArrayList<int[]>();
+		final List<Long> upserts = new ArrayList<Long>();
+		final List<Long> removedLinks = new ArrayList<Long>();
+
+		Delta(Checkpoint state, int sequence) {
+			this.state = state;
+			this.sequence = sequence;
+		}
+
+		/* Kodiert den Eintrag in der Reihenfolge von Replay#apply() */
+		ByteBuffer encode() throws IOException {
+			Checkpoint c = state;
+			Checkpoint.Output out = new Checkpoint.Output();
+
+			out.writeVarint(sequence);
+			c.writeState(out);
+
+			out.writeVarint(removedNeurons.size());
+			for (int id : removedNeurons)
+				out.writeVarint(id);
+			out.writeVarint(changed.size());
+			for (int i : changed) {
+				out.writeVarint(ids[i]);
+				out.writeSigned(c.neuronInnovations[i]);
+				out.writeDouble(c.values[i]);
+			}
+			out.writeVarint(firstNeuron);
+			out.writeVarint(added.size());
+			for (int i : added) {
+				out.writeVarint(c.types[i].ordinal());
+				out.writeSigned(c.neuronInnovations[i]);
+				out.writeDouble(c.values[i]);
+			}
+			out.writeIndices(translate(c.essential, ids));
+			out.writeIndices(translate(c.split, ids));
+
+			/* wie Checkpoint#write(): Neuronen, Nummer, zuletzt gesehen */
+			out.writeVarint(removedLinks.size());
+			for (long key : removedLinks) {
+				out.writeVarint((int) (key >>> 32));
+				out.writeVarint((int) key);
+			}
+			out.writeVarint(upserts.size() / 2);
+			for (int i = 0; i < upserts.size(); i += 2) {
+				long key = upserts.get(i);
+				long value = upserts.get(i + 1);
+				out.writeVarint((int) (key >>> 32));
+				out.writeVarint((int) key);
+				out.writeVarint((int) (value >>> 32));
+				out.writeSigned((int) value);
+			}
+
+			out.writeVarint(removedGenomes.size());
+			for (int slot : removedGenomes)
+				out.writeVarint(slot);
+			out.writeVarint(written.size());
+			for (int i = 0; i < written.size(); i++) {
+				out.writeVarint(written.get(i));
+				Checkpoint.writeGenome(out, bodies.get(i));
+			}
+
+			out.writeVarint(c.species.size());
+			for (int s = 0; s < c.species.size(); s++) {
+				Checkpoint.SpeciesData sd = c.species.get(s);
+				out.writeVarint(sd.id);
+				out.writeDouble(sd.topFitness);
+				out.writeDouble(sd.averageFitness);
+				out.writeVarint(sd.staleness);
+				out.writeIndices(slots.get(s));
+			}
+
+			return out.contents();
+		}
+	}
+
+	/* Zustand beim Nachspielen des Journals, Neuronen über feste Nummern */
+	private static final class Replay {
+		private final Checkpoint state;
+		private Type[] types;
+		private int[] innovations;
+		private double[] values;
+		private boolean[] live;
+		private int count;
+		private int[] essential;
+		private int[] split;
+		private final Map<Integer, Checkpoint.GenomeData> genomes;
+		private final Map<Long, Long> links;
+		private final List<Checkpoint.SpeciesData> species;
+		private final List<int[]> slots;
+
+		Replay(Checkpoint base) {
+			this.state = base;
+			this.types = base.types.clone();
+			this.innovations = base.neuronInnovations.clone();
+			this.values = base.values.clone();
+			this.count = types.length;
+			this.live = new boolean[count];
+			Arrays.fill(live, true);
+			this.essential = base.essential;
+			this.split = base.split;
+
+			this.genomes = new HashMap<Integer, Checkpoint.GenomeData>();
+			this.species = new ArrayList<Checkpoint.SpeciesData>();
+			this.slots = new ArrayList<int[]>();
+			for (Checkpoint.SpeciesData sd : base.species) {
+				int[] own = new int[sd.genomes.size()];
+				for (int i = 0; i < own.length; i++) {
+					own[i] = genomes.size();
+					genomes.put(own[i], sd.genomes.get(i));
+				}
+				species.add(sd);
+				slots.add(own);
+			}
+
+			this.links = new HashMap<Long, Long>();
+			for (int i = 0; i < base.links.length; i += 4)
+				links.put(link(base.links[i], base.links[i + 1]),
+					entry(base.links[i + 2], base.links[i + 3]));
+		}
+
+		/* Gegenstück zu Delta#encode(), die Nummer ist bereits gelesen */
+		void apply(ByteBuffer in) throws IOException {
+			state.readState(in);
+
+			for (int i = Checkpoint.readVarint(in); i > 0; i--)
+				live[Checkpoint.checkIndex(Checkpoint.readVarint(in), count)] = false;
+			for (int i = Checkpoint.readVarint(in); i > 0; i--) {
+				int id = Checkpoint.checkIndex(Checkpoint.readVarint(in), count);
+				innovations[id] = Checkpoint.readSigned(in);
+				values[id] = in.getDouble();
+			}
+
+			if (Checkpoint.readVarint(in) != count)
+				throw new IOException("Corrupt journal: neuron numbering");
+			int added = Checkpoint.readVarint(in);
+			if (count + added > types.length) {
+				int capacity = Math.max(count + added, types.length * 2);
+				types = Arrays.copyOf(types, capacity);
+				innovations = Arrays.copyOf(innovations, capacity);
+				values = Arrays.copyOf(values, capacity);
+				live = Arrays.copyOf(live, capacity);
+			}
+			for (int i = 0; i < added; i++, count++) {
+				types[count] = Type.values()[Checkpoint.readVarint(in)];
+				innovations[count] = Checkpoint.readSigned(in);
+				values[count] = in.getDouble();
+				live[count] = true;
+			}
+			essential = Checkpoint.readIndices(in, count);
+			split = Checkpoint.readIndices(in, count);
+
+			for (int i = Checkpoint.readVarint(in); i > 0; i--)
+				links.remove(
+					link(Checkpoint.readVarint(in), Checkpoint.readVarint(in)));
+			for (int i = Checkpoint.readVarint(in); i > 0; i--) {
+				long key = link(Checkpoint.readVarint(in),
+					Checkpoint.readVarint(in));
+				links.put(key,
+					entry(Checkpoint.readVarint(in), Checkpoint.readSigned(in)));
+			}
+
+			for (int i = Checkpoint.readVarint(in); i > 0; i--)
+				genomes.remove(Checkpoint.readVarint(in));
+			for (int i = Checkpoint.readVarint(in); i > 0; i--) {
+				int slot = Checkpoint.readVarint(in);
+				genomes.put(slot, Checkpoint.readGenome(in, count));
+			}
+
+			species.clear();
+			slots.clear();
+			for (int s = Checkpoint.readVarint(in); s > 0; s--) {
+				species.add(new Checkpoint.SpeciesData(Checkpoint.readVarint(in),
+					in.getDouble(), in.getDouble(), Checkpoint.readVarint(in), 0));
+				slots.add(Checkpoint.readIndices(in, Integer.MAX_VALUE));
+			}
+		}
+
+		/* Verdichtet die festen Nummern wieder zu einem Checkpoint */
+		Checkpoint toCheckpoint() throws IOException {
+			Checkpoint c = state;
+			int[] dense = new int[count];
+			int n = 0;
+
+			for (int id = 0; id < count; id++)
+				dense[id] = live[id] ? n++ : -1;
+
+			c.types = new Type[n];
+			c.neuronInnovations = new int[n];
+			c.values = new double[n];
+			for (int id = 0; id < count; id++)
+				if (live[id]) {
+				c.types[dense[id]] = types[id];
+				c.neuronInnovations[dense[id]] = innovations[id];
+				c.values[dense[id]] = values[id];
+				}
+			c.essential = remap(essential, dense);
+			c.split = remap(split, dense);
+
+			c.links = new int[links.size() * 4];
+			int i = 0;
+			for (Map.Entry<Long, Long> e : links.entrySet()) {
+				c.links[i++] = remap((int) (e.getKey() >>> 32), dense);
+				c.links[i++] = remap((int) (long) e.getKey(), dense);
+				c.links[i++] = (int) (e.getValue() >>> 32);
+				c.links[i++] = (int) (long) e.getValue();
+			}
+
+			List<Checkpoint.SpeciesData> list = new ArrayList<Checkpoint.SpeciesData>(
+				species.size());
+			for (int s = 0; s < species.size(); s++) {
+				Checkpoint.SpeciesData sd = species.get(s);
+				Checkpoint.SpeciesData copy = new Checkpoint.SpeciesData(sd.id,
+					sd.topFitness, sd.averageFitness, sd.staleness,
+					slots.get(s).length);
+
+				for (int slot : slots.get(s)) {
+					Checkpoint.GenomeData gd = genomes.get(slot);
+					if (gd == null)
+						throw new IOException("Corrupt journal: genome " + slot);
+
+					copy.genomes.add(new Checkpoint.GenomeData(gd.id, gd.fitness,
+						gd.adjustedFitness, gd.rates, remap(gd.neurons, dense),
+						gd.genes, gd.lineage, gd.parent1, gd.parent2,
+						gd.operators));
+				}
+				list.add(copy);
+			}
+			c.species = list;
+
+			return c;
+		}
+
+		private static int[] remap(int[] ids, int[] dense) throws IOException {
+			int[] result = new int[ids.length];
+			for (int i = 0; i < ids.length; i++)
+				result[i] = remap(ids[i], dense);
+
+			return result;
+		}
+
+		private static int remap(int id, int[] dense) throws IOException {
+			if (id < 0 || id >= dense.length || dense[id] < 0)
+				throw new IOException("Corrupt journal: neuron " + id);
+
+			return dense[id];
+		}
+	}
+}
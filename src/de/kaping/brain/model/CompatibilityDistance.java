@@ -0,0 +1,147 @@
+package de.kaping.brain.model;
+
+/**
+ * Berechnet den Ähnlichkeitsgrad zweier Netzwerke für die Einteilung in
+ * Spezies. Die Verbindungen jedes Netzwerkes liegen bereits nach
+ * Innovationsnummer sortiert als {@link GeneTable} vor. Disjoint- und
+ * Excess-Verbindungen sowie der Gewichtungsunterschied übereinstimmender
+ * Verbindungen werden in einem einzigen gemeinsamen Durchlauf beider Tabellen
+ * ermittelt, ohne dabei Speicher anzufordern.
+ * <p>
+ * Der Ähnlichkeitsgrad setzt sich zusammen aus
+ * <code>cDisjoint * D / N + cWeight * W</code>, wobei <code>D</code> die
+ * Anzahl der nur in einem Netzwerk vorhandenen Verbindungen ist,
+ * <code>N</code> die Anzahl Verbindungen des größeren Netzwerkes und
+ * <code>W</code> der durchschnittliche Gewichtungsunterschied.
+ *
+ * @author MPreloaded
+ */
+public final class CompatibilityDistance {
+
+	private CompatibilityDistance() {
+	}
+
+	/**
+	 * Berechnet den vollständigen Ähnlichkeitsgrad zweier Netzwerke.
+	 *
+	 * @param a
+	 *           Verbindungen des ersten Netzwerkes
+	 * @param b
+	 *           Verbindungen des zweiten Netzwerkes
+	 * @param cDisjoint
+	 *           Gewichtung des Strukturunterschieds
+	 * @param cWeight
+	 *           Gewichtung des Gewichtungsunterschieds
+	 * @return Ähnlichkeitsgrad
+	 */
+	public static double distance(GeneTable a, GeneTable b, double cDisjoint,
+			double cWeight) {
+		return merge(a, b, cDisjoint, cWeight, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Prüft, ob der Ähnlichkeitsgrad zweier Netzwerke unterhalb der Schwelle
+	 * liegt. Der Durchlauf wird abgebrochen, sobald die Schwelle sicher
+	 * überschritten ist.
+	 *
+	 * @param a
+	 *           Verbindungen des ersten Netzwerkes
+	 * @param b
+	 *           Verbindungen des zweiten Netzwerkes
+	 * @param cDisjoint
+	 *           Gewichtung des Strukturunterschieds
+	 * @param cWeight
+	 *           Gewichtung des Gewichtungsunterschieds
+	 * @param threshold
+	 *           Schwelle
+	 * @return Wahrheitswert, ob die Netzwerke ähnlich genug sind
+	 */
+	public static boolean isCompatible(GeneTable a, GeneTable b,
+			double cDisjoint, double cWeight, double threshold) {
+		return merge(a, b, cDisjoint, cWeight, threshold) < threshold;
+	}
+
+	/**
+	 * Berechnet den Strukturunterschied (Anteil der Disjoint- und
+	 * Excess-Verbindungen) zweier Netzwerke.
+	 *
+	 * @param a
+	 *           Verbindungen des ersten Netzwerkes
+	 * @param b
+	 *           Verbindungen des zweiten Netzwerkes
+	 * @return Strukturunterschied
+	 */
+	public static double structure(GeneTable a, GeneTable b) {
+		return merge(a, b, 1., 0., Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Berechnet den durchschnittlichen Gewichtungsunterschied aller
+	 * übereinstimmenden Verbindungen zweier Netzwerke.
+	 *
+	 * @param a
+	 *           Verbindungen des ersten Netzwerkes
+	 * @param b
+	 *           Verbindungen des zweiten Netzwerkes
+	 * @return durchschnittlicher Gewichtungsunterschied
+	 */
+	public static double weight(GeneTable a, GeneTable b) {
+		return merge(a, b, 0., 1., Double.POSITIVE_INFINITY);
+	}
+
+	/*
+	 * Gemeinsamer Durchlauf beider Tabellen. Da beide Summanden nur
+	 * wachsen können, wird abgebrochen, sobald eine untere Schranke des
+	 * Ergebnisses die Schwelle erreicht. Der Rückgabewert ist dann nur diese
+	 * Schranke.
+	 */
+	private static double merge(GeneTable a, GeneTable b, double cDisjoint,
+			double cWeight, double threshold) {
+		int sizeA = a.size();
+		int sizeB = b.size();
+
+		double n = Math.max(sizeA, sizeB);
+		if (n < 0.5)
+			n = 1.;
+
+		/* je Disjoint-/Excess-Verbindung, bzw. je Gewichtungsunterschied */
+		double dScale = cDisjoint / n;
+		double wScale = cWeight / Math.max(1, Math.min(sizeA, sizeB));
+
+		/* mindestens die Differenz der Größen ist unterschiedlich */
+		if (Math.abs(sizeA - sizeB) * dScale >= threshold)
+			return Math.abs(sizeA - sizeB) * dScale;
+
+		int disjoint = 0;
+		int matching = 0;
+		double weightSum = 0.;
+		int i = 0;
+		int j = 0;
+
+		while (i < sizeA && j < sizeB) {
+			int x = a.getInnovation(i);
+			int y = b.getInnovation(j);
+
+			if (x == y) {
+				weightSum += Math.abs(a.getWeight(i++) - b.getWeight(j++));
+				matching++;
+			} else {
+				if (x < y)
+					i++;
+				else
+					j++;
+				disjoint++;
+			}
+
+			double bound = disjoint * dScale + weightSum * wScale;
+			if (bound >= threshold)
+				return bound;
+		}
+
+		/* Excess-Verbindungen */
+		disjoint += (sizeA - i) + (sizeB - j);
+
+		return disjoint * dScale
+			+ cWeight * weightSum / Math.max(1, matching);
+	}
+}
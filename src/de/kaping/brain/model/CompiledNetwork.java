@@ -0,0 +1,325 @@
+package de.kaping.brain.model;
+
+import java.util.List;
+
+/**
+ * Kompilierte Darstellung eines Netzwerkes (Phänotyp). Wird einmalig aus einem
+ * {@link Genome} erzeugt und enthält die Neuronen in topologischer Reihenfolge
+ * sowie alle aktiven Verbindungen als flache Arrays. Die Verbindungen sind nach
+ * ihrem Zielneuron sortiert, so dass eine Berechnung des Netzwerkes nur noch
+ * eine einzige Schleife ohne Allokationen benötigt.
+ * <p>
+ * Input- und Biasneuronen stehen immer am Anfang der Reihenfolge, die
+ * Inputneuronen in der Reihenfolge ihrer Erzeugung im Pool (absteigende
+ * Innovationsnummer). Ihre Werte werden vor jeder Berechnung gesetzt und nie
+ * verändert. Die Berechnung selbst verändert das Netzwerk nicht, wodurch eine
+ * kompilierte Darstellung von mehreren Threads mit jeweils eigenem
+ * {@link NetworkState} verwendet werden kann.
+ * <p>
+ * Sollte das Netzwerk (entgegen aller Prüfungen) einen Zyklus enthalten, so
+ * werden die betroffenen Neuronen hinten angehängt und verwenden für
+ * rückwärtsgerichtete Verbindungen den Wert der vorherigen Berechnung.
+ *
+ * @author MPreloaded
+ */
+public class CompiledNetwork {
+
+	private final Neuron[] nodes;
+	private final int inputCount;
+	private final int sourceCount;
+	private final int[] outputIndex;
+
+	/* Verbindungen, sortiert nach Zielneuron (Index in nodes) */
+	private final int[] source;
+	private final int[] target;
+	private final double[] weight;
+
+	private final ActivationFunction activation;
+
+	/* Werte für activate(), nur bei Verwendung der Neuronen benötigt */
+	private double[] values;
+
+	private CompiledNetwork(Neuron[] nodes, int inputCount, int sourceCount,
+			int[] outputIndex, int[] source, int[] target, double[] weight,
+			ActivationFunction activation) {
+		super();
+		this.nodes = nodes;
+		this.inputCount = inputCount;
+		this.sourceCount = sourceCount;
+		this.outputIndex = outputIndex;
+		this.source = source;
+		this.target = target;
+		this.weight = weight;
+		this.activation = activation;
+	}
+
+	/**
+	 * Erzeugt die kompilierte Darstellung eines Netzwerkes. Inaktive
+	 * Verbindungen und Verbindungen zu Neuronen, die nicht Teil des Netzwerkes
+	 * sind, werden übersprungen. Die Aktivierungsfunktion wird aus dem Pool
+	 * übernommen.
+	 *
+	 * @param genome
+	 *           zu kompilierendes Netzwerk
+	 * @return kompiliertes Netzwerk
+	 */
+	public static CompiledNetwork compile(Genome genome) {
+		List<Neuron> neurons = genome.getNeurons();
+		GeneTable genes = genome.getGeneTable();
+		int size = neurons.size();
+
+		/* Alle aktiven und gültigen Verbindungen sammeln */
+		int[] from = new int[genes.size()];
+		int[] to = new int[genes.size()];
+		double[] w = new double[genes.size()];
+		int edges = 0;
+
+		for (int g = 0; g < genes.size(); g++) {
+			int i = genes.getTarget(g);
+
+			if (!genes.isEnabled(g) || isSource(neurons.get(i)))
+				continue;
+
+			from[edges] = genes.getSource(g);
+			to[edges] = i;
+			w[edges] = genes.getWeight(g);
+			edges++;
+		}
+
+		/* Topologische Sortierung (Kahn) */
+		int[] position = new int[size];
+		int[] order = new int[size];
+		int[] inDegree = new int[size];
+		int count = 0;
+
+		for (int i = 0; i < size; i++)
+			if (neurons.get(i).getType() == Type.INPUT)
+				order[count++] = i;
+		sortByCreation(neurons, order, 0, count);
+		int inputCount = count;
+
+		for (int i = 0; i < size; i++)
+			if (neurons.get(i).getType() == Type.BIAS)
+				order[count++] = i;
+		int sourceCount = count;
+
+		for (int i = 0; i < sourceCount; i++)
+			position[order[i]] = i;
+
+		for (int e = 0; e < edges; e++)
+			if (!isSource(neurons.get(from[e])))
+				inDegree[to[e]]++;
+
+		int[] outStart = new int[size + 1];
+		for (int e = 0; e < edges; e++)
+			outStart[from[e] + 1]++;
+		for (int i = 0; i < size; i++)
+			outStart[i + 1] += outStart[i];
+		int[] outEdges = new int[edges];
+		int[] fill = outStart.clone();
+		for (int e = 0; e < edges; e++)
+			outEdges[fill[from[e]]++] = e;
+
+		int head = count;
+		for (int i = 0; i < size; i++)
+			if (!isSource(neurons.get(i)) && inDegree[i] == 0)
+				order[count++] = i;
+
+		while (head < count) {
+			int n = order[head];
+			position[n] = head++;
+
+			for (int k = outStart[n]; k < outStart[n + 1]; k++) {
+				int t = to[outEdges[k]];
+				if (--inDegree[t] == 0)
+					order[count++] = t;
+			}
+		}
+
+		/* Neuronen innerhalb eines Zyklus werden hinten angehängt */
+		if (count < size)
+			for (int i = 0; i < size; i++)
+				if (!isSource(neurons.get(i)) && inDegree[i] > 0) {
+					position[i] = count;
+					order[count++] = i;
+				}
+
+		Neuron[] nodes = new Neuron[size];
+		int outputs = 0;
+		for (int i = 0; i < size; i++) {
+			nodes[i] = neurons.get(order[i]);
+			if (nodes[i].getType() == Type.OUTPUT)
+				outputs++;
+		}
+
+		int[] outputOrder = new int[outputs];
+		outputs = 0;
+		for (int i = 0; i < size; i++)
+			if (neurons.get(i).getType() == Type.OUTPUT)
+				outputOrder[outputs++] = i;
+		sortByCreation(neurons, outputOrder, 0, outputs);
+
+		int[] outputIndex = new int[outputs];
+		for (int i = 0; i < outputs; i++)
+			outputIndex[i] = position[outputOrder[i]];
+
+		/* Verbindungen nach Position des Zielneurons sortieren (Counting Sort) */
+		int[] start = new int[size + 1];
+		for (int e = 0; e < edges; e++)
+			start[position[to[e]] + 1]++;
+		for (int i = 0; i < size; i++)
+			start[i + 1] += start[i];
+
+		int[] source = new int[edges];
+		int[] target = new int[edges];
+		double[] weight = new double[edges];
+		for (int e = 0; e < edges; e++) {
+			int slot = start[position[to[e]]]++;
+			source[slot] = position[from[e]];
+			target[slot] = position[to[e]];
+			weight[slot] = w[e];
+		}
+
+		return new CompiledNetwork(nodes, inputCount, sourceCount, outputIndex,
+			source, target, weight, Pool.getInstance().getActivationFunction());
+	}
+
+	/**
+	 * Berechnet alle Neuronen des Netzwerkes. Die Werte der Input- und
+	 * Biasneuronen werden aus den Neuronen übernommen, die berechneten Werte
+	 * anschließend wieder in die Neuronen geschrieben. Da die Neuronen von
+	 * allen Netzwerken geteilt werden, darf diese Methode nicht parallel
+	 * verwendet werden.
+	 */
+	public void activate() {
+		if (values == null)
+			values = new double[nodes.length];
+
+		for (int i = 0; i < sourceCount; i++)
+			values[i] = nodes[i].getValue();
+
+		this.propagate(values);
+
+		for (int n = sourceCount; n < nodes.length; n++)
+			nodes[n].setValue(values[n]);
+	}
+
+	/**
+	 * Berechnet das Netzwerk mit den Inputwerten aus <code>state</code> und
+	 * schreibt die Werte der Outputneuronen zurück in <code>state</code>. Es
+	 * wird weder das Netzwerk noch eines der Neuronen verändert.
+	 *
+	 * @param state
+	 *           Zustand des aufrufenden Threads
+	 * @throws IllegalArgumentException
+	 *            falls die Anzahl Inputs oder Outputs von state nicht zum
+	 *            Netzwerk passt
+	 */
+	public void activate(NetworkState state) {
+		double[] inputs = state.getInputs();
+		double[] outputs = state.getOutputs();
+
+		if (inputs.length != inputCount || outputs.length != outputIndex.length)
+			throw new IllegalArgumentException("Network has " + inputCount
+				+ " inputs and " + outputIndex.length + " outputs, state has "
+				+ inputs.length + " and " + outputs.length);
+
+		double[] values = state.getValues(nodes.length);
+		for (int i = 0; i < inputCount; i++)
+			values[i] = inputs[i];
+		for (int i = inputCount; i < sourceCount; i++)
+			values[i] = nodes[i].getValue();
+
+		this.propagate(values);
+
+		for (int i = 0; i < outputs.length; i++)
+			outputs[i] = values[outputIndex[i]];
+	}
+
+	/* Berechnet alle Neuronen in topologischer Reihenfolge */
+	private void propagate(double[] values) {
+		int e = 0;
+		int edges = target.length;
+
+		for (int n = sourceCount; n < nodes.length; n++) {
+			double sum = 0.;
+
+			while (e < edges && target[e] == n) {
+				sum += weight[e] * values[source[e]];
+				e++;
+			}
+
+			values[n] = activation.apply(sum);
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Neuronen des Netzwerkes zurück.
+	 *
+	 * @return Anzahl Neuronen
+	 */
+	public int getNodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * Gibt die Anzahl der aktiven Verbindungen des Netzwerkes zurück.
+	 *
+	 * @return Anzahl aktiver Verbindungen
+	 */
+	public int getConnectionCount() {
+		return target.length;
+	}
+
+	/**
+	 * Gibt die Aktivierungsfunktion zurück, mit der das Netzwerk kompiliert
+	 * wurde.
+	 *
+	 * @return Aktivierungsfunktion
+	 */
+	public ActivationFunction getActivationFunction() {
+		return activation;
+	}
+
+	/**
+	 * Gibt die Anzahl der Inputneuronen des Netzwerkes zurück.
+	 *
+	 * @return Anzahl Inputneuronen
+	 */
+	public int getInputCount() {
+		return inputCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der Outputneuronen des Netzwerkes zurück.
+	 *
+	 * @return Anzahl Outputneuronen
+	 */
+	public int getOutputCount() {
+		return outputIndex.length;
+	}
+
+	/*
+	 * Sortiert Neuronenindizes nach ihrer Erzeugung im Pool. Input-, Bias- und
+	 * Outputneuronen bekommen dort absteigende, negative Innovationsnummern.
+	 */
+	private static void sortByCreation(List<Neuron> neurons, int[] idx,
+			int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int n = idx[i];
+			int inn = neurons.get(n).getInnovation();
+			int j = i - 1;
+
+			while (j >= from && neurons.get(idx[j]).getInnovation() < inn) {
+				idx[j + 1] = idx[j];
+				j--;
+			}
+			idx[j + 1] = n;
+		}
+	}
+
+	/* Input- und Biasneuronen werden nicht berechnet */
+	private static boolean isSource(Neuron n) {
+		return n.getType() == Type.INPUT || n.getType() == Type.BIAS;
+	}
+}
@@ -0,0 +1,111 @@
+package de.kaping.brain.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Kreuzung zweier Netzwerke (siehe {@link Genome#matchGenomes(Genome)}). Die
+ * Verbindungen beider Eltern liegen bereits nach Innovationsnummer sortiert
+ * als {@link GeneTable} vor und werden in einem einzigen gemeinsamen Durchlauf
+ * zusammengeführt. Die Eltern werden dabei weder sortiert noch sonst
+ * verändert.
+ * <p>
+ * Übereinstimmende Verbindungen werden zufällig von einem der beiden Eltern
+ * übernommen, Disjoint- und Excess-Verbindungen nur vom besseren. Da gleiche
+ * Innovationsnummern immer die gleichen Neuronen verbinden (siehe
+ * {@link InnovationRegistry}), hat das Kind genau die Struktur des besseren
+ * Elternteils und kann weder doppelte Verbindungen noch Zyklen enthalten.
+ * Die Neuronen des Kindes werden über eine Abbildung der Neuronenindizes des
+ * besseren Elternteils gesammelt, die jeder Thread wiederverwendet.
+ *
+ * @author MPreloaded
+ */
+final class Crossover {
+
+	/* Neuronenindex im besseren Elternteil -> Index im Kind oder -1 */
+	private static final ThreadLocal<int[]> maps = ThreadLocal
+		.withInitial(() -> new int[64]);
+
+	private Crossover() {
+	}
+
+	/*
+	 * Füllt die Verbindungen (child) und Neuronen (neurons) des Kindes aus
+	 * dem besseren (h) und dem schlechteren (l) Netzwerk. Die notwendigen
+	 * Neuronen stehen im Kind immer vorne, danach folgen die übrigen in der
+	 * Reihenfolge der Verbindungen.
+	 */
+	static void merge(Genome h, Genome l, List<Neuron> essential,
+			GeneTable child, List<Neuron> neurons, SplittableRandom random) {
+		GeneTable hg = h.getGeneTable();
+		GeneTable lg = l.getGeneTable();
+		List<Neuron> hn = h.getNeurons();
+		int[] map = mapOf(hn.size());
+
+		for (Neuron n : essential) {
+			int k = indexOf(hn, n, neurons.size());
+
+			if (k >= 0)
+				map[k] = neurons.size();
+			neurons.add(n);
+		}
+
+		int j = 0;
+		for (int i = 0; i < hg.size(); i++) {
+			int innovation = hg.getInnovation(i);
+
+			while (j < lg.size() && lg.getInnovation(j) < innovation)
+				j++;
+
+			int source = index(map, hn, hg.getSource(i), neurons);
+			int target = index(map, hn, hg.getTarget(i), neurons);
+
+			if (j < lg.size() && lg.getInnovation(j) == innovation
+				&& random.nextDouble() < 0.5 && lg.isEnabled(j)) {
+			child.add(innovation, source, target, lg.getWeight(j), true);
+			} else
+			child.add(innovation, source, target, hg.getWeight(i),
+				hg.isEnabled(i));
+		}
+	}
+
+	/* Index eines Neurons im Kind, wird beim ersten Auftreten übernommen */
+	private static int index(int[] map, List<Neuron> hn, int k,
+			List<Neuron> neurons) {
+		if (map[k] < 0) {
+			map[k] = neurons.size();
+			neurons.add(hn.get(k));
+		}
+
+		return map[k];
+	}
+
+	/*
+	 * Sucht ein Neuron zuerst an der erwarteten Stelle (die notwendigen
+	 * Neuronen stehen meist vorne), dann in der ganzen Liste.
+	 */
+	private static int indexOf(List<Neuron> list, Neuron n, int expected) {
+		if (expected < list.size() && list.get(expected) == n)
+			return expected;
+
+		for (int i = 0; i < list.size(); i++)
+			if (list.get(i) == n)
+			return i;
+
+		return -1;
+	}
+
+	/* Gibt die geleerte Abbildung des aktuellen Threads zurück */
+	private static int[] mapOf(int size) {
+		int[] map = maps.get();
+
+		if (map.length < size) {
+			map = new int[Math.max(size, map.length * 2)];
+			maps.set(map);
+		}
+		Arrays.fill(map, 0, size, -1);
+
+		return map;
+	}
+}
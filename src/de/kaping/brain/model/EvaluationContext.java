@@ -0,0 +1,117 @@
+package de.kaping.brain.model;
+
+/**
+ * Kontext einer Bewertung, der einer {@link FitnessFunction} übergeben wird.
+ * Enthält wiederverwendbare Puffer für die Input- und Outputwerte eines
+ * Netzwerkes sowie den Aktivierungszustand des Threads. Jeder Thread des Pools
+ * besitzt einen eigenen Kontext, der für alle Netzwerke und Testfälle
+ * wiederverwendet wird.
+ * <p>
+ * Inputs und Outputs werden über ihren Index angesprochen, der der Reihenfolge
+ * der Erzeugung durch {@link Pool#initializePool(int, int, FitnessFunction)}
+ * entspricht.
+ *
+ * @author MPreloaded
+ */
+public class EvaluationContext {
+
+	private final NetworkState state;
+	private Object[] arguments;
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param inputs
+	 *           Anzahl Inputneuronen
+	 * @param outputs
+	 *           Anzahl Outputneuronen
+	 */
+	public EvaluationContext(int inputs, int outputs) {
+		super();
+		this.state = new NetworkState(inputs, outputs);
+		this.arguments = new Object[0];
+	}
+
+	/**
+	 * Gibt den Puffer der Inputwerte zurück. Änderungen wirken sich direkt auf
+	 * die nächste Berechnung aus.
+	 *
+	 * @return Inputwerte
+	 */
+	public double[] getInputs() {
+		return state.getInputs();
+	}
+
+	/**
+	 * Gibt den Puffer der Outputwerte der letzten Berechnung zurück.
+	 *
+	 * @return Outputwerte
+	 */
+	public double[] getOutputs() {
+		return state.getOutputs();
+	}
+
+	/**
+	 * Setzt den Wert eines Inputneurons.
+	 *
+	 * @param index
+	 *           Index des Inputneurons
+	 * @param value
+	 *           neuer Wert
+	 */
+	public void setInput(int index, double value) {
+		state.setInput(index, value);
+	}
+
+	/**
+	 * Gibt den Wert eines Outputneurons der letzten Berechnung zurück.
+	 *
+	 * @param index
+	 *           Index des Outputneurons
+	 * @return Wert des Outputneurons
+	 */
+	public double getOutput(int index) {
+		return state.getOutput(index);
+	}
+
+	/**
+	 * Berechnet ein Netzwerk mit den aktuellen Inputwerten und schreibt die
+	 * Ergebnisse in die Outputwerte.
+	 *
+	 * @param genome
+	 *           zu berechnendes Netzwerk
+	 */
+	public void activate(Genome genome) {
+		state.simulate(genome);
+	}
+
+	/**
+	 * Gibt den Aktivierungszustand dieses Kontextes zurück.
+	 *
+	 * @return Aktivierungszustand
+	 */
+	public NetworkState getState() {
+		return state;
+	}
+
+	/**
+	 * Gibt die Argumente zurück, die an
+	 * {@link Pool#evaluateGenomes(Object...)} übergeben wurden. Nur für
+	 * Bewertungen auf Basis von {@link AbstractFunction} gedacht.
+	 *
+	 * @return weitere Argumente der Bewertung
+	 */
+	public Object[] getArguments() {
+		return arguments;
+	}
+
+	/**
+	 * Setzt die weiteren Argumente der Bewertung.
+	 *
+	 * @param arguments
+	 *           weitere Argumente der Bewertung
+	 */
+	public void setArguments(Object[] arguments) {
+		this.arguments = (arguments == null) ? new Object[0] : arguments;
+	}
+}
@@ -0,0 +1,332 @@
+package de.kaping.brain.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Steuert die Evolution eines Pools ohne Oberfläche. Eine Generation besteht
+ * aus der Erzeugung neuer Netzwerke ({@link Pool#newGeneration()}) und deren
+ * Bewertung ({@link Pool#evaluateGenomes(Object...)}). Es können eine feste
+ * Anzahl Generationen oder bis zum Erreichen einer Zielbewertung durchlaufen
+ * werden. Die Oberfläche und der {@link de.kaping.brain.BatchRunner} bauen
+ * beide darauf auf.
+ *
+ * @author MPreloaded
+ */
+public class Evolution {
+
+	private static final Logger log = LogManager.getLogger();
+
+	/**
+	 * Wird nach jeder abgeschlossenen Generation benachrichtigt.
+	 */
+	public interface Listener {
+		/**
+		 * Eine Generation wurde erzeugt und bewertet.
+		 *
+		 * @param evolution
+		 *           laufende Evolution
+		 */
+		void generationDone(Evolution evolution);
+	}
+
+	private final Pool pool;
+	private final Object[] arguments;
+	private final List<Listener> listeners;
+	private GenerationStats statistics;
+	private GenomeHistory genomeHistory;
+	private LineageStore lineage;
+
+	private int generations;
+	private long nanos;
+	private Genome bestGenome;
+
+	/**
+	 * Konstruktor für einen bereits initialisierten Pool.
+	 *
+	 * @param pool
+	 *           initialisierter Pool
+	 * @param arguments
+	 *           weitere Argumente für die Bewertungsfunktion
+	 */
+	public Evolution(Pool pool, Object... arguments) {
+		super();
+		this.pool = pool;
+		this.arguments = arguments;
+		this.listeners = new ArrayList<Listener>();
+		this.generations = 0;
+		this.nanos = 0L;
+		this.bestGenome = pool.getSpecies().isEmpty() ? null
+			: pool.getBestGenome();
+		this.statistics = new GenerationStats();
+
+		if (bestGenome != null)
+			this.statistics.record(pool, 0L);
+	}
+
+	/**
+	 * Initialisiert den Pool und erzeugt eine Evolution dafür. Die Liste der
+	 * notwendigen Neuronen wird wie bisher als Argument an die
+	 * Bewertungsfunktion übergeben.
+	 *
+	 * @param inputs
+	 *           Anzahl Inputneuronen
+	 * @param outputs
+	 *           Anzahl Outputneuronen
+	 * @param function
+	 *           Bewertungsfunktion
+	 * @return neue Evolution
+	 */
+	public static Evolution start(int inputs, int outputs,
+			FitnessFunction function) {
+		Pool pool = Pool.getInstance();
+		List<Neuron> neurons = pool.initializePool(inputs, outputs, function);
+
+		return new Evolution(pool, neurons);
+	}
+
+	/**
+	 * Setzt den Pool auf einen Checkpoint zurück (siehe
+	 * {@link Pool#resume(Path, FitnessFunction)}) und erzeugt eine Evolution
+	 * dafür, die den gesicherten Lauf fortsetzt.
+	 *
+	 * @param path
+	 *           Datei des Checkpoints
+	 * @param function
+	 *           Bewertungsfunktion
+	 * @return neue Evolution
+	 * @throws IOException
+	 *            falls der Checkpoint nicht gelesen werden kann
+	 */
+	public static Evolution resume(Path path, FitnessFunction function)
+			throws IOException {
+		Pool pool = Pool.getInstance();
+		List<Neuron> neurons = pool.resume(path, function);
+
+		return new Evolution(pool, neurons);
+	}
+
+	/**
+	 * Fügt einen Listener hinzu, der nach jeder Generation benachrichtigt
+	 * wird.
+	 *
+	 * @param listener
+	 *           neuer Listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Entfernt einen Listener.
+	 *
+	 * @param listener
+	 *           zu entfernender Listener
+	 */
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Erzeugt und bewertet eine neue Generation.
+	 */
+	public void step() {
+		long start = System.nanoTime();
+
+		pool.newGeneration();
+		pool.evaluateGenomes(arguments);
+		bestGenome = pool.getBestGenome();
+
+		long elapsed = System.nanoTime() - start;
+		nanos += elapsed;
+		generations++;
+
+		if (statistics != null)
+			statistics.record(pool, elapsed);
+		if (genomeHistory != null)
+			genomeHistory.record(pool);
+		if (lineage != null)
+			this.recordLineage();
+
+		for (Listener l : listeners)
+			l.generationDone(this);
+	}
+
+	/**
+	 * Durchläuft eine feste Anzahl Generationen.
+	 *
+	 * @param count
+	 *           Anzahl Generationen
+	 */
+	public void run(int count) {
+		for (int i = 0; i < count; i++)
+			this.step();
+	}
+
+	/**
+	 * Durchläuft Generationen, bis ein Netzwerk mindestens die Zielbewertung
+	 * erreicht oder <code>maxGenerations</code> durchlaufen wurden.
+	 *
+	 * @param target
+	 *           Zielbewertung
+	 * @param maxGenerations
+	 *           maximale Anzahl Generationen
+	 * @return Wahrheitswert, ob die Zielbewertung erreicht wurde
+	 */
+	public boolean runUntil(double target, int maxGenerations) {
+		for (int i = 0; i < maxGenerations; i++) {
+			if (this.getBestFitness() >= target)
+				break;
+			this.step();
+		}
+
+		boolean reached = this.getBestFitness() >= target;
+		log.debug("runUntil " + target + ": " + (reached ? "reached" : "missed")
+			+ " after " + generations + " generations");
+
+		return reached;
+	}
+
+	/**
+	 * Gibt den Pool zurück.
+	 *
+	 * @return Pool
+	 */
+	public Pool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gibt den Verlauf aller Generationen dieser Evolution zurück.
+	 *
+	 * @return Verlauf oder <code>null</code>, wenn er abgeschaltet ist
+	 */
+	public GenerationStats getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Setzt den Verlauf, in den nach jeder Generation geschrieben wird.
+	 * <code>null</code> schaltet die Aufzeichnung ab.
+	 *
+	 * @param statistics
+	 *           neuer Verlauf oder <code>null</code>
+	 */
+	public void setStatistics(GenerationStats statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Gibt den Verlauf der einzelnen Netzwerke zurück.
+	 *
+	 * @return Verlauf oder <code>null</code>, wenn er nicht aufgezeichnet wird
+	 */
+	public GenomeHistory getGenomeHistory() {
+		return genomeHistory;
+	}
+
+	/**
+	 * Setzt den Verlauf der einzelnen Netzwerke, in den nach jeder Generation
+	 * geschrieben wird. Ist die aktuelle Generation bereits bewertet, wird sie
+	 * sofort aufgenommen. <code>null</code> schaltet die Aufzeichnung ab
+	 * (Standard).
+	 *
+	 * @param genomeHistory
+	 *           neuer Verlauf oder <code>null</code>
+	 */
+	public void setGenomeHistory(GenomeHistory genomeHistory) {
+		this.genomeHistory = genomeHistory;
+
+		if (genomeHistory != null && bestGenome != null)
+			genomeHistory.record(pool);
+	}
+
+	/**
+	 * Gibt den Stammbaum zurück, in den die Netzwerke geschrieben werden.
+	 *
+	 * @return Stammbaum oder <code>null</code>, wenn er nicht aufgezeichnet
+	 *         wird
+	 */
+	public LineageStore getLineageStore() {
+		return lineage;
+	}
+
+	/**
+	 * Setzt den Stammbaum, in den nach jeder Generation alle neuen Netzwerke
+	 * geschrieben werden. Ist die aktuelle Generation bereits bewertet, wird
+	 * sie sofort aufgenommen. <code>null</code> schaltet die Aufzeichnung ab
+	 * (Standard); geschlossen wird der Stammbaum vom Aufrufer.
+	 *
+	 * @param lineage
+	 *           neuer Stammbaum oder <code>null</code>
+	 */
+	public void setLineageStore(LineageStore lineage) {
+		this.lineage = lineage;
+
+		if (lineage != null && bestGenome != null)
+			this.recordLineage();
+	}
+
+	/* Schreibt die neuen Netzwerke in den Stammbaum */
+	private void recordLineage() {
+		try {
+			lineage.record(pool);
+		} catch (IOException e) {
+			throw new UncheckedIOException(
+				"Writing lineage " + lineage.getPath() + " failed", e);
+		}
+	}
+
+	/**
+	 * Gibt das beste Netzwerk der aktuellen Generation zurück.
+	 *
+	 * @return bestes Netzwerk
+	 */
+	public Genome getBestGenome() {
+		return bestGenome;
+	}
+
+	/**
+	 * Gibt die beste Bewertung der aktuellen Generation zurück.
+	 *
+	 * @return beste Bewertung
+	 */
+	public double getBestFitness() {
+		return (bestGenome == null) ? Double.NEGATIVE_INFINITY
+			: bestGenome.getFitness();
+	}
+
+	/**
+	 * Gibt die Anzahl der von dieser Evolution durchlaufenen Generationen
+	 * zurück.
+	 *
+	 * @return Anzahl Generationen
+	 */
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * Gibt die gesamte Rechenzeit aller Generationen in Nanosekunden zurück.
+	 *
+	 * @return Rechenzeit in Nanosekunden
+	 */
+	public long getElapsedNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Gibt die durchschnittliche Anzahl Generationen pro Sekunde zurück.
+	 *
+	 * @return Generationen pro Sekunde
+	 */
+	public double getGenerationsPerSecond() {
+		return (nanos == 0L) ? 0. : generations / (nanos / 1e9);
+	}
+}
@@ -0,0 +1,39 @@
+package de.kaping.brain.model;
+
+/**
+ * Bewertungsfunktion für Netzwerke. Eine Bewertung schreibt ihre Testfälle in
+ * die Inputwerte des übergebenen {@link EvaluationContext}, berechnet das
+ * Netzwerk über {@link EvaluationContext#activate(Genome)} und liest die
+ * Outputwerte wieder aus. Dabei werden weder Arrays noch Objekte pro Aufruf
+ * erzeugt und die Reihenfolge der Neuronen im Netzwerk muss nicht bekannt
+ * sein.
+ * <p>
+ * Bestehende Bewertungen auf Basis von {@link AbstractFunction} implementieren
+ * dieses Interface bereits über einen Adapter.
+ *
+ * @author MPreloaded
+ */
+public interface FitnessFunction {
+
+	/**
+	 * Bewertet ein Netzwerk.
+	 *
+	 * @param genome
+	 *           zu bewertendes Netzwerk
+	 * @param context
+	 *           Bewertungskontext des aufrufenden Threads
+	 * @return Bewertung des Netzwerkes
+	 */
+	public double evaluate(Genome genome, EvaluationContext context);
+
+	/**
+	 * Gibt zurück, ob die Bewertung parallel ausgeführt werden darf. Das ist
+	 * der Fall, wenn ausschließlich der übergebene Kontext und keine Neuronen
+	 * verwendet werden.
+	 *
+	 * @return Wahrheitswert, ob parallele Bewertung möglich ist
+	 */
+	public default boolean isThreadSafe() {
+		return true;
+	}
+}
@@ -13,6 +13,11 @@ import org.apache.logging.log4j.Logger;
  * <code>into</code>. Sollte eine Verbindung inaktiv sein, so wird dies über
  * <code>enabled=false</code> dargestellt. Dies wird gespeichert, da durch
  * Mutierungen des Netzwerkes inaktive Verbindung reaktiviert werden können.
+ * <p>
+ * Ein {@link Genome} speichert seine Verbindungen nicht als einzelne Objekte,
+ * sondern in einer {@link GeneTable}. Gene dienen nur noch zum Hinzufügen von
+ * Verbindungen und zur Anzeige; Änderungen an einem Gen aus
+ * {@link Genome#getGenes()} wirken sich nicht auf das Netzwerk aus.
  * 
  * @author MPreloaded
  */
@@ -0,0 +1,608 @@
+package de.kaping.brain.model;
+
+import java.util.Arrays;
+
+/**
+ * Verbindungen eines Netzwerkes als parallele Arrays, nach Innovationsnummer
+ * sortiert. Für jede Verbindung werden Innovationsnummer, Ursprung und Ziel
+ * (als Index in der Neuronenliste des Netzwerkes) und Gewichtung in eigenen
+ * Arrays gehalten, die Aktivität als Bitfeld. Ein Netzwerk besteht damit aus
+ * einer Handvoll zusammenhängender Arrays statt aus einem Objekt je
+ * Verbindung, und Kreuzung, Ähnlichkeitsgrad, Mutation und Kompilierung
+ * laufen linear über den Speicher.
+ * <p>
+ * Gleiche Innovationsnummern werden in der Reihenfolge ihres Einfügens
+ * gehalten. Verändert wird eine Tabelle nur über ihr {@link Genome}, von
+ * außen ist sie nur lesbar.
+ * <p>
+ * Die Verbindungen liegen in Abschnitten zu je {@value #SEGMENT} Einträgen
+ * (Copy-on-Write). Eine Kopie übernimmt nur die Verweise auf die Abschnitte
+ * des Originals; erst wenn eine der beiden Tabellen einen gemeinsamen
+ * Abschnitt verändert, erhält sie eine eigene Kopie genau dieses Abschnittes.
+ * Ein Kind, dessen Mutation nur eine Verbindung anhängt, kopiert so nur den
+ * letzten Abschnitt seines Elternteils. Abschnitte werden aus einem Puffer
+ * der {@link PopulationArena} vergeben oder, ohne Puffer, einzeln angelegt.
+ *
+ * @author MPreloaded
+ */
+public class GeneTable {
+
+	/* Einträge je Abschnitt, entspricht einem Wort des Bitfeldes */
+	static final int SEGMENT = 64;
+	private static final int SHIFT = 6;
+	private static final int MASK = SEGMENT - 1;
+
+	/* Herkunft neuer Abschnitte, null bedeutet einzeln angelegt */
+	private PopulationArena.Buffer buffer;
+	private Segment[] segments;
+	private int size;
+
+	/**
+	 * Konstruktor
+	 */
+	public GeneTable() {
+		this(8);
+	}
+
+	/**
+	 * Konstruktor mit erwarteter Anzahl Verbindungen.
+	 *
+	 * @param capacity
+	 *           erwartete Anzahl Verbindungen
+	 */
+	public GeneTable(int capacity) {
+		this(capacity, null);
+	}
+
+	/*
+	 * Konstruktor für eine Tabelle, deren Abschnitte aus einem Puffer der
+	 * PopulationArena stammen (bzw. einzeln angelegt werden, wenn buffer null
+	 * ist).
+	 */
+	GeneTable(int capacity, PopulationArena.Buffer buffer) {
+		this(new Segment[Math.max(1, (capacity + MASK) >>> SHIFT)], 0, buffer);
+	}
+
+	private GeneTable(Segment[] segments, int size,
+			PopulationArena.Buffer buffer) {
+		super();
+		this.buffer = buffer;
+		this.segments = segments;
+		this.size = size;
+	}
+
+	/**
+	 * Erzeugt eine Kopie dieser Tabelle. Abschnitte aus der
+	 * {@link PopulationArena} werden sofort kopiert, da ihr Speicher nach zwei
+	 * Generationen wiederverwendet wird; die übrigen teilen sich beide
+	 * Tabellen, bis eine von ihnen verändert wird. Die Kopie bleibt also auch
+	 * gültig, wenn das Original den Pool verlässt.
+	 *
+	 * @return Kopie
+	 */
+	public GeneTable copy() {
+		return this.copy(null);
+	}
+
+	/*
+	 * Erzeugt eine Kopie dieser Tabelle, die veränderte Abschnitte aus dem
+	 * angegebenen Puffer bezieht. Ohne Puffer wird sie von der Arena gelöst
+	 * (siehe copy()).
+	 */
+	GeneTable copy(PopulationArena.Buffer buffer) {
+		GeneTable copy = this.share(buffer);
+		if (buffer == null)
+			copy.detach();
+
+		return copy;
+	}
+
+	/*
+	 * Erzeugt eine Kopie, die alle Abschnitte teilt, auch die aus der Arena.
+	 * Nur für Kopien, die vor dem Überschreiben des Puffers verworfen werden
+	 * (z.B. Checkpoint#of(), der vor der übernächsten Generation geschrieben
+	 * ist).
+	 */
+	GeneTable share() {
+		return this.share(null);
+	}
+
+	private GeneTable share(PopulationArena.Buffer buffer) {
+		this.freeze();
+
+		return new GeneTable(segments.clone(), size, buffer);
+	}
+
+	/* Ersetzt alle Abschnitte aus der Arena durch eigene Kopien */
+	private void detach() {
+		int used = (size + MASK) >>> SHIFT;
+
+		for (int k = 0; k < segments.length; k++) {
+			Segment s = segments[k];
+
+			if (s == null || s.buffer == null)
+				continue;
+			if (k >= used) {
+				segments[k] = null;
+				continue;
+			}
+
+			Segment own = new Segment();
+			own.copyFrom(s);
+			own.owner = this;
+			segments[k] = own;
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Verbindungen zurück.
+	 *
+	 * @return Anzahl Verbindungen
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gibt die Innovationsnummer einer Verbindung zurück.
+	 *
+	 * @param index
+	 *           Index der Verbindung
+	 * @return Innovationsnummer
+	 */
+	public int getInnovation(int index) {
+		Segment s = segments[index >>> SHIFT];
+
+		return s.innovations[s.offset + (index & MASK)];
+	}
+
+	/**
+	 * Gibt den Index des Ursprungsneurons einer Verbindung zurück.
+	 *
+	 * @param index
+	 *           Index der Verbindung
+	 * @return Index des Ursprungsneurons im Netzwerk
+	 */
+	public int getSource(int index) {
+		Segment s = segments[index >>> SHIFT];
+
+		return s.sources[s.offset + (index & MASK)];
+	}
+
+	/**
+	 * Gibt den Index des Zielneurons einer Verbindung zurück.
+	 *
+	 * @param index
+	 *           Index der Verbindung
+	 * @return Index des Zielneurons im Netzwerk
+	 */
+	public int getTarget(int index) {
+		Segment s = segments[index >>> SHIFT];
+
+		return s.targets[s.offset + (index & MASK)];
+	}
+
+	/**
+	 * Gibt die Gewichtung einer Verbindung zurück.
+	 *
+	 * @param index
+	 *           Index der Verbindung
+	 * @return Gewichtung
+	 */
+	public double getWeight(int index) {
+		Segment s = segments[index >>> SHIFT];
+
+		return s.weights[s.offset + (index & MASK)];
+	}
+
+	/**
+	 * Gibt zurück, ob eine Verbindung aktiv ist.
+	 *
+	 * @param index
+	 *           Index der Verbindung
+	 * @return Wahrheitswert, ob die Verbindung aktiv ist
+	 */
+	public boolean isEnabled(int index) {
+		Segment s = segments[index >>> SHIFT];
+
+		return (s.enabled[s.word] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Gibt die höchste Innovationsnummer zurück.
+	 *
+	 * @return höchste Innovationsnummer oder <code>0</code>, wenn die Tabelle
+	 *         leer ist
+	 */
+	public int getMaxInnovation() {
+		return (size == 0) ? 0 : this.getInnovation(size - 1);
+	}
+
+	/**
+	 * Sucht eine Verbindung über ihre Innovationsnummer (binäre Suche).
+	 *
+	 * @param innovation
+	 *           Innovationsnummer
+	 * @return Index der ersten Verbindung mit dieser Innovationsnummer oder
+	 *         <code>-1</code>
+	 */
+	public int indexOf(int innovation) {
+		int i = lowerBound(innovation);
+
+		return (i < size && this.getInnovation(i) == innovation) ? i : -1;
+	}
+
+	/**
+	 * Sucht eine Verbindung über Ursprung und Ziel.
+	 *
+	 * @param source
+	 *           Index des Ursprungsneurons
+	 * @param target
+	 *           Index des Zielneurons
+	 * @return Index der Verbindung oder <code>-1</code>
+	 */
+	public int indexOf(int source, int target) {
+		for (int base = 0; base < size; base += SEGMENT) {
+			Segment s = segments[base >>> SHIFT];
+			int n = Math.min(SEGMENT, size - base);
+
+			for (int j = 0; j < n; j++)
+				if (s.sources[s.offset + j] == source
+					&& s.targets[s.offset + j] == target)
+					return base + j;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Zählt die aktiven bzw. inaktiven Verbindungen.
+	 *
+	 * @param enabled
+	 *           gesuchter Aktivitätsmodus
+	 * @return Anzahl Verbindungen
+	 */
+	public int count(boolean enabled) {
+		int active = 0;
+
+		for (int base = 0; base < size; base += SEGMENT) {
+			Segment s = segments[base >>> SHIFT];
+			long word = s.enabled[s.word];
+
+			if (size - base < SEGMENT)
+				word &= (1L << (size - base)) - 1;
+			active += Long.bitCount(word);
+		}
+
+		return enabled ? active : size - active;
+	}
+
+	/**
+	 * Sucht die k-te aktive bzw. inaktive Verbindung. Die Suche zählt die
+	 * Bits des Bitfeldes wortweise und durchläuft nur das Wort, in dem die
+	 * gesuchte Verbindung liegt.
+	 *
+	 * @param enabled
+	 *           gesuchter Aktivitätsmodus
+	 * @param k
+	 *           Rang der Verbindung unter allen mit diesem Modus (ab 0)
+	 * @return Index der Verbindung oder <code>-1</code>
+	 */
+	public int select(boolean enabled, int k) {
+		for (int base = 0; base < size; base += SEGMENT) {
+			Segment s = segments[base >>> SHIFT];
+			long word = enabled ? s.enabled[s.word] : ~s.enabled[s.word];
+
+			if (size - base < SEGMENT)
+				word &= (1L << (size - base)) - 1;
+
+			int count = Long.bitCount(word);
+			if (k >= count) {
+				k -= count;
+				continue;
+			}
+
+			for (; k > 0; k--)
+				word &= word - 1;
+
+			return base + Long.numberOfTrailingZeros(word);
+		}
+
+		return -1;
+	}
+
+	/* Puffer, aus dem neue Abschnitte stammen, oder null */
+	PopulationArena.Buffer getBuffer() {
+		return buffer;
+	}
+
+	/*
+	 * Gibt alle eigenen Abschnitte zur gemeinsamen Nutzung frei. Jede weitere
+	 * Veränderung kopiert den betroffenen Abschnitt.
+	 */
+	void freeze() {
+		for (Segment s : segments)
+			if (s != null && s.owner != null)
+				s.owner = null;
+	}
+
+	/*
+	 * Verschiebt alle Abschnitte in den angegebenen Puffer und gibt sie frei.
+	 * Abschnitte, die sich mehrere Tabellen teilen, werden dabei nur einmal
+	 * kopiert und bleiben gemeinsam genutzt.
+	 */
+	void moveTo(PopulationArena.Buffer target) {
+		int used = (size + MASK) >>> SHIFT;
+
+		for (int k = 0; k < segments.length; k++) {
+			Segment s = segments[k];
+
+			if (k >= used)
+				segments[k] = null;
+			else if (s.buffer != target)
+				segments[k] = s.relocate(target);
+		}
+
+		this.buffer = target;
+		this.freeze();
+	}
+
+	/* Verändert die Gewichtung einer Verbindung */
+	void setWeight(int index, double weight) {
+		Segment s = this.writable(index);
+
+		s.weights[s.offset + (index & MASK)] = weight;
+	}
+
+	/* (De-)Aktiviert eine Verbindung */
+	void setEnabled(int index, boolean value) {
+		Segment s = this.writable(index);
+
+		if (value)
+			s.enabled[s.word] |= 1L << index;
+		else
+			s.enabled[s.word] &= ~(1L << index);
+	}
+
+	/*
+	 * Fügt eine Verbindung hinter allen Verbindungen mit gleicher oder
+	 * kleinerer Innovationsnummer ein und gibt ihren Index zurück.
+	 */
+	int add(int innovation, int source, int target, double weight,
+			boolean enabled) {
+		this.ensureCapacity();
+
+		int i = size;
+		if (size > 0 && this.getInnovation(size - 1) > innovation) {
+			i = lowerBound(innovation + 1);
+
+			for (int k = size; k > i; k--)
+				this.set(k, this.getInnovation(k - 1), this.getSource(k - 1),
+					this.getTarget(k - 1), this.getWeight(k - 1),
+					this.isEnabled(k - 1));
+		}
+
+		this.set(i, innovation, source, target, weight, enabled);
+		size++;
+
+		return i;
+	}
+
+	/*
+	 * Hängt eine Verbindung unabhängig von ihrer Innovationsnummer an. Nur für
+	 * vorläufige Nummern während Pool#newGeneration(), die Sortierung stellt
+	 * renumber() wieder her.
+	 */
+	void append(int innovation, int source, int target, double weight,
+			boolean enabled) {
+		this.ensureCapacity();
+		this.set(size++, innovation, source, target, weight, enabled);
+	}
+
+	/*
+	 * Ersetzt die Neuronenindizes über map (alter Index -> neuer Index).
+	 * Verbindungen, deren Neuronen auf -1 abgebildet werden, entfallen.
+	 */
+	void remap(int[] map) {
+		int n = 0;
+
+		for (int i = 0; i < size; i++) {
+			int s = map[this.getSource(i)];
+			int t = map[this.getTarget(i)];
+
+			if (s < 0 || t < 0)
+				continue;
+
+			this.set(n++, this.getInnovation(i), s, t, this.getWeight(i),
+				this.isEnabled(i));
+		}
+
+		size = n;
+	}
+
+	/*
+	 * Vergibt alle Innovationsnummern oberhalb von base über table neu (siehe
+	 * Pool#newGeneration()). Noch nicht vergebene Einträge bekommen in der
+	 * Reihenfolge der Tabelle die nächste Nummer nach next. Nummern außerhalb
+	 * der Tabelle bleiben unverändert. Gibt die zuletzt vergebene Nummer
+	 * zurück.
+	 */
+	int renumber(int base, int[] table, int next) {
+		boolean sorted = true;
+		int previous = Integer.MIN_VALUE;
+
+		for (int i = 0; i < size; i++) {
+			int innovation = this.getInnovation(i);
+			int k = innovation - base - 1;
+
+			/* nur veränderte Abschnitte werden kopiert */
+			if (k >= 0 && k < table.length) {
+				if (table[k] == 0)
+					table[k] = ++next;
+
+				if (table[k] != innovation) {
+					innovation = table[k];
+
+					Segment s = this.writable(i);
+					s.innovations[s.offset + (i & MASK)] = innovation;
+				}
+			}
+
+			if (previous > innovation)
+				sorted = false;
+			previous = innovation;
+		}
+
+		if (!sorted)
+			this.sort();
+
+		return next;
+	}
+
+	/* Sortiert alle Spalten stabil nach Innovationsnummer */
+	private void sort() {
+		long[] keys = new long[size];
+
+		/* Innovationsnummer oben, bisherige Position unten */
+		for (int i = 0; i < size; i++)
+			keys[i] = ((long) this.getInnovation(i) << 32) | i;
+		Arrays.sort(keys);
+
+		GeneTable old = this.share();
+
+		for (int i = 0; i < size; i++) {
+			int k = (int) keys[i];
+
+			this.set(i, old.getInnovation(k), old.getSource(k),
+				old.getTarget(k), old.getWeight(k), old.isEnabled(k));
+		}
+	}
+
+	/* erste Position mit Innovationsnummer >= innovation */
+	private int lowerBound(int innovation) {
+		int lo = 0;
+		int hi = size;
+
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+
+			if (this.getInnovation(mid) < innovation)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+
+		return lo;
+	}
+
+	private void ensureCapacity() {
+		if (size == segments.length << SHIFT)
+			segments = Arrays.copyOf(segments, segments.length * 2);
+	}
+
+	/* Schreibt einen vollständigen Eintrag */
+	private void set(int index, int innovation, int source, int target,
+			double weight, boolean enabled) {
+		Segment s = this.writable(index);
+		int j = s.offset + (index & MASK);
+
+		s.innovations[j] = innovation;
+		s.sources[j] = source;
+		s.targets[j] = target;
+		s.weights[j] = weight;
+		if (enabled)
+			s.enabled[s.word] |= 1L << index;
+		else
+			s.enabled[s.word] &= ~(1L << index);
+	}
+
+	/*
+	 * Gibt den Abschnitt eines Eintrages zum Schreiben zurück. Gehört er nicht
+	 * dieser Tabelle, wird er vorher kopiert.
+	 */
+	private Segment writable(int index) {
+		int k = index >>> SHIFT;
+		Segment s = segments[k];
+
+		if (s != null && s.owner == this)
+			return s;
+
+		Segment copy = (buffer == null) ? new Segment() : buffer.allocate();
+		if (s != null)
+			copy.copyFrom(s);
+		copy.owner = this;
+		segments[k] = copy;
+
+		return copy;
+	}
+
+	/**
+	 * Ein Abschnitt von {@value GeneTable#SEGMENT} Verbindungen. Er besitzt
+	 * entweder eigene Arrays oder ist eine Sicht auf einen Block der
+	 * {@link PopulationArena}. Verändert werden darf er nur von seinem
+	 * Besitzer; ohne Besitzer wird er möglicherweise von mehreren Tabellen
+	 * geteilt.
+	 */
+	static final class Segment {
+
+		final PopulationArena.Buffer buffer;
+		final int[] innovations;
+		final int[] sources;
+		final int[] targets;
+		final double[] weights;
+		final long[] enabled;
+		final int offset;
+		final int word;
+
+		/* einzige Tabelle, die den Abschnitt verändern darf, oder null */
+		GeneTable owner;
+
+		/* Kopie beim Verschieben in einen anderen Puffer (siehe moveTo) */
+		private Segment forward;
+		private int forwardEpoch;
+
+		/* Abschnitt mit eigenen Arrays */
+		Segment() {
+			this(null, new int[SEGMENT], new int[SEGMENT], new int[SEGMENT],
+				new double[SEGMENT], new long[1], 0);
+		}
+
+		/* Sicht auf einen Block ab offset */
+		Segment(PopulationArena.Buffer buffer, int[] innovations, int[] sources,
+				int[] targets, double[] weights, long[] enabled, int offset) {
+			this.buffer = buffer;
+			this.innovations = innovations;
+			this.sources = sources;
+			this.targets = targets;
+			this.weights = weights;
+			this.enabled = enabled;
+			this.offset = offset;
+			this.word = offset >>> SHIFT;
+		}
+
+		/* Übernimmt den gesamten Inhalt eines anderen Abschnittes */
+		void copyFrom(Segment s) {
+			System.arraycopy(s.innovations, s.offset, innovations, offset,
+				SEGMENT);
+			System.arraycopy(s.sources, s.offset, sources, offset, SEGMENT);
+			System.arraycopy(s.targets, s.offset, targets, offset, SEGMENT);
+			System.arraycopy(s.weights, s.offset, weights, offset, SEGMENT);
+			enabled[word] = s.enabled[s.word];
+		}
+
+		/*
+		 * Gibt die Kopie dieses Abschnittes im Puffer target zurück und legt
+		 * sie beim ersten Aufruf je Generation an.
+		 */
+		Segment relocate(PopulationArena.Buffer target) {
+			if (forward == null || forward.buffer != target
+				|| forwardEpoch != target.getEpoch()) {
+				forward = target.allocate();
+				forward.copyFrom(this);
+				forwardEpoch = target.getEpoch();
+			}
+
+			return forward;
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package de.kaping.brain.model;
+
+import java.util.Arrays;
+
+/**
+ * Verlauf der Evolution über alle Generationen. Für jede Generation wird eine
+ * Zeile mit Werten der gesamten Population gespeichert (Rechenzeit, Anzahl
+ * Spezies und Netzwerke, beste Bewertung, Summe der Durchschnitte), für jede
+ * Spezies einer Generation eine Zeile mit ihrer durchschnittlichen und besten
+ * Bewertung, Stagnation, Anzahl Netzwerke und deren Größe.
+ * <p>
+ * Alle Werte liegen spaltenweise in primitiven Arrays, die in festen Blöcken
+ * wachsen und nur angehängt werden. Spezies werden über ihre ID statt über das
+ * Objekt referenziert, ausgestorbene Spezies und ihre Netzwerke bleiben also
+ * nicht erreichbar. Über {@link #getSeries(int)} erhält man den Verlauf einer
+ * Spezies als Sicht auf die Spalten, ohne ihn zu kopieren.
+ * <p>
+ * Geschrieben wird nur von einem Thread (siehe {@link Evolution}). Da die
+ * Anzahl Zeilen erst nach dem Schreiben aller Spalten erhöht wird und Leser
+ * sie zuerst lesen, dürfen andere Threads (z.B. die Oberfläche) gleichzeitig
+ * lesen; sie sehen alle Zeilen bis zu dieser Anzahl vollständig.
+ *
+ * @author MPreloaded
+ */
+public class GenerationStats implements IHistory<Species> {
+
+	/* Zeilen je Block einer Spalte */
+	private static final int CHUNK = 1 << 12;
+	private static final int SHIFT = 12;
+	private static final int MASK = CHUNK - 1;
+
+	/* je Generation */
+	private final IntColumn generation;
+	private final LongColumn nanos;
+	private final IntColumn speciesCount;
+	private final IntColumn population;
+	private final DoubleColumn bestFitness;
+	private final DoubleColumn totalAverageFitness;
+	private volatile int generations;
+
+	/* je Spezies und Generation */
+	private final IntColumn speciesGeneration;
+	private final IntColumn speciesID;
+	private final DoubleColumn averageFitness;
+	private final DoubleColumn topFitness;
+	private final IntColumn staleness;
+	private final IntColumn members;
+	private final LongColumn genes;
+	private final IntColumn maxGenes;
+	private volatile int rows;
+
+	/* Zeilen je Spezies-ID, in Reihenfolge der Generationen */
+	private volatile IntColumn[] bySpecies;
+	private int recordedSpecies;
+
+	/**
+	 * Konstruktor
+	 */
+	public GenerationStats() {
+		super();
+		this.generation = new IntColumn();
+		this.nanos = new LongColumn();
+		this.speciesCount = new IntColumn();
+		this.population = new IntColumn();
+		this.bestFitness = new DoubleColumn();
+		this.totalAverageFitness = new DoubleColumn();
+		this.generations = 0;
+
+		this.speciesGeneration = new IntColumn();
+		this.speciesID = new IntColumn();
+		this.averageFitness = new DoubleColumn();
+		this.topFitness = new DoubleColumn();
+		this.staleness = new IntColumn();
+		this.members = new IntColumn();
+		this.genes = new LongColumn();
+		this.maxGenes = new IntColumn();
+		this.rows = 0;
+
+		this.bySpecies = new IntColumn[64];
+		this.recordedSpecies = 0;
+	}
+
+	/**
+	 * Speichert die Werte der aktuellen, bereits bewerteten Generation eines
+	 * Pools: eine Zeile für die Population und eine für jede Spezies.
+	 *
+	 * @param pool
+	 *           bewerteter Pool
+	 * @param nanos
+	 *           Rechenzeit der Generation in Nanosekunden
+	 */
+	public void record(Pool pool, long nanos) {
+		int size = 0;
+
+		for (Species s : pool.getSpecies()) {
+			this.addEntry(s, pool.getGeneration());
+			size += s.getGenomeCount();
+		}
+
+		Genome best = pool.getBestGenome();
+
+		this.generation.add(pool.getGeneration());
+		this.nanos.add(nanos);
+		this.speciesCount.add(pool.getSpecies().size());
+		this.population.add(size);
+		this.bestFitness.add((best == null) ? Double.NaN : best.getFitness());
+		this.totalAverageFitness
+			.add(pool.getLeaderboard().getTotalAverageFitness());
+		this.generations++;
+	}
+
+	/**
+	 * Speichert die aktuellen Werte einer Spezies für die aktuelle Generation
+	 * des Pools. Wird von {@link #record(Pool, long)} für alle Spezies selbst
+	 * aufgerufen.
+	 */
+	@Override
+	public void addEntry(Species o) {
+		if (o == null)
+			throw new IllegalArgumentException("Species Parameter is NULL!");
+
+		this.addEntry(o, Pool.getInstance().getGeneration());
+	}
+
+	/**
+	 * Gibt die durchschnittlichen Bewertungen einer Spezies in allen
+	 * gespeicherten Generationen zurück. Die Werte werden dafür kopiert, ohne
+	 * Kopie siehe {@link #getSeries(int)}.
+	 *
+	 * @return durchschnittliche Bewertungen oder <code>null</code>, wenn für
+	 *         die Spezies nichts gespeichert ist
+	 */
+	@Override
+	public double[] getHistory(Species o) {
+		if (o == null)
+			throw new IllegalArgumentException("Species Parameter is NULL!");
+
+		Series series = this.getSeries(o.getID());
+		if (series.size() == 0)
+			return null;
+
+		double[] history = new double[series.size()];
+		for (int i = 0; i < history.length; i++)
+			history[i] = series.getAverageFitness(i);
+
+		return history;
+	}
+
+	/**
+	 * Gibt die Anzahl Spezies zurück, für die Werte gespeichert sind.
+	 */
+	@Override
+	public int getSize() {
+		return recordedSpecies;
+	}
+
+	/**
+	 * Gibt den Verlauf einer Spezies zurück. Der Verlauf ist eine Sicht auf
+	 * die gespeicherten Werte und umfasst alle Generationen, die beim Aufruf
+	 * vollständig gespeichert waren; für spätere erneut aufrufen.
+	 *
+	 * @param id
+	 *           ID der Spezies
+	 * @return Verlauf der Spezies, leer wenn nichts gespeichert ist
+	 */
+	public Series getSeries(int id) {
+		/* erst die Zeilen lesen, alles davor Geschriebene ist dann sichtbar */
+		int rows = this.rows;
+		IntColumn[] bySpecies = this.bySpecies;
+		IntColumn index = (id >= 0 && id < bySpecies.length) ? bySpecies[id]
+			: null;
+
+		return new Series(index, rows);
+	}
+
+	/**
+	 * Gibt die Anzahl gespeicherter Generationen zurück.
+	 *
+	 * @return Anzahl Generationen
+	 */
+	public int getGenerations() {
+		return generations;
+	}
+
+	/**
+	 * Gibt die Generationsnummer einer gespeicherten Generation zurück.
+	 *
+	 * @param row
+	 *           Index der Generation (0 bis {@link #getGenerations()} - 1)
+	 * @return Generationsnummer
+	 */
+	public int getGeneration(int row) {
+		return generation.get(this.check(row, generations));
+	}
+
+	/**
+	 * Gibt die Rechenzeit einer Generation in Nanosekunden zurück.
+	 *
+	 * @param row
+	 *           Index der Generation
+	 * @return Rechenzeit
+	 */
+	public long getNanos(int row) {
+		return nanos.get(this.check(row, generations));
+	}
+
+	/**
+	 * Gibt die Anzahl Spezies einer Generation zurück.
+	 *
+	 * @param row
+	 *           Index der Generation
+	 * @return Anzahl Spezies
+	 */
+	public int getSpeciesCount(int row) {
+		return speciesCount.get(this.check(row, generations));
+	}
+
+	/**
+	 * Gibt die Anzahl Netzwerke einer Generation zurück.
+	 *
+	 * @param row
+	 *           Index der Generation
+	 * @return Anzahl Netzwerke
+	 */
+	public int getPopulation(int row) {
+		return population.get(this.check(row, generations));
+	}
+
+	/**
+	 * Gibt die beste Bewertung einer Generation zurück.
+	 *
+	 * @param row
+	 *           Index der Generation
+	 * @return beste Bewertung
+	 */
+	public double getBestFitness(int row) {
+		return bestFitness.get(this.check(row, generations));
+	}
+
+	/**
+	 * Gibt die Summe der durchschnittlichen Bewertungen aller Spezies einer
+	 * Generation zurück.
+	 *
+	 * @param row
+	 *           Index der Generation
+	 * @return Summe der Durchschnitte
+	 */
+	public double getTotalAverageFitness(int row) {
+		return totalAverageFitness.get(this.check(row, generations));
+	}
+
+	/* Hängt eine Zeile für eine Spezies an */
+	private void addEntry(Species s, int generation) {
+		int size = s.getGenomeCount();
+		long sum = 0;
+		int max = 0;
+
+		for (Genome g : s.getGenomes()) {
+			int n = g.getGeneTable().size();
+			sum += n;
+			max = Math.max(max, n);
+		}
+
+		int row = rows;
+		this.speciesGeneration.add(generation);
+		this.speciesID.add(s.getID());
+		this.averageFitness.add(s.getAverageFitness());
+		this.topFitness.add(s.getTopFitness());
+		this.staleness.add(s.getStaleness());
+		this.members.add(size);
+		this.genes.add(sum);
+		this.maxGenes.add(max);
+
+		int id = s.getID();
+		if (id >= bySpecies.length)
+			bySpecies = Arrays.copyOf(bySpecies,
+				Math.max(id + 1, bySpecies.length * 2));
+		if (bySpecies[id] == null) {
+			bySpecies[id] = new IntColumn();
+			recordedSpecies++;
+		}
+		bySpecies[id].add(row);
+
+		this.rows = row + 1;
+	}
+
+	private int check(int row, int size) {
+		if (row < 0 || row >= size)
+			throw new IndexOutOfBoundsException(
+				"Row " + row + " of " + size);
+
+		return row;
+	}
+
+	/**
+	 * Verlauf einer Spezies über alle Generationen, in denen sie existiert
+	 * hat. Alle Werte werden direkt aus den Spalten gelesen.
+	 */
+	public final class Series {
+
+		private final IntColumn index;
+		private final int size;
+
+		private Series(IntColumn index, int rows) {
+			int size = (index == null) ? 0 : index.size();
+
+			/* Zeilen, die nach dem Lesen von rows angehängt wurden, abschneiden */
+			while (size > 0 && index.get(size - 1) >= rows)
+				size--;
+
+			this.index = index;
+			this.size = size;
+		}
+
+		/**
+		 * Gibt die Anzahl Generationen des Verlaufs zurück.
+		 *
+		 * @return Anzahl Generationen
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Gibt den ersten Index zurück, dessen Generation mindestens
+		 * <code>generation</code> ist, z.B. für ein Fenster der letzten
+		 * Generationen.
+		 *
+		 * @param generation
+		 *           Generationsnummer
+		 * @return Index oder {@link #size()}, wenn alle Generationen davor
+		 *         liegen
+		 */
+		public int indexOf(int generation) {
+			int lo = 0;
+			int hi = size;
+
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (this.getGeneration(mid) < generation)
+					lo = mid + 1;
+				else
+					hi = mid;
+			}
+
+			return lo;
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return Generationsnummer
+		 */
+		public int getGeneration(int i) {
+			return speciesGeneration.get(this.row(i));
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return durchschnittliche Bewertung
+		 */
+		public double getAverageFitness(int i) {
+			return averageFitness.get(this.row(i));
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return höchste bisherige Bewertung der Spezies
+		 */
+		public double getTopFitness(int i) {
+			return topFitness.get(this.row(i));
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return Stagnationsindex
+		 */
+		public int getStaleness(int i) {
+			return staleness.get(this.row(i));
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return Anzahl Netzwerke
+		 */
+		public int getMembers(int i) {
+			return members.get(this.row(i));
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return durchschnittliche Anzahl Verbindungen je Netzwerk
+		 */
+		public double getAverageGenes(int i) {
+			int row = this.row(i);
+			int n = members.get(row);
+
+			return (n == 0) ? 0. : (double) genes.get(row) / n;
+		}
+
+		/**
+		 * @param i
+		 *           Index im Verlauf
+		 * @return größte Anzahl Verbindungen eines Netzwerkes
+		 */
+		public int getMaxGenes(int i) {
+			return maxGenes.get(this.row(i));
+		}
+
+		private int row(int i) {
+			return index.get(check(i, size));
+		}
+	}
+
+	/*
+	 * Spalte aus int-Blöcken. Die Blöcke sind volatile, damit ein Leser nach
+	 * dem Vergrößern keine leere Kopie sieht; size ist volatile, da der Index
+	 * einer Spezies ohne Umweg über rows gelesen wird.
+	 */
+	private static final class IntColumn {
+		private volatile int[][] chunks = new int[1][];
+		private volatile int size;
+
+		void add(int value) {
+			int k = size >>> SHIFT;
+			if (k == chunks.length)
+				chunks = Arrays.copyOf(chunks, k * 2);
+			if (chunks[k] == null)
+				chunks[k] = new int[CHUNK];
+
+			chunks[k][size & MASK] = value;
+			size++;
+		}
+
+		int get(int i) {
+			return chunks[i >>> SHIFT][i & MASK];
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/* Spalte aus long-Blöcken */
+	private static final class LongColumn {
+		private volatile long[][] chunks = new long[1][];
+		private int size;
+
+		void add(long value) {
+			int k = size >>> SHIFT;
+			if (k == chunks.length)
+				chunks = Arrays.copyOf(chunks, k * 2);
+			if (chunks[k] == null)
+				chunks[k] = new long[CHUNK];
+
+			chunks[k][size & MASK] = value;
+			size++;
+		}
+
+		long get(int i) {
+			return chunks[i >>> SHIFT][i & MASK];
+		}
+	}
+
+	/* Spalte aus double-Blöcken */
+	private static final class DoubleColumn {
+		private volatile double[][] chunks = new double[1][];
+		private int size;
+
+		void add(double value) {
+			int k = size >>> SHIFT;
+			if (k == chunks.length)
+				chunks = Arrays.copyOf(chunks, k * 2);
+			if (chunks[k] == null)
+				chunks[k] = new double[CHUNK];
+
+			chunks[k][size & MASK] = value;
+			size++;
+		}
+
+		double get(int i) {
+			return chunks[i >>> SHIFT][i & MASK];
+		}
+	}
+}
@@ -1,19 +1,16 @@
 package de.kaping.brain.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-
 /**
  * Beschreibung eines Netzwerkes durch Zusammenfassung von Neuronen und Genes.
  * Ein Netzwerk wird durch seine Performance bewertet (<code>fitness</code>).
@@ -23,6 +20,12 @@ import javafx.collections.ObservableList;
  * Die <code>adjustedFitness</code> steht für eine veränderte, angepasste
  * Performance-Berwertung, die für die tatsächliche Auswahl überlebender
  * Netzwerke verwendet wird.
+ * <p>
+ * Alle Werte werden in einfachen Feldern und Listen gehalten. Die Oberfläche
+ * erzeugt ihre beobachtbaren Darstellungen selbst und nur für die gerade
+ * angezeigten Netzwerke. Die Verbindungen liegen als {@link GeneTable} vor,
+ * <code>Gene</code>-Objekte werden nur noch zum Hinzufügen und für die Anzeige
+ * verwendet.
  * 
  * @author MPreloaded
  */
@@ -30,23 +33,44 @@ public class Genome implements Comparable<Genome> {
 
 	// @SuppressWarnings("unused")
 	private static final Logger log = LogManager.getLogger();
-	private static int maxID;
+	private static final AtomicInteger maxID = new AtomicInteger(0);
 
-	private ObservableList<Neuron> neurons;
-	private ObservableList<Gene> genes;
+	/* Versuche je Linkmutation, eine gültige neue Verbindung zu finden */
+	private static final int LINK_ATTEMPTS = 16;
 
-	private DoubleProperty fitness;
-	private DoubleProperty adjustedFitness;
-	private IntegerProperty ID;
+	private List<Neuron> neurons;
+	private GeneTable genes;
+
+	private double fitness;
+	private double adjustedFitness;
+	private int ID;
 
 	/* Enthält alle Mutations-/ relevanten Raten für das Netzwerk */
-	private DoubleProperty[] rates;
+	private double[] rates;
+
+	/* Zwischengespeicherter Phänotyp, wird bei Änderungen verworfen */
+	private CompiledNetwork network;
+
+	/* Topologische Sortierung für die Zykluserkennung, wird bei Bedarf erzeugt */
+	private TopologicalOrder order;
+
+	/* Index des Biasneurons oder -1, wenn noch nicht gesucht */
+	private int bias;
+
+	/* Neuron -> Index in neurons, erst bei vielen Neuronen angelegt */
+	private Map<Neuron, Integer> index;
+
+	/* Abstammung, siehe LineageStore: eigener Datensatz, Eltern, Operatoren */
+	private long lineage;
+	private long parent1;
+	private long parent2;
+	private int operators;
 
 	/**
 	 * Konstruktor
 	 */
 	public Genome() {
-		this(FXCollections.observableArrayList(), false, null);
+		this(new ArrayList<Neuron>(), false, 0);
 	}
 
 	/**
@@ -55,8 +79,8 @@ public class Genome implements Comparable<Genome> {
 	 * 
 	 * @param ID
 	 */
-	public Genome(IntegerProperty ID) {
-		this(FXCollections.observableArrayList(), false, ID);
+	public Genome(int ID) {
+		this(new ArrayList<Neuron>(), false, ID);
 	}
 
 	/**
@@ -65,9 +89,9 @@ public class Genome implements Comparable<Genome> {
 	 * @param neurons
 	 *           Anfangsneuronen
 	 *        ID
-	 *        	ID des Genomes (null, wenn dieses Genome nicht aus einem anderen hervorgeht)
+	 *        	ID des Genomes (0, wenn dieses Genome nicht aus einem anderen hervorgeht)
 	 */
-	public Genome(ObservableList<Neuron> neurons, IntegerProperty ID) {
+	public Genome(List<Neuron> neurons, int ID) {
 		this(neurons, false, ID);
 	}
 
@@ -78,38 +102,39 @@ public class Genome implements Comparable<Genome> {
 	 * @param neurons
 	 * @param basic
 	 */
-	public Genome(ObservableList<Neuron> neurons, boolean basic, IntegerProperty ID) {
+	public Genome(List<Neuron> neurons, boolean basic, int ID) {
+		this(neurons, new GeneTable(), ID);
+
+		if (basic)
+			this.mutateGenome();
+	}
+
+	/* Konstruktor mit bereits angelegter Tabelle für die Verbindungen */
+	Genome(List<Neuron> neurons, GeneTable genes, int ID) {
 		super();
-		if(ID == null){
-		this.ID = new SimpleIntegerProperty(maxID + 1);
-		maxID++;
+		if(ID <= 0){
+		this.ID = maxID.incrementAndGet();
 		}else{
 			this.ID = ID;
 		}
 
 		/* TODO: Entfernen des Hardcoden */
-		this.rates = new SimpleDoubleProperty[6];
-		this.rates[0] = new SimpleDoubleProperty(
-			.25); /* Ändern aller Gewichtungen */
-		this.rates[1] = new SimpleDoubleProperty(
-			2.0); /* Hinzufügen von Verbindungen */
-		this.rates[2] = new SimpleDoubleProperty(
-			0.5); /* Trennen einer Verbindung durch Einfügen Neuron */
-		this.rates[3] = new SimpleDoubleProperty(
-			0.4); /* Hinzufügen von BIAS-Verbindung */
-		this.rates[4] = new SimpleDoubleProperty(
-			0.4); /* Deaktivieren einer aktiven Verbindung */
-		this.rates[5] = new SimpleDoubleProperty(
-			0.2); /* Aktivieren einer inaktiven Verbindung */
-
-		this.neurons = FXCollections.observableArrayList();
-		this.neurons = neurons;
-		this.genes = FXCollections.observableArrayList();
-		this.fitness = new SimpleDoubleProperty(0.0);
-		this.adjustedFitness = new SimpleDoubleProperty(0.0);
+		this.rates = new double[6];
+		this.rates[0] = .25; /* Ändern aller Gewichtungen */
+		this.rates[1] = 2.0; /* Hinzufügen von Verbindungen */
+		this.rates[2] = 0.5; /* Trennen einer Verbindung durch Einfügen Neuron */
+		this.rates[3] = 0.4; /* Hinzufügen von BIAS-Verbindung */
+		this.rates[4] = 0.4; /* Deaktivieren einer aktiven Verbindung */
+		this.rates[5] = 0.2; /* Aktivieren einer inaktiven Verbindung */
 
-		if (basic)
-			this.mutateGenome();
+		this.neurons = neurons;
+		this.genes = genes;
+		this.fitness = 0.0;
+		this.adjustedFitness = 0.0;
+		this.bias = -1;
+		this.lineage = LineageStore.NONE;
+		this.parent1 = LineageStore.NONE;
+		this.parent2 = LineageStore.NONE;
 	}
 
 	/**
@@ -118,11 +143,64 @@ public class Genome implements Comparable<Genome> {
 	 * @return
 	 */
 	public int getID() {
-		return this.ID.get();
+		return this.ID;
 	}
 
-	public IntegerProperty getIDProperty() {
-		return this.ID;
+	/* Vergibt die ID neu, für die Neuvergabe nach paralleler Erzeugung */
+	void setID(int ID) {
+		this.ID = ID;
+	}
+
+	/* Zuletzt vergebene ID, für die Neuvergabe nach paralleler Erzeugung */
+	static int getMaxID() {
+		return maxID.get();
+	}
+
+	static void setMaxID(int id) {
+		maxID.set(id);
+	}
+
+	/**
+	 * Gibt die Nummer des Datensatzes im {@link LineageStore} zurück.
+	 * 
+	 * @return Nummer oder {@link LineageStore#NONE}, wenn das Netzwerk nicht
+	 *         aufgezeichnet wurde
+	 */
+	public long getLineage() {
+		return lineage;
+	}
+
+	void setLineage(long lineage) {
+		this.lineage = lineage;
+	}
+
+	/* Stellt die gesamte Abstammung wieder her, für Checkpoint */
+	void setLineage(long lineage, long parent1, long parent2, int operators) {
+		this.lineage = lineage;
+		this.parent1 = parent1;
+		this.parent2 = parent2;
+		this.operators = operators;
+	}
+
+	/* Datensätze der Eltern, bei einer Kopie nur der erste */
+	long getParent1() {
+		return parent1;
+	}
+
+	long getParent2() {
+		return parent2;
+	}
+
+	/* Bei der Erzeugung angewandte Operatoren (LineageStore.WEIGHTS, ...) */
+	int getOperators() {
+		return operators;
+	}
+
+	/* Merkt sich die Eltern, das bessere zuerst */
+	private void setParents(Genome h, Genome l) {
+		this.parent1 = h.lineage;
+		this.parent2 = (l == null) ? LineageStore.NONE : l.lineage;
+		this.operators = (l == null) ? 0 : LineageStore.CROSSOVER;
 	}
 
 	/**
@@ -132,7 +210,7 @@ public class Genome implements Comparable<Genome> {
 	 *           neue Bewertung
 	 */
 	public void setFitness(double fitness) {
-		this.fitness.set(fitness);
+		this.fitness = fitness;
 	}
 
 	/**
@@ -141,7 +219,7 @@ public class Genome implements Comparable<Genome> {
 	 * @return aktuelle Bewertung
 	 */
 	public double getFitness() {
-		return this.fitness.get();
+		return this.fitness;
 	}
 
 	/**
@@ -151,7 +229,7 @@ public class Genome implements Comparable<Genome> {
 	 *           neue Bewertung
 	 */
 	public void setAdjustedFitness(double fitness) {
-		this.adjustedFitness.set(fitness);
+		this.adjustedFitness = fitness;
 	}
 
 	/**
@@ -160,46 +238,139 @@ public class Genome implements Comparable<Genome> {
 	 * @return tatsächliche Bewertung
 	 */
 	public double getAdjustedFitness() {
-		return this.adjustedFitness.get();
+		return this.adjustedFitness;
 	}
 
 	/**
 	 * Setzt eine Liste von Neuronen des Netzwerkes. Praktisch, falls ein
-	 * Netzwerk kopiert werden soll.
+	 * Netzwerk kopiert werden soll. Verbindungen zu Neuronen, die nicht mehr
+	 * enthalten sind, werden entfernt.
 	 * 
 	 * @param neurons
 	 *           Liste von Neuronen
 	 */
-	public void setNeurons(ObservableList<Neuron> neurons) {
+	public void setNeurons(List<Neuron> neurons) {
+		Map<Neuron, Integer> index = new IdentityHashMap<Neuron, Integer>();
+		for (int i = 0; i < neurons.size(); i++)
+			index.putIfAbsent(neurons.get(i), i);
+
+		int[] map = new int[this.neurons.size()];
+		for (int i = 0; i < map.length; i++) {
+			Integer n = index.get(this.neurons.get(i));
+			map[i] = (n == null) ? -1 : n;
+		}
+
+		this.genes.remap(map);
 		this.neurons = neurons;
+		this.order = null;
+		this.bias = -1;
+		this.index = null;
+		this.invalidateNetwork();
 	}
 
 	/**
-	 * Gibt eine Liste aller Neuronen des Netzwerkes zurück.
+	 * Gibt eine Liste aller Neuronen des Netzwerkes zurück. Die Liste kann
+	 * nicht verändert werden, da die Verbindungen ihre Neuronen über den Index
+	 * in dieser Liste ansprechen.
 	 * 
 	 * @return Liste aller Neuronen
 	 */
-	public ObservableList<Neuron> getNeurons() {
-		return this.neurons;
+	public List<Neuron> getNeurons() {
+		return Collections.unmodifiableList(this.neurons);
 	}
 
 	/**
-	 * Setzt eine Liste von Verbindungen des Netzwerkes.
+	 * Setzt eine Liste von Verbindungen des Netzwerkes. Verbindungen zu
+	 * Neuronen, die nicht Teil des Netzwerkes sind, werden übersprungen.
 	 * 
 	 * @param genes
 	 *           Liste von Verbindungen
 	 */
-	public void setGenes(ObservableList<Gene> genes) {
-		this.genes = genes;
+	public void setGenes(List<Gene> genes) {
+		GeneTable table = new GeneTable(genes.size());
+
+		for (Gene g : genes) {
+			int origin = this.indexOf(g.getOrigin());
+			int into = this.indexOf(g.getInto());
+
+			if (origin >= 0 && into >= 0)
+				table.add(g.getHistoricalMarking(), origin, into, g.getWeight(),
+					g.getEnabled());
+		}
+
+		this.genes = table;
+		this.order = null;
+		this.invalidateNetwork();
 	}
 
 	/**
-	 * Gibt eine Liste aller Verbindungen des Netzwerkes zurück.
+	 * Gibt eine Liste aller Verbindungen des Netzwerkes zurück, nach
+	 * Innovationsnummer sortiert. Die Verbindungen werden dafür jedes Mal neu
+	 * erzeugt; Änderungen an ihnen wirken sich erst über
+	 * {@link #setGenes(List)} auf das Netzwerk aus.
 	 * 
 	 * @return Liste aller Verbindungen
 	 */
-	public ObservableList<Gene> getGenes() {
-		return this.genes;
+	public List<Gene> getGenes() {
+		List<Gene> list = new ArrayList<Gene>(genes.size());
+
+		for (int i = 0; i < genes.size(); i++)
+			list.add(this.getGene(i));
+
+		return list;
+	}
+
+	/**
+	 * Gibt die Verbindungen des Netzwerkes als {@link GeneTable} zurück. Die
+	 * Tabelle darf nur gelesen werden.
+	 * 
+	 * @return Verbindungen des Netzwerkes
+	 */
+	public GeneTable getGeneTable() {
+		return genes;
+	}
+
+	/**
+	 * Gibt eine einzelne Verbindung als neu erzeugtes Objekt zurück.
+	 * 
+	 * @param index
+	 *           Index der Verbindung in der {@link GeneTable}
+	 * @return Verbindung
+	 */
+	public Gene getGene(int index) {
+		Gene gene = new Gene(neurons.get(genes.getSource(index)),
+			neurons.get(genes.getTarget(index)), genes.getWeight(index));
+
+		gene.setHistoricalMarking(genes.getInnovation(index));
+		gene.setEnabled(genes.isEnabled(index));
+
+		return gene;
+	}
+
+	/**
+	 * Verändert die Gewichtung einer Verbindung.
+	 * 
+	 * @param index
+	 *           Index der Verbindung in der {@link GeneTable}
+	 * @param weight
+	 *           neue Gewichtung
+	 */
+	public void setWeight(int index, double weight) {
+		genes.setWeight(index, weight);
+		this.invalidateNetwork();
+	}
+
+	/**
+	 * Aktiviert oder deaktiviert eine Verbindung.
+	 * 
+	 * @param index
+	 *           Index der Verbindung in der {@link GeneTable}
+	 * @param enabled
+	 *           neuer Aktivitätsmodus
+	 */
+	public void setEnabled(int index, boolean enabled) {
+		genes.setEnabled(index, enabled);
+		this.invalidateNetwork();
 	}
 
 	/**
@@ -208,7 +379,7 @@ public class Genome implements Comparable<Genome> {
 	 * @param rates
 	 *           neue Mutationsraten
 	 */
-	public void setRates(DoubleProperty[] rates) {
+	public void setRates(double[] rates) {
 		if (rates.length == 6)
 			this.rates = rates;
 	}
@@ -218,26 +389,79 @@ public class Genome implements Comparable<Genome> {
 	 * 
 	 * @return Mutationsraten
 	 */
-	public DoubleProperty[] getRates() {
+	public double[] getRates() {
 		return rates;
 	}
 
 	/**
 	 * Fügt eine einzelne Verbindung zum Netzwerk hinzu, wenn dadurch kein
-	 * Zyklus entsteht.
+	 * Zyklus entsteht. Die Zykluserkennung verwendet die topologische
+	 * Sortierung dieses Netzwerkes ({@link TopologicalOrder}) und durchsucht
+	 * nur den Bereich zwischen den beiden Neuronen.
 	 * 
 	 * @param gene
 	 *           neue Verbindung
 	 * @return Wahrheitswert, ob Verbindung hinzugefügt werden konnte
 	 */
 	public boolean addGene(Gene gene) {
-		if (!genes.contains(gene))
-			if (neurons.contains(gene.getInto())
-				&& neurons.contains(gene.getOrigin()))
-			if (!this.checkForLoop(gene))
-				return genes.add(gene);
+		int origin = this.indexOf(gene.getOrigin());
+		int into = this.indexOf(gene.getInto());
 
-		return false;
+		if (origin < 0 || into < 0)
+			return false;
+
+		return this.addConnection(origin, into, gene.getWeight(),
+			gene.getEnabled(), gene.getHistoricalMarking());
+	}
+
+	/*
+	 * Fügt eine Verbindung zwischen zwei Neuronen (Index in neurons) hinzu,
+	 * wenn sie noch nicht besteht und keinen Zyklus bildet.
+	 */
+	private boolean addConnection(int origin, int into, double weight,
+			boolean enabled, int innovation) {
+		TopologicalOrder order = this.getOrder();
+
+		if (order.hasConnection(neurons.get(origin), neurons.get(into))
+			|| !order.addConnection(neurons.get(origin), neurons.get(into)))
+			return false;
+
+		/*
+		 * Vorläufige Nummern hängen von der Reihenfolge der Threads ab und
+		 * werden daher in der Reihenfolge ihrer Entstehung angehängt
+		 */
+		if (innovation > Pool.getInstance().getBreedingBase())
+			genes.append(innovation, origin, into, weight, enabled);
+		else
+			genes.add(innovation, origin, into, weight, enabled);
+		this.invalidateNetwork();
+
+		return true;
+	}
+
+	/*
+	 * Index eines Neurons in neurons oder -1. Ab Membership.THRESHOLD Neuronen
+	 * wird dafür ein Index über die Identität aufgebaut und von addNeuron()
+	 * fortgeführt.
+	 */
+	private int indexOf(Neuron neuron) {
+		if (neurons.size() < Membership.THRESHOLD) {
+			for (int i = 0; i < neurons.size(); i++)
+				if (neurons.get(i) == neuron)
+					return i;
+
+			return -1;
+		}
+
+		if (index == null) {
+			index = new IdentityHashMap<Neuron, Integer>(neurons.size() * 2);
+			for (int i = 0; i < neurons.size(); i++)
+				index.putIfAbsent(neurons.get(i), i);
+		}
+
+		Integer i = index.get(neuron);
+
+		return (i == null) ? -1 : i;
 	}
 
 	/**
@@ -248,37 +472,96 @@ public class Genome implements Comparable<Genome> {
 	 * @return Wahrheitswert, ob Neuron hinzugefügt werden konnte
 	 */
 	public boolean addNeuron(Neuron neuron) {
-		if (!neurons.contains(neuron))
+		if (this.indexOf(neuron) < 0) {
+			if (this.order != null)
+				this.order.addNeuron(neuron);
+			if (this.index != null)
+				this.index.put(neuron, neurons.size());
+			this.invalidateNetwork();
 			return neurons.add(neuron);
+		}
 
 		return false;
 	}
 
 	/**
-	 * Kopiert dieses Netzwerk.
+	 * Gibt die kompilierte Darstellung dieses Netzwerkes zurück. Sie wird beim
+	 * ersten Aufruf erzeugt und bis zur nächsten Veränderung der Verbindungen
+	 * wiederverwendet.
 	 * 
-	 * @return kopiertes Objekt
+	 * @return kompiliertes Netzwerk
 	 */
-	public Genome copyGenome() {
-		Genome copy = new Genome();
+	public CompiledNetwork getNetwork() {
+		if (this.network == null)
+			this.network = CompiledNetwork.compile(this);
+
+		return this.network;
+	}
 
-		ObservableList<Neuron> neurons = FXCollections.observableArrayList();
-		ObservableList<Gene> genes = FXCollections.observableArrayList();
-		DoubleProperty[] rates = new SimpleDoubleProperty[6];
+	/**
+	 * Gibt die topologische Sortierung der Neuronen dieses Netzwerkes zurück.
+	 * Sie wird beim ersten Aufruf aus allen (auch inaktiven) Verbindungen
+	 * erzeugt und danach mit jeder neuen Verbindung fortgeführt. Während der
+	 * Erzeugung einer neuen Generation wird dafür die Sortierung des Threads
+	 * wiederverwendet (siehe {@link PopulationArena}).
+	 * 
+	 * @return topologische Sortierung
+	 */
+	public TopologicalOrder getOrder() {
+		if (this.order == null || !this.order.belongsTo(this)) {
+			TopologicalOrder scratch = Pool.getInstance().getBreedingOrder();
+
+			if (scratch == null) {
+			this.order = TopologicalOrder.of(this);
+			} else {
+			scratch.rebuild(this);
+			this.order = scratch;
+			}
+		}
 
-		for (Neuron n : this.neurons)
-			neurons.add(n);
+		return this.order;
+	}
 
-		for (Gene g : this.genes)
-			genes.add(g.copyGene());
+	/* Gibt eine geliehene Sortierung nach der Erzeugung wieder frei */
+	void releaseOrder() {
+		this.order = null;
+	}
 
-		for (int i = 0; i < 6; i++)
-			rates[i] = new SimpleDoubleProperty(this.rates[i].doubleValue());
-		;
+	/**
+	 * Verwirft die kompilierte Darstellung dieses Netzwerkes. Wird von allen
+	 * verändernden Methoden selbst aufgerufen.
+	 */
+	public void invalidateNetwork() {
+		this.network = null;
+	}
 
-		copy.setNeurons(neurons);
-		copy.setGenes(genes);
-		copy.setRates(rates);
+	/*
+	 * Vergibt die Innovationsnummern oberhalb von base neu (siehe
+	 * GeneTable#renumber) und gibt die zuletzt vergebene Nummer zurück.
+	 */
+	int renumber(int base, int[] table, int next) {
+		next = genes.renumber(base, table, next);
+		this.invalidateNetwork();
+
+		return next;
+	}
+
+	/**
+	 * Kopiert dieses Netzwerk. Die Verbindungen werden dabei nicht kopiert,
+	 * sondern geteilt, bis eines der beiden Netzwerke sie verändert (siehe
+	 * {@link GeneTable}). Außerhalb von {@link Pool#newGeneration()} ist die
+	 * Kopie vom Speicher der {@link PopulationArena} gelöst und kann z.B. als
+	 * bestes Netzwerk über beliebig viele Generationen aufbewahrt werden.
+	 * 
+	 * @return kopiertes Objekt
+	 */
+	public Genome copyGenome() {
+		GeneTable genes = this.genes.copy(Pool.getInstance().getBreedingBuffer());
+		Genome copy = new Genome(new ArrayList<Neuron>(this.neurons), genes, 0);
+
+		System.arraycopy(this.rates, 0, copy.rates, 0, this.rates.length);
+		copy.bias = this.bias;
+		copy.setParents(this, null);
 
 		return copy;
 	}
@@ -292,60 +575,52 @@ public class Genome implements Comparable<Genome> {
 	 * @return neu generiertes Netzwerk
 	 */
 	public Genome matchGenomes(Genome gen2) {
-		Genome child = new Genome(this.ID);
+		return this.matchGenomes(gen2,
+			Pool.getInstance().getRandomSource().current());
+	}
+
+	/**
+	 * Kombiniert dieses Netzwerk mit einem zweiten, um ein neues Netzwerk zu
+	 * erzeugen. Alle Zufallsentscheidungen werden aus <code>random</code>
+	 * gezogen. Die beiden Netzwerke werden nicht verändert, so dass mehrere
+	 * Threads gleichzeitig aus den gleichen Eltern Kinder erzeugen können.
+	 * 
+	 * @param gen2
+	 *           zweites Netzwerk zur Kombination
+	 * @param random
+	 *           Zufallsquelle
+	 * @return neu generiertes Netzwerk
+	 */
+	public Genome matchGenomes(Genome gen2, SplittableRandom random) {
 		/* Bestimmung besseres und schlechteres Netzwerk */
-		Genome h = (this.fitness.get() > gen2.getFitness()) ? this : gen2;
-		Genome l = (this.fitness.get() > gen2.getFitness()) ? gen2 : this;
+		Genome h = (this.fitness > gen2.getFitness()) ? this : gen2;
+		Genome l = (this.fitness > gen2.getFitness()) ? gen2 : this;
 
-		int size1 = h.genes.size();
-		int size2 = l.getGenes().size();
+		GeneTable hg = h.genes;
+		GeneTable lg = l.genes;
 
-		if (size1 == 0 && size2 == 0) {
-			child = h.copyGenome();
-			return child;
+		if (hg.size() == 0 && lg.size() == 0) {
+			Genome copy = h.copyGenome();
+			copy.setParents(h, l);
+			return copy;
 		}
 
-		h.getGenes().sort(null);
-		l.getGenes().sort(null);
-
-		/* Berechne die maximale Innovationsnummer */
-		int maxH = (size1 > 0)
-			? h.getGenes().get(size1 - 1).getHistoricalMarking() : 0;
-		int maxL = (size2 > 0)
-			? l.getGenes().get(size2 - 1).getHistoricalMarking() : 0;
-		int maxInn = Math.max(maxH, maxL) + 1;
-
-		Gene[] inn = new Gene[maxInn];
-
-		for (Gene g : l.getGenes())
-			inn[g.getHistoricalMarking()] = g;
+		Pool pool = Pool.getInstance();
+		List<Neuron> neurons = new ArrayList<Neuron>(h.neurons.size());
+		GeneTable genes = new GeneTable(hg.size(), pool.getBreedingBuffer());
 
 		/*
-		 * Füge Verbindungen aus beiden Netzwerken dem neuen hinzu. Disjoint-
-		 * und Excess-Verbindungen nur vom besseren
+		 * Füge Verbindungen aus beiden Netzwerken und alle notwendigen Neuronen
+		 * dem neuen hinzu. Disjoint- und Excess-Verbindungen nur vom besseren.
 		 */
-		for (Gene g : h.getGenes())
-			if (inn[g.getHistoricalMarking()] != null && Math.random() < 0.5
-				&& inn[g.getHistoricalMarking()].getEnabled()) {
-			child.addGene(inn[g.getHistoricalMarking()].copyGene());
-			} else
-			child.addGene(g.copyGene());
-
-		/* Fügt alle notwendigen Neuronen hinzu */
-		for (Neuron n : Pool.getInstance().getEssentialNeurons())
-			child.addNeuron(n);
-
-		/* Fügt alle zusätzlichen Neuronen hinzu */
-		for (Gene g : child.getGenes()) {
-			child.addNeuron(g.getOrigin());
-			child.addNeuron(g.getInto());
-		}
+		Crossover.merge(h, l, pool.getEssentialNeurons(), genes, neurons,
+			random);
+
+		Genome child = new Genome(neurons, genes, this.ID);
 
 		/* neues Netzwerk bekommt Mutationsraten vom besseren Netzwerk */
-		DoubleProperty[] rates = new SimpleDoubleProperty[6];
-		DoubleProperty[] hrates = h.getRates();
-		for (int i = 0; i < 6; i++)
-			rates[i] = new SimpleDoubleProperty(hrates[i].doubleValue());
+		System.arraycopy(h.rates, 0, child.rates, 0, h.rates.length);
+		child.setParents(h, l);
 
 		return child;
 	}
@@ -365,38 +640,55 @@ public class Genome implements Comparable<Genome> {
 	 * </ul>
 	 */
 	public void mutateGenome() {
+		this.mutateGenome(Pool.getInstance().getRandomSource().current());
+	}
+
+	/**
+	 * Führt einen Mutationszyklus aus (siehe {@link #mutateGenome()}). Alle
+	 * Zufallsentscheidungen werden aus <code>random</code> gezogen.
+	 * 
+	 * @param random
+	 *           Zufallsquelle
+	 */
+	public void mutateGenome(SplittableRandom random) {
 		/* erst Raten modifizieren... */
-		this.alterRates();
+		this.alterRates(random);
 
 		/* ... dann gegebenenfalls Mutierungen durchführen */
-		if (Math.random() < rates[0].get())
-			this.mutateConnections();
+		if (random.nextDouble() < rates[0] && this.mutateConnections(random))
+			operators |= LineageStore.WEIGHTS;
 
 		for (int i = 1; i < 6; i++) {
-			double rate = rates[i].get();
+			double rate = rates[i];
 
 			while (rate > 0.) {
-			if (Math.random() < rate) {
+			if (random.nextDouble() < rate) {
+				boolean changed;
+
 				switch (i) {
 				case 1:
-					mutateLink(false);
+					changed = mutateLink(false, random);
 					break;
 				case 2:
-					if (this.genes.size() > 0)
-						mutateNode();
+					changed = this.genes.size() > 0 && mutateNode(random);
 					break;
 				case 3:
-					mutateLink(true);
+					changed = mutateLink(true, random);
 					break;
 				case 4:
-					mutateEnable(true);
+					changed = mutateEnable(true, random);
 					break;
 				case 5:
-					mutateEnable(false);
+					changed = mutateEnable(false, random);
 					break;
 				default:
 					/* Das kann nicht passieren!!! */
+					changed = false;
 				}
+
+				/* Bit i gehört zur Rate i (siehe LineageStore) */
+				if (changed)
+					operators |= 1 << i;
 			}
 
 			rate -= 1.;
@@ -407,25 +699,11 @@ public class Genome implements Comparable<Genome> {
 	/**
 	 * Berechnet für alle Neuronen die Werte innerhalb dieses Netzwerkes.
 	 * Verwendet hierbei die aktuell eingegebenen Werte innerhalb der Input
-	 * Neuronen.
+	 * Neuronen. Die Berechnung läuft über die zwischengespeicherte
+	 * {@link CompiledNetwork}-Darstellung.
 	 */
 	public void simulateGenome() {
-		log.debug("Genome: " + this.ID);
-		/* Zurücksetzen und erstellen der IncomingList aller Neuronen */
-		for (Neuron n : neurons)
-			n.resetIncoming();
-
-		for (Gene g : genes)
-			if (g.getEnabled()) {
-			Neuron into = g.getInto();
-			into.addIncoming(g);
-			}
-
-		/* neue Werte für Neuronen berechnen */
-		for (Neuron n : neurons)
-			if (!n.isCalculated())
-			n.calculateValue();
-
+		this.getNetwork().activate();
 	}
 
 	/**
@@ -437,29 +715,7 @@ public class Genome implements Comparable<Genome> {
 	 * @return Strukturunterscheidungsgrad
 	 */
 	public double deltaStructure(Genome gen2) {
-		int structuralDifferences = 0;
-		int size1 = this.genes.size();
-		int size2 = gen2.getGenes().size();
-		double n = Math.max(size1, size2);
-
-		/* Berechne die maximale Innovationsnummer */
-		int maxInn = Pool.getInstance().getHistoricalMarking();
-
-		boolean[] inn1 = new boolean[maxInn + 1];
-		boolean[] inn2 = new boolean[maxInn + 1];
-
-		for (Gene g : this.genes)
-			inn1[g.getHistoricalMarking()] = true;
-		for (Gene g : gen2.getGenes())
-			inn2[g.getHistoricalMarking()] = true;
-
-		for (int i = 0; i < maxInn; i++)
-			if (inn1[i] != inn2[i])
-			structuralDifferences++;
-
-		if (n < 0.5)
-			n = 1.0;
-		return structuralDifferences / n;
+		return CompatibilityDistance.structure(this.genes, gen2.genes);
 	}
 
 	/**
@@ -471,31 +727,11 @@ public class Genome implements Comparable<Genome> {
 	 * @return durchschnittlicher Gewichtungsunterschied
 	 */
 	public double deltaWeight(Genome gen2) {
-		double deltaWeight = 0.;
-		int n = 0;
-
-		/* Berechne die maximale Innovationsnummer */
-		int maxInn = Pool.getInstance().getHistoricalMarking();
-
-		Gene[] inn = new Gene[maxInn + 1];
-
-		for (Gene g : gen2.getGenes())
-			inn[g.getHistoricalMarking()] = g;
-
-		for (Gene g : this.genes)
-			if (inn[g.getHistoricalMarking()] != null) {
-			Gene g2 = inn[g.getHistoricalMarking()];
-			deltaWeight += Math.abs(g.getWeight() - g2.getWeight());
-			n++;
-			}
-
-		if (n == 0)
-			n = 1;
-		return deltaWeight / n;
+		return CompatibilityDistance.weight(this.genes, gen2.genes);
 	}
 
-	/* Änderung aller Gewichtungen */
-	private void mutateConnections() {
+	/* Änderung aller Gewichtungen, false ohne Verbindungen */
+	private boolean mutateConnections(SplittableRandom random) {
 		/*
 		 * TODO: Vielleicht Hard Coding entfernen und einen Parameter einführen
 		 */
@@ -503,242 +739,165 @@ public class Genome implements Comparable<Genome> {
 		double lowChange = 0.9;
 
 		for (int i = 0; i < genes.size(); i++) {
-			Gene gene = genes.get(i);
-			if (Math.random() < lowChange)
-			gene.setWeight(gene.getWeight() + Math.random() * 2 * step - step);
+			if (random.nextDouble() < lowChange)
+			genes.setWeight(i,
+				genes.getWeight(i) + random.nextDouble() * 2 * step - step);
 			else
-			gene.setWeight(Math.random() * 4 - 2);
+			genes.setWeight(i, random.nextDouble() * 4 - 2);
 		}
-	}
 
-	/* Hinzufügen einer neuen Verbindung */
-	private void mutateLink(boolean bias) {
-		Random rn = new Random();
-		Neuron neuron1 = this.neurons.get(rn.nextInt(this.neurons.size()));
-		Neuron neuron2 = this.neurons.get(rn.nextInt(this.neurons.size()));
+		this.invalidateNetwork();
+		return genes.size() > 0;
+	}
 
-		/* Keine Verbindung auf das gleiche Neuron */
-		if (neuron1 == neuron2)
-			return;
+	/*
+	 * Hinzufügen einer neuen Verbindung. Es werden so lange zufällige Paare
+	 * von Neuronen gezogen, bis eines eine gültige neue Verbindung ergibt
+	 * (höchstens LINK_ATTEMPTS Versuche). Die Richtung ergibt sich aus den
+	 * Typen (Input und Bias nur als Ursprung, Output nur als Ziel), zwischen
+	 * zwei anderen Neuronen aus der topologischen Sortierung. Damit kann der
+	 * Vorschlag keinen Zyklus bilden, und bestehende Verbindungen werden über
+	 * die Hashtabelle der Sortierung erkannt. Gibt zurück, ob eine Verbindung
+	 * hinzugefügt wurde.
+	 */
+	private boolean mutateLink(boolean bias, SplittableRandom random) {
+		TopologicalOrder order = this.getOrder();
+		int size = this.neurons.size();
+
+		for (int attempt = 0; attempt < LINK_ATTEMPTS; attempt++) {
+			int origin = bias ? this.getBias() : random.nextInt(size);
+			int into = random.nextInt(size);
+			Neuron neuron1 = this.neurons.get(origin);
+			Neuron neuron2 = this.neurons.get(into);
+
+			/* Keine Verbindung auf das gleiche Neuron */
+			if (neuron1 == neuron2)
+			continue;
+
+			boolean source1 = isSource(neuron1.getType());
+			boolean source2 = isSource(neuron2.getType());
+			boolean sink1 = neuron1.getType() == Type.OUTPUT;
+			boolean sink2 = neuron2.getType() == Type.OUTPUT;
+
+			/*
+			 * wenn beide zufälligen Neuronen Input oder Output sind, dann
+			 * nächster Versuch
+			 */
+			if (source1 && source2 || sink1 && sink2)
+			continue;
+
+			/*
+			 * sollte ein Neuron Input sein, so soll es der Origin werden, ein
+			 * Outputneuron sollte das Ziel werden, sonst entscheidet die
+			 * Sortierung
+			 */
+			if (!bias && (source2 || sink1 || !source1 && !sink2
+				&& order.getPosition(neuron2) < order.getPosition(neuron1))) {
+			int swap = origin;
+			origin = into;
+			into = swap;
+			}
 
-		Type t1 = neuron1.getType();
-		Type t2 = neuron2.getType();
+			Neuron from = this.neurons.get(origin);
+			Neuron to = this.neurons.get(into);
 
-		Neuron origin, into;
+			/* Besteht diese Verbindung (in einer Richtung) bereits, dann weiter */
+			if (order.hasConnection(from, to) || order.hasConnection(to, from))
+			continue;
 
-		/*
-		 * wenn beide zufälligen Neuronen Input oder Output sind, dann Abbruch
-		 */
-		if ((t1 == Type.INPUT || t1 == Type.BIAS)
-			&& (t2 == Type.INPUT || t2 == Type.BIAS)
-			|| (t1 == Type.OUTPUT && t2 == Type.OUTPUT))
-			return;
+			/* Alle Tests erfolgreich: neue verbindung einrichten */
+			double weight = random.nextDouble() * 4 - 2;
+			int innovation = Pool.getInstance().getInnovationRegistry()
+				.register(from, to);
 
-		/*
-		 * sollte ein Neuron Input sein, so soll es der Origin werden, ein
-		 * Outputneuron sollte das Ziel werden
-		 */
-		if (neuron2.getType() == Type.INPUT || neuron1.getType() == Type.OUTPUT
-			|| neuron2.getType() == Type.BIAS) {
-			origin = neuron2;
-			into = neuron1;
-		} else {
-			origin = neuron1;
-			into = neuron2;
+			this.addConnection(origin, into, weight, true, innovation);
+			return true;
 		}
 
-		if (bias)
-			origin = this.getBias();
-
-		Gene newGene = new Gene(origin, into);
-
-		/* Besteht diese Verbindung bereits, dann Abbruch */
-		for (int i = 0; i < genes.size(); i++)
-			if (newGene.isEqual(genes.get(i)))
-			return;
-
-		/* Alle Tests erfolgreich: neue verbindung einrichten */
-		newGene.setWeight(rn.nextDouble() * 4 - 2);
-
-		Pool.getInstance().defineHistoricalMarking(newGene);
+		return false;
+	}
 
-		this.addGene(newGene);
+	/* Input und Bias dürfen nur Ursprung einer Verbindung sein */
+	private static boolean isSource(Type type) {
+		return type == Type.INPUT || type == Type.BIAS;
 	}
 
 	/* Trennen einer Verbindung durch Einfügen eines Neurons */
-	private void mutateNode() {
-		Random rn = new Random();
-		Gene gene = genes.get(rn.nextInt(genes.size()));
+	private boolean mutateNode(SplittableRandom random) {
+		int gene = random.nextInt(genes.size());
 		Pool pool = Pool.getInstance();
-		boolean neuronExists = false;
 
 		/* bei inaktiver Verbindung wird die Mutierung abgebrochen */
-		if (gene.getEnabled() == false) {
-			return;
+		if (genes.isEnabled(gene) == false) {
+			return false;
 		}
 
-		gene.setEnabled(false);
-
-		Neuron newNeuron = null;
-		for (Neuron n : pool.getNewNeurons())
-			if (n.getInnovation() == gene.getHistoricalMarking()) {
-			newNeuron = n;
-			neuronExists = true;
-			break;
-			}
-
-		if (!neuronExists) {
-			newNeuron = new Neuron(Type.HIDDEN, gene.getHistoricalMarking());
-			pool.addNewNeuron(newNeuron);
-		}
+		genes.setEnabled(gene, false);
+		this.invalidateNetwork();
 
-		Gene newGene1 = new Gene(gene.getOrigin(), newNeuron, 1.0);
-		Gene newGene2 = new Gene(newNeuron, gene.getInto(), gene.getWeight());
+		int origin = genes.getSource(gene);
+		int into = genes.getTarget(gene);
+		double weight = genes.getWeight(gene);
+		Neuron newNeuron = pool.splitNeuron(genes.getInnovation(gene));
 
-		pool.defineHistoricalMarking(newGene1);
-		pool.defineHistoricalMarking(newGene2);
+		InnovationRegistry innovations = pool.getInnovationRegistry();
+		int innovation1 = innovations.register(neurons.get(origin), newNeuron);
+		int innovation2 = innovations.register(newNeuron, neurons.get(into));
 
 		this.addNeuron(newNeuron);
-		this.addGene(newGene1);
-		this.addGene(newGene2);
+		int split = this.indexOf(newNeuron);
+
+		this.addConnection(origin, split, 1.0, true, innovation1);
+		this.addConnection(split, into, weight, true, innovation2);
+		return true;
 	}
 
 	/* (De-)Aktivieren einer (in-)aktiven Verbindung */
-	private void mutateEnable(boolean enable) {
-		Random rn = new Random();
-		List<Gene> candidates = new ArrayList<Gene>();
-
-		for (int i = 0; i < genes.size(); i++)
-			if (genes.get(i).getEnabled() == enable)
-			candidates.add(genes.get(i));
+	private boolean mutateEnable(boolean enable, SplittableRandom random) {
+		int candidates = genes.count(enable);
 
 		/* Wenn es keine (in-)aktive Verbindung gibt, Abbruch */
-		if (candidates.size() == 0)
-			return;
+		if (candidates == 0)
+			return false;
 
-		Gene gene = candidates.get(rn.nextInt(candidates.size()));
-		gene.setEnabled(!gene.getEnabled());
+		/* die k-te (in-)aktive Verbindung umschalten */
+		genes.setEnabled(genes.select(enable, random.nextInt(candidates)),
+			!enable);
+
+		this.invalidateNetwork();
+		return true;
 	}
 
 	/* Ändern der Raten zur Entwicklung verschiedenster Netzwerke */
-	private void alterRates() {
+	private void alterRates(SplittableRandom random) {
 		/*
 		 * 0.95 * 1.05263 ~= 1 TODO: Vielleicht Hardcoding entfernen und einen
 		 * Parameter einführen
 		 */
 		for (int i = 0; i < 6; i++)
-			if (Math.random() < 0.5)
-			rates[i].set(rates[i].get() * 0.95);
+			if (random.nextDouble() < 0.5)
+			rates[i] *= 0.95;
 			else
-			rates[i].set(rates[i].get() * 1.05263);
+			rates[i] *= 1.05263;
 	}
 
-	/* Suchen des Biasneurons innerhalb des Netzwerkes */
-	private Neuron getBias() {
-		Neuron bias = null;
+	/* Suchen des Biasneurons (Index) innerhalb des Netzwerkes */
+	private int getBias() {
+		if (bias >= 0)
+			return bias;
 
 		/*
 		 * Es sollte nur ein Biasneuron vorhanden sein. Sollten mehrere
 		 * existieren, so wird das erste ausgewählt.
 		 */
 		for (int i = 0; i < neurons.size(); i++)
-			if (neurons.get(i).getType() == Type.BIAS) {
-			bias = neurons.get(i);
-			break;
-			}
+			if (neurons.get(i).getType() == Type.BIAS)
+			return bias = i;
 
 		/* Eigentlich nicht nötig, zur Sicherheit */
-		if (bias == null) {
-			bias = new Neuron(Type.BIAS);
-			this.addNeuron(bias);
-		}
-
-		return bias;
-	}
-
-	/*
-	 * Kontrolliert, ob durch das Hinzufügen dieser Verbindung ein Zyklus
-	 * entsteht
-	 */
-	private boolean checkForLoop(Gene g) {
-		/*
-		 * Wenn nicht zwei Hiddenneuronen verbunden werden, so ist kein Zyklus
-		 * möglich
-		 */
-		log.trace("ENTER checkForLoop() - " + this.getID());
-		if (g.getOrigin().getType() != Type.HIDDEN
-			|| g.getInto().getType() != Type.HIDDEN) {
-			log.trace("EXIT checkForLoop() - Not both Neurons are HIDDEN");
-			return false;
-		}
-
-		List<Gene> possibleLoopGenes = new ArrayList<Gene>();
-		List<Neuron> loopNeurons = new ArrayList<Neuron>();
-
-		/* Alle möglichen Zyklusverbindungen in einer Liste zusammenfassen */
-		for (Gene gene : genes)
-			if (gene.getOrigin().getType() == Type.HIDDEN
-				&& gene.getInto().getType() == Type.HIDDEN)
-			possibleLoopGenes.add(gene);
-		possibleLoopGenes.add(g);
-
-		/* Erstellen einer Liste aller verbundenen Hiddenneurons */
-		for (Gene gene : possibleLoopGenes) {
-			if (!loopNeurons.contains(gene.getOrigin())) {
-			loopNeurons.add(gene.getOrigin());
-			gene.getOrigin().resetIncoming();
-			}
-			if (!loopNeurons.contains(gene.getInto())) {
-			loopNeurons.add(gene.getInto());
-			gene.getInto().resetIncoming();
-			}
-			gene.getInto().addIncoming(gene);
-		}
-
-		/* Zykluserkennung mittels Tiefensuche */
-		for (Neuron neuron : loopNeurons) {
-			boolean[] visited = new boolean[loopNeurons.size()];
-			boolean[] finished = new boolean[loopNeurons.size()];
-
-			boolean cycl = checkLoopNeuron(neuron, loopNeurons, visited,
-				finished);
+		this.addNeuron(new Neuron(Type.BIAS));
 
-			/* Zyklus erkannt */
-			if (cycl) {
-			log.trace("EXIT checkForLoop() - Zyklus erkannt");
-			return true;
-			}
-		}
-		log.trace("EXIT checkForLoop() - End");
-		return false;
-	}
-
-	/*
-	 * Benötigte Untermethode für checkForLoop Wird benutzt, um ein Neuron zu
-	 * kontrollieren
-	 */
-	private boolean checkLoopNeuron(Neuron n, List<Neuron> list,
-			boolean[] visited, boolean[] finished) {
-		if (finished[list.indexOf(n)])
-			return false;
-
-		/*
-		 * Wenn schonmal besucht aber nicht beendet, dann kam ein Anruf von
-		 * diesem Neuron: Zyklus!!
-		 */
-		if (visited[list.indexOf(n)])
-			return true;
-
-		visited[list.indexOf(n)] = true;
-		// log.debug("# of incoming Connections: "+n.getIncoming().size());
-		for (Gene gene : n.getIncoming()) {
-			if (checkLoopNeuron(gene.getOrigin(), list, visited, finished))
-			return true;
-		}
-
-		finished[list.indexOf(n)] = true;
-
-		return false;
+		return bias = neurons.size() - 1;
 	}
 
 	@Override
@@ -750,7 +909,7 @@ public class Genome implements Comparable<Genome> {
 	 */
 	public int compareTo(Genome o) {
 		/* TODO: fitness oder adjustedFitness ? */
-		double deltaFitness = this.fitness.get() - o.getFitness();
+		double deltaFitness = this.fitness - o.getFitness();
 
 		if (deltaFitness > 0)
 			return -1;
@@ -765,16 +924,14 @@ public class Genome implements Comparable<Genome> {
 		String genome = new String();
 		String nline = "\n";
 
-		genes.sort(null);
-
-		genome = nline + "Netzwerk " + this.ID.intValue() + ", Fitness: "
-			+ String.format("%.3f", this.fitness.doubleValue());
+		genome = nline + "Netzwerk " + this.ID + ", Fitness: "
+			+ String.format("%.3f", this.fitness);
 
 		for (Neuron n : neurons)
 			genome = genome + nline + n;
 
-		for (Gene g : genes)
-			genome = genome + nline + g;
+		for (int i = 0; i < genes.size(); i++)
+			genome = genome + nline + this.getGene(i);
 
 		genome = genome + nline;
 		return genome;
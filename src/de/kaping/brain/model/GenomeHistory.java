@@ -0,0 +1,390 @@
+package de.kaping.brain.model;
+
+import java.util.Arrays;
+
+/**
+ * Verlauf der Bewertungen einzelner Netzwerke über ihre ID. Nur Kinder aus
+ * {@link Genome#matchGenomes(Genome)} übernehmen die ID des aufrufenden
+ * Elternteils, so entsteht der Verlauf einer Linie über mehrere Generationen.
+ * Kopien aus {@link Genome#copyGenome()} bekommen eine neue ID; ein kopiertes
+ * und mutiertes Netzwerk beginnt also einen neuen Verlauf. Haben in einer
+ * Generation mehrere Netzwerke die gleiche ID, wird die beste Bewertung
+ * gespeichert.
+ * <p>
+ * Der Speicher ist fest begrenzt: Für höchstens <code>capacity</code>
+ * Netzwerke werden je die letzten <code>depth</code> Einträge in einem
+ * Ringpuffer aus primitiven Arrays gehalten. Netzwerke, die seit mehr als
+ * <code>maxAge</code> Generationen keinen Eintrag bekommen haben, werden
+ * verworfen. Ist trotzdem kein Platz mehr frei, wird das Netzwerk verdrängt,
+ * dessen letzter Eintrag am längsten zurückliegt (im Uhrzeigerverfahren,
+ * d.h. ohne Sortierung). Die Zuordnung von ID zu Puffer ist eine offene
+ * Hashtabelle über <code>int</code>, es entstehen also auch bei 100.000
+ * Netzwerken je Generation keine Objekte.
+ * <p>
+ * Die Klasse ist nicht threadsicher.
+ *
+ * @author MPreloaded
+ */
+public class GenomeHistory implements IHistory<Genome> {
+
+	/* Standardwerte der Aufbewahrung */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	public static final int DEFAULT_DEPTH = 16;
+	public static final int DEFAULT_MAX_AGE = 32;
+
+	/* freier Platz in der Hashtabelle */
+	private static final int EMPTY = -1;
+
+	private final int capacity;
+	private final int depth;
+	private final int maxAge;
+
+	/* Hashtabelle ID -> Puffer */
+	private final int[] keys;
+	private final int[] buckets;
+	private final int mask;
+	private final int shift;
+
+	/* je Puffer */
+	private final int[] ids;
+	private final int[] last;
+	private final int[] heads;
+	private final int[] counts;
+	private final int[] free;
+	private int freeCount;
+	private int size;
+	private int hand;
+	private int swept;
+
+	/* Einträge: Puffer i belegt [i * depth, (i + 1) * depth) */
+	private final int[] generations;
+	private final double[] fitness;
+
+	private int generation;
+
+	/**
+	 * Konstruktor mit der Standard-Aufbewahrung
+	 */
+	public GenomeHistory() {
+		this(DEFAULT_CAPACITY, DEFAULT_DEPTH, DEFAULT_MAX_AGE);
+	}
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param capacity
+	 *           höchstens gleichzeitig gespeicherte Netzwerke
+	 * @param depth
+	 *           höchstens gespeicherte Einträge je Netzwerk
+	 * @param maxAge
+	 *           Anzahl Generationen ohne Eintrag, nach der ein Netzwerk
+	 *           verworfen wird (0 für unbegrenzt)
+	 */
+	public GenomeHistory(int capacity, int depth, int maxAge) {
+		super();
+		if (capacity < 1 || depth < 1 || maxAge < 0)
+			throw new IllegalArgumentException("Invalid retention: capacity "
+				+ capacity + ", depth " + depth + ", maxAge " + maxAge);
+		if ((long) capacity * depth > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(
+				"Retention too large: " + capacity + " x " + depth);
+
+		this.capacity = capacity;
+		this.depth = depth;
+		this.maxAge = maxAge;
+
+		int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+		this.keys = new int[tableSize];
+		this.buckets = new int[tableSize];
+		this.mask = tableSize - 1;
+		this.shift = Integer.numberOfLeadingZeros(mask);
+		Arrays.fill(this.buckets, EMPTY);
+
+		this.ids = new int[capacity];
+		this.last = new int[capacity];
+		this.heads = new int[capacity];
+		this.counts = new int[capacity];
+		this.free = new int[capacity];
+		for (int i = 0; i < capacity; i++)
+			this.free[i] = capacity - 1 - i;
+		this.freeCount = capacity;
+		this.size = 0;
+		this.hand = 0;
+		this.swept = 0;
+
+		this.generations = new int[capacity * depth];
+		this.fitness = new double[capacity * depth];
+		this.generation = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Speichert die Bewertungen aller Netzwerke der aktuellen, bereits
+	 * bewerteten Generation eines Pools.
+	 *
+	 * @param pool
+	 *           bewerteter Pool
+	 */
+	public void record(Pool pool) {
+		int generation = pool.getGeneration();
+
+		for (Species s : pool.getSpecies())
+			for (Genome g : s.getGenomes())
+			this.addEntry(g.getID(), generation, g.getFitness());
+	}
+
+	/**
+	 * Speichert die aktuelle Bewertung eines Netzwerks für die aktuelle
+	 * Generation des Pools.
+	 */
+	@Override
+	public void addEntry(Genome o) {
+		if (o == null)
+			throw new IllegalArgumentException("Genome Parameter is NULL!");
+
+		this.addEntry(o.getID(), Pool.getInstance().getGeneration(),
+			o.getFitness());
+	}
+
+	/**
+	 * Speichert eine Bewertung für eine ID. Die Generationen müssen je ID
+	 * aufsteigend gemeldet werden; ein zweiter Eintrag der gleichen
+	 * Generation behält die bessere Bewertung.
+	 *
+	 * @param id
+	 *           ID des Netzwerks
+	 * @param generation
+	 *           Generation der Bewertung
+	 * @param value
+	 *           Bewertung
+	 */
+	public void addEntry(int id, int generation, double value) {
+		if (generation != this.generation) {
+			this.generation = generation;
+			this.swept = 0;
+			this.expire();
+		}
+
+		int slot = this.find(id);
+		if (slot == EMPTY)
+			slot = this.allocate(id);
+
+		int base = slot * depth;
+		int count = counts[slot];
+		if (count > 0) {
+			int newest = base + (heads[slot] + count - 1) % depth;
+			if (generations[newest] == generation) {
+				fitness[newest] = Math.max(fitness[newest], value);
+				return;
+			}
+		}
+
+		int pos;
+		if (count < depth) {
+			pos = (heads[slot] + count) % depth;
+			counts[slot] = count + 1;
+		} else {
+			pos = heads[slot];
+			heads[slot] = (pos + 1) % depth;
+		}
+
+		generations[base + pos] = generation;
+		fitness[base + pos] = value;
+		last[slot] = generation;
+	}
+
+	/**
+	 * Gibt die gespeicherten Bewertungen eines Netzwerks zurück, von alt nach
+	 * neu. Es sind höchstens <code>depth</code> Einträge.
+	 *
+	 * @return Bewertungen oder <code>null</code>, wenn für die ID nichts
+	 *         gespeichert ist
+	 */
+	@Override
+	public double[] getHistory(Genome o) {
+		if (o == null)
+			throw new IllegalArgumentException("Genome Parameter is NULL!");
+
+		int slot = this.find(o.getID());
+		if (slot == EMPTY)
+			return null;
+
+		double[] history = new double[counts[slot]];
+		this.getHistory(o.getID(), null, history);
+
+		return history;
+	}
+
+	/**
+	 * Schreibt die gespeicherten Einträge einer ID von alt nach neu in die
+	 * übergebenen Arrays, ohne neue anzulegen.
+	 *
+	 * @param id
+	 *           ID des Netzwerks
+	 * @param generations
+	 *           Ziel für die Generationen oder <code>null</code>
+	 * @param fitness
+	 *           Ziel für die Bewertungen oder <code>null</code>
+	 * @return Anzahl Einträge (höchstens die Länge der Arrays)
+	 */
+	public int getHistory(int id, int[] generations, double[] fitness) {
+		int slot = this.find(id);
+		if (slot == EMPTY)
+			return 0;
+
+		int n = counts[slot];
+		if (generations != null)
+			n = Math.min(n, generations.length);
+		if (fitness != null)
+			n = Math.min(n, fitness.length);
+
+		int base = slot * depth;
+		int skip = counts[slot] - n;
+		for (int i = 0; i < n; i++) {
+			int pos = base + (heads[slot] + skip + i) % depth;
+			if (generations != null)
+				generations[i] = this.generations[pos];
+			if (fitness != null)
+				fitness[i] = this.fitness[pos];
+		}
+
+		return n;
+	}
+
+	/**
+	 * Gibt die Anzahl gespeicherter Netzwerke zurück.
+	 */
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Prüft, ob für eine ID Einträge gespeichert sind.
+	 *
+	 * @param id
+	 *           ID des Netzwerks
+	 * @return Wahrheitswert, ob Einträge vorhanden sind
+	 */
+	public boolean contains(int id) {
+		return this.find(id) != EMPTY;
+	}
+
+	/**
+	 * @return höchstens gleichzeitig gespeicherte Netzwerke
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return höchstens gespeicherte Einträge je Netzwerk
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Anzahl Generationen ohne Eintrag, nach der ein Netzwerk
+	 *         verworfen wird (0 für unbegrenzt)
+	 */
+	public int getMaxAge() {
+		return maxAge;
+	}
+
+	/* Verwirft alle Netzwerke, die zu lange keinen Eintrag hatten */
+	private void expire() {
+		if (maxAge == 0 || size == 0)
+			return;
+
+		long limit = (long) generation - maxAge;
+		for (int slot = 0; slot < capacity; slot++)
+			if (counts[slot] > 0 && last[slot] < limit)
+			this.release(slot);
+	}
+
+	/* Belegt einen Puffer für id, verdrängt notfalls den ältesten */
+	private int allocate(int id) {
+		if (freeCount == 0)
+			this.release(this.victim());
+
+		int slot = free[--freeCount];
+		ids[slot] = id;
+		heads[slot] = 0;
+		counts[slot] = 0;
+		last[slot] = generation;
+		size++;
+
+		int i = this.hash(id);
+		while (buckets[i] != EMPTY)
+			i = (i + 1) & mask;
+		keys[i] = id;
+		buckets[i] = slot;
+
+		return slot;
+	}
+
+	/*
+	 * Sucht ab dem Zeiger den ersten Puffer, der in dieser Generation noch
+	 * keinen Eintrag bekommen hat. Da der Zeiger weiterläuft, trifft es grob
+	 * die am längsten nicht aktualisierten Netzwerke. Hat der Zeiger in dieser
+	 * Generation schon alle Puffer überstrichen, sind alle aktuell und es wird
+	 * ohne Suche der nächste genommen.
+	 */
+	private int victim() {
+		while (swept < capacity) {
+			int slot = hand;
+			hand = (hand + 1) % capacity;
+			swept++;
+			if (last[slot] != generation)
+			return slot;
+		}
+
+		int slot = hand;
+		hand = (hand + 1) % capacity;
+		return slot;
+	}
+
+	/* Gibt einen Puffer frei und entfernt seine ID aus der Hashtabelle */
+	private void release(int slot) {
+		int i = this.hash(ids[slot]);
+		while (buckets[i] != slot)
+			i = (i + 1) & mask;
+
+		/* nachfolgende Einträge nachrücken lassen, keine Grabsteine */
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (buckets[j] == EMPTY)
+			break;
+
+			int home = this.hash(keys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+			keys[i] = keys[j];
+			buckets[i] = buckets[j];
+			i = j;
+			}
+		}
+		buckets[i] = EMPTY;
+
+		counts[slot] = 0;
+		free[freeCount++] = slot;
+		size--;
+	}
+
+	/* Puffer einer ID oder EMPTY */
+	private int find(int id) {
+		int i = this.hash(id);
+
+		while (buckets[i] != EMPTY) {
+			if (keys[i] == id)
+			return buckets[i];
+			i = (i + 1) & mask;
+		}
+
+		return EMPTY;
+	}
+
+	private int hash(int id) {
+		return (id * 0x9e3779b9) >>> shift;
+	}
+}
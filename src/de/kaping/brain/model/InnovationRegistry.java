@@ -0,0 +1,309 @@
+package de.kaping.brain.model;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verwaltet die Innovationsnummern (historical markings) aller Verbindungen
+ * eines Pools. Tritt eine Verbindung zwischen zwei Neuronen innerhalb des
+ * eingestellten Zeitraums erneut auf, so bekommt sie die gleiche
+ * Innovationsnummer. Die Suche erfolgt über eine Hashtabelle mit dem Paar
+ * (Ursprung, Ziel) als Schlüssel und darf von mehreren Threads gleichzeitig
+ * verwendet werden.
+ * <p>
+ * Über {@link Scope} wird eingestellt, wie lange sich die Registry an eine
+ * Verbindung erinnert: nur innerhalb einer Generation, für ein Fenster von
+ * Generationen seit dem letzten Auftreten oder für den gesamten Lauf.
+ *
+ * @author MPreloaded
+ */
+public class InnovationRegistry {
+
+	/**
+	 * Zeitraum, für den sich die Registry an Verbindungen erinnert.
+	 */
+	public enum Scope {
+		/** nur innerhalb der aktuellen Generation */
+		GENERATION,
+		/** für eine feste Anzahl von Generationen seit dem letzten Auftreten */
+		WINDOW,
+		/** für den gesamten Lauf */
+		RUN;
+	}
+
+	private final Map<Key, Entry> entries;
+	private final AtomicInteger innovation;
+
+	private Scope scope;
+	private int window;
+	private volatile int generation;
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param scope
+	 *           Zeitraum, für den sich die Registry an Verbindungen erinnert
+	 * @param window
+	 *           Anzahl Generationen bei {@link Scope#WINDOW}
+	 */
+	public InnovationRegistry(Scope scope, int window) {
+		super();
+		this.entries = new ConcurrentHashMap<Key, Entry>();
+		this.innovation = new AtomicInteger(0);
+		this.generation = 0;
+		this.setScope(scope, window);
+	}
+
+	/**
+	 * Gibt die Innovationsnummer der Verbindung zwischen zwei Neuronen zurück.
+	 * Ist die Verbindung im eingestellten Zeitraum noch nicht aufgetreten, so
+	 * wird eine neue Innovationsnummer vergeben.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @return Innovationsnummer der Verbindung
+	 */
+	public int register(Neuron origin, Neuron into) {
+		Entry entry = entries.computeIfAbsent(new Key(origin, into),
+			k -> new Entry(innovation.incrementAndGet()));
+		entry.lastSeen = generation;
+
+		return entry.innovation;
+	}
+
+	/**
+	 * Speichert eine Verbindung mit bereits vergebener Innovationsnummer, falls
+	 * sie noch nicht bekannt ist.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @param marking
+	 *           Innovationsnummer der Verbindung
+	 * @return Wahrheitswert, ob die Verbindung neu gespeichert wurde
+	 */
+	public boolean record(Neuron origin, Neuron into, int marking) {
+		Entry entry = new Entry(marking);
+		entry.lastSeen = generation;
+
+		return entries.putIfAbsent(new Key(origin, into), entry) == null;
+	}
+
+	/**
+	 * Gibt die Innovationsnummer einer bekannten Verbindung zurück.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @return Innovationsnummer oder <code>0</code>, wenn die Verbindung im
+	 *         eingestellten Zeitraum nicht aufgetreten ist
+	 */
+	public int lookup(Neuron origin, Neuron into) {
+		Entry entry = entries.get(new Key(origin, into));
+
+		return (entry == null) ? 0 : entry.innovation;
+	}
+
+	/**
+	 * Vergibt eine neue Innovationsnummer ohne sie einer Verbindung
+	 * zuzuordnen.
+	 *
+	 * @return neue Innovationsnummer
+	 */
+	public int newInnovation() {
+		return innovation.incrementAndGet();
+	}
+
+	/**
+	 * Gibt die zuletzt vergebene Innovationsnummer zurück.
+	 *
+	 * @return höchste Innovationsnummer
+	 */
+	public int getInnovation() {
+		return innovation.get();
+	}
+
+	/**
+	 * Beginnt eine neue Generation und vergisst alle Verbindungen, die
+	 * außerhalb des eingestellten Zeitraums liegen. Darf nicht gleichzeitig
+	 * mit {@link #register(Neuron, Neuron)} aufgerufen werden.
+	 *
+	 * @param generation
+	 *           Nummer der neuen Generation
+	 */
+	public void newGeneration(int generation) {
+		this.generation = generation;
+
+		switch (scope) {
+		case GENERATION:
+			entries.clear();
+			break;
+		case WINDOW:
+			Iterator<Entry> it = entries.values().iterator();
+			while (it.hasNext())
+				if (generation - it.next().lastSeen >= window)
+					it.remove();
+			break;
+		case RUN:
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Vergibt alle Innovationsnummern oberhalb von <code>base</code> neu.
+	 * <code>table[i]</code> enthält die neue Nummer für
+	 * <code>base + 1 + i</code>, Verbindungen mit <code>0</code> werden
+	 * vergessen. Danach ist <code>last</code> die zuletzt vergebene Nummer.
+	 * Darf nicht gleichzeitig mit {@link #register(Neuron, Neuron)} aufgerufen
+	 * werden.
+	 *
+	 * @param base
+	 *           höchste unveränderte Innovationsnummer
+	 * @param table
+	 *           neue Innovationsnummern
+	 * @param last
+	 *           zuletzt vergebene Innovationsnummer nach der Neuvergabe
+	 */
+	void renumber(int base, int[] table, int last) {
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Key, Entry> e = it.next();
+			Entry entry = e.getValue();
+
+			if (entry.innovation <= base)
+				continue;
+
+			int marking = table[entry.innovation - base - 1];
+
+			if (marking == 0) {
+				it.remove();
+			} else {
+				Entry renumbered = new Entry(marking);
+				renumbered.lastSeen = entry.lastSeen;
+				e.setValue(renumbered);
+			}
+		}
+
+		innovation.set(last);
+	}
+
+	/* Besucher aller bekannten Verbindungen, siehe forEach() */
+	interface Visitor {
+		void visit(Neuron origin, Neuron into, int innovation, int lastSeen);
+	}
+
+	/* Übergibt alle bekannten Verbindungen an visitor (für Checkpoint) */
+	void forEach(Visitor visitor) {
+		for (Map.Entry<Key, Entry> e : entries.entrySet())
+			visitor.visit(e.getKey().origin, e.getKey().into,
+				e.getValue().innovation, e.getValue().lastSeen);
+	}
+
+	/*
+	 * Stellt eine gesicherte Verbindung wieder her (für Checkpoint), ohne die
+	 * aktuelle Innovationsnummer zu verändern.
+	 */
+	void restore(Neuron origin, Neuron into, int innovation, int lastSeen) {
+		Entry entry = new Entry(innovation);
+		entry.lastSeen = lastSeen;
+
+		entries.put(new Key(origin, into), entry);
+	}
+
+	/* Setzt Generation und zuletzt vergebene Nummer (für Checkpoint) */
+	void restore(int generation, int innovation) {
+		this.generation = generation;
+		this.innovation.set(innovation);
+	}
+
+	/* Aktuelle Generation der Registry */
+	int getGeneration() {
+		return generation;
+	}
+
+	/* Anzahl Generationen bei Scope.WINDOW */
+	int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Stellt den Zeitraum ein, für den sich die Registry an Verbindungen
+	 * erinnert. Wirkt ab der nächsten Generation.
+	 *
+	 * @param scope
+	 *           neuer Zeitraum
+	 * @param window
+	 *           Anzahl Generationen bei {@link Scope#WINDOW}
+	 */
+	public void setScope(Scope scope, int window) {
+		if (scope == null)
+			throw new IllegalArgumentException("Scope is NULL!");
+		if (scope == Scope.WINDOW && window < 1)
+			throw new IllegalArgumentException(
+				"Window must be positive: " + window);
+
+		this.scope = scope;
+		this.window = window;
+	}
+
+	/**
+	 * Gibt den eingestellten Zeitraum zurück.
+	 *
+	 * @return Zeitraum
+	 */
+	public Scope getScope() {
+		return scope;
+	}
+
+	/**
+	 * Gibt die Anzahl der aktuell bekannten Verbindungen zurück.
+	 *
+	 * @return Anzahl bekannter Verbindungen
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/* Gerichtetes Paar zweier Neuronen, verglichen über Objektidentität */
+	private static final class Key {
+		private final Neuron origin;
+		private final Neuron into;
+
+		private Key(Neuron origin, Neuron into) {
+			this.origin = origin;
+			this.into = into;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+
+			Key k = (Key) o;
+			return origin == k.origin && into == k.into;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(origin)
+				+ System.identityHashCode(into);
+		}
+	}
+
+	private static final class Entry {
+		private final int innovation;
+		private volatile int lastSeen;
+
+		private Entry(int innovation) {
+			this.innovation = innovation;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package de.kaping.brain.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Rangliste der Population nach der letzten Bewertung. Sie wird von
+ * {@link Pool#evaluateGenomes(Object...)} aufgebaut, sobald alle Bewertungen
+ * vergeben sind: jede Spezies sortiert ihre Netzwerke dabei genau einmal
+ * absteigend nach Bewertung und berechnet ihren Durchschnitt (siehe
+ * {@link Species#updateFitness()}). Das beste Netzwerk und die Summe der
+ * Durchschnitte werden hier zwischengespeichert.
+ * <p>
+ * Die besten <code>k</code> Netzwerke der Population werden über die bereits
+ * sortierten Spezies zusammengeführt, ohne alle Netzwerke zu kopieren oder
+ * erneut zu sortieren. Bei gleicher Bewertung entscheidet die Reihenfolge der
+ * Spezies und innerhalb einer Spezies die bisherige Reihenfolge.
+ *
+ * @author MPreloaded
+ */
+public class Leaderboard {
+
+	private final List<Species> species;
+	private Genome best;
+	private double totalAverageFitness;
+	private boolean current;
+
+	/**
+	 * Konstruktor
+	 */
+	public Leaderboard() {
+		super();
+		this.species = new ArrayList<Species>();
+		this.best = null;
+		this.totalAverageFitness = 0.;
+		this.current = false;
+	}
+
+	/*
+	 * Übernimmt die aktuellen Bewertungen aller Spezies. Jede Spezies wird
+	 * dabei einmal sortiert.
+	 */
+	void update(List<Species> species) {
+		this.species.clear();
+		this.best = null;
+		this.totalAverageFitness = 0.;
+
+		for (Species s : species) {
+			totalAverageFitness += s.updateFitness();
+			this.species.add(s);
+
+			Genome top = s.getRepresentative();
+			if (top != null
+				&& (best == null || top.getFitness() > best.getFitness()))
+				best = top;
+		}
+
+		this.current = true;
+	}
+
+	/* Markiert die Rangliste als veraltet, z.B. nach einer neuen Generation */
+	void invalidate() {
+		this.current = false;
+	}
+
+	/**
+	 * Prüft, ob die Rangliste seit der letzten Bewertung noch gültig ist.
+	 *
+	 * @return Wahrheitswert, ob die Rangliste aktuell ist
+	 */
+	public boolean isCurrent() {
+		return current;
+	}
+
+	/**
+	 * Gibt das beste Netzwerk der Population zurück.
+	 *
+	 * @return bestes Netzwerk oder <code>null</code>, wenn die Population leer
+	 *         ist
+	 */
+	public Genome getBest() {
+		return best;
+	}
+
+	/**
+	 * Gibt die Summe der durchschnittlichen Bewertungen aller Spezies zurück.
+	 *
+	 * @return Summe der Durchschnitte
+	 */
+	public double getTotalAverageFitness() {
+		return totalAverageFitness;
+	}
+
+	/**
+	 * Gibt die <code>k</code> besten Netzwerke der Population absteigend nach
+	 * Bewertung zurück.
+	 *
+	 * @param k
+	 *           Anzahl Netzwerke
+	 * @return höchstens <code>k</code> Netzwerke
+	 */
+	public List<Genome> getTop(int k) {
+		List<Genome> top = new ArrayList<Genome>(Math.max(0, k));
+
+		/* Zeiger je Spezies: Index der Spezies oben, Position unten */
+		PriorityQueue<long[]> heads = new PriorityQueue<long[]>(
+			Math.max(1, species.size()), (a, b) -> {
+				int c = Double.compare(this.fitness(b[0]), this.fitness(a[0]));
+
+				return (c != 0) ? c : Long.compare(a[0], b[0]);
+			});
+
+		for (int i = 0; i < species.size(); i++)
+			if (!species.get(i).getGenomes().isEmpty())
+			heads.add(new long[] { (long) i << 32 });
+
+		while (top.size() < k && !heads.isEmpty()) {
+			long[] head = heads.poll();
+			List<Genome> genomes = species.get((int) (head[0] >>> 32))
+				.getGenomes();
+			int position = (int) head[0];
+
+			top.add(genomes.get(position));
+			if (position + 1 < genomes.size()) {
+				head[0]++;
+				heads.add(head);
+			}
+		}
+
+		return top;
+	}
+
+	/* Bewertung des Netzwerkes, auf das ein Zeiger verweist */
+	private double fitness(long head) {
+		return species.get((int) (head >>> 32)).getGenomes().get((int) head)
+			.getFitness();
+	}
+}
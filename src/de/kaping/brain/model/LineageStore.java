@@ -0,0 +1,504 @@
+package de.kaping.brain.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Stammbaum aller Netzwerke eines Laufs in einer Datei. Für jedes Netzwerk
+ * wird beim ersten {@link #record(Pool)} nach seiner Bewertung ein
+ * Datensatz fester Länge angehängt: die Datensätze beider Eltern (bei einer
+ * Kopie nur des ersten, das bessere steht immer vorne), ID, Generation,
+ * Spezies, die bei der Erzeugung angewandten Operatoren und die Bewertung.
+ * Die Nummer des Datensatzes merkt sich das Netzwerk
+ * ({@link Genome#getLineage()}), seine Kinder verweisen darauf.
+ * <p>
+ * Die Datei wird in Segmenten fester Größe in den Speicher abgebildet und
+ * wächst mit ihnen; auf dem Heap liegen nur die Segmente selbst. Eltern
+ * werden immer vor ihren Kindern geschrieben, ihre Nummern sind also kleiner.
+ * Damit lässt sich die Vorfahrenmenge eines Netzwerks absteigend nach Nummer
+ * durchlaufen, ohne sich besuchte Datensätze zu merken (siehe
+ * {@link #forEachAncestor(long, int, LongPredicate)}).
+ * <p>
+ * Aufbau der Datei: Kopf aus MAGIC, VERSION, Länge eines Datensatzes und
+ * Anzahl Datensätze, danach {@value #RECORD} Bytes je Datensatz:
+ *
+ * <pre>
+ * long parent1, long parent2, int id, int generation, int species,
+ * int operators, double fitness
+ * </pre>
+ *
+ * Die Anzahl im Kopf wird mit jedem Datensatz fortgeschrieben, nach einem
+ * Absturz fehlen also höchstens die Datensätze, die das Betriebssystem noch
+ * nicht geschrieben hat. Die Klasse ist nicht threadsicher.
+ *
+ * @author MPreloaded
+ */
+public final class LineageStore implements Closeable {
+
+	/** Kein Datensatz (z.B. keine Eltern) */
+	public static final long NONE = -1L;
+
+	/* Operatoren, Bit i entspricht der Mutationsrate i eines Netzwerks */
+	/** Ändern der Gewichtungen */
+	public static final int WEIGHTS = 1 << 0;
+	/** Hinzufügen einer Verbindung */
+	public static final int LINK = 1 << 1;
+	/** Trennen einer Verbindung durch ein Neuron */
+	public static final int NODE = 1 << 2;
+	/** Hinzufügen einer Verbindung vom Biasneuron */
+	public static final int BIAS_LINK = 1 << 3;
+	/** Deaktivieren einer Verbindung */
+	public static final int DISABLE = 1 << 4;
+	/** Aktivieren einer Verbindung */
+	public static final int ENABLE = 1 << 5;
+	/** Kreuzung zweier Netzwerke */
+	public static final int CROSSOVER = 1 << 6;
+
+	static final int MAGIC = 0x4e45414c; /* "NEAL" */
+	static final int VERSION = 1;
+
+	/** Länge eines Datensatzes in Bytes */
+	public static final int RECORD = 40;
+
+	private static final int HEADER = 64;
+	private static final int COUNT = 16;
+
+	/* Datensätze je Segment, ein Segment hat 40 MB */
+	private static final int SEGMENT_SHIFT = 20;
+	private static final int SEGMENT = 1 << SEGMENT_SHIFT;
+	private static final int SEGMENT_MASK = SEGMENT - 1;
+
+	private static final int PARENT1 = 0;
+	private static final int PARENT2 = 8;
+	private static final int ID = 16;
+	private static final int GENERATION = 20;
+	private static final int SPECIES = 24;
+	private static final int OPERATORS = 28;
+	private static final int FITNESS = 32;
+
+	private final Path path;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private MappedByteBuffer[] segments;
+	private long size;
+
+	private LineageStore(Path path, FileChannel channel,
+			MappedByteBuffer header, long size) {
+		this.path = path;
+		this.channel = channel;
+		this.header = header;
+		this.segments = new MappedByteBuffer[16];
+		this.size = size;
+	}
+
+	/**
+	 * Öffnet einen Stammbaum. Existiert die Datei, wird an ihre Datensätze
+	 * angehängt, sonst wird sie angelegt.
+	 *
+	 * @param path
+	 *           Datei des Stammbaums
+	 * @return geöffneter Stammbaum
+	 * @throws IOException
+	 *            falls die Datei nicht geöffnet werden kann oder kein
+	 *            Stammbaum ist
+	 */
+	public static LineageStore open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			boolean empty = channel.size() == 0;
+			MappedByteBuffer header = channel
+				.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+
+			long size = 0;
+			if (empty) {
+				header.putInt(0, MAGIC);
+				header.putInt(4, VERSION);
+				header.putInt(8, RECORD);
+				header.putLong(COUNT, 0L);
+			} else {
+				if (header.getInt(0) != MAGIC)
+					throw new IOException("Not a lineage file: " + path);
+				if (header.getInt(4) != VERSION || header.getInt(8) != RECORD)
+					throw new IOException(
+						"Unsupported lineage version " + header.getInt(4));
+
+				size = header.getLong(COUNT);
+				if (size < 0 || HEADER + size * RECORD > channel.size())
+					throw new IOException("Corrupt lineage file: " + path);
+			}
+
+			return new LineageStore(path, channel, header, size);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Schreibt für alle Netzwerke des Pools, die noch keinen Datensatz
+	 * haben, einen Datensatz mit ihrer aktuellen Bewertung. Die Reihenfolge
+	 * ist die der Spezies und Netzwerke, ein Lauf mit gleichem Startwert
+	 * ergibt also den gleichen Stammbaum. Nummern hinter dem Ende der Datei
+	 * (z.B. aus einem Checkpoint, der mit einem anderen Stammbaum geschrieben
+	 * wurde) gelten als unbekannt: Solche Netzwerke werden neu aufgenommen,
+	 * solche Eltern fehlen.
+	 *
+	 * @param pool
+	 *           bewerteter Pool
+	 * @throws IOException
+	 *            falls die Datei nicht wachsen kann
+	 */
+	public void record(Pool pool) throws IOException {
+		int generation = pool.getGeneration();
+		long known = size;
+
+		for (Species s : pool.getSpecies())
+			for (Genome g : s.getGenomes())
+			if (g.getLineage() == NONE || g.getLineage() >= known)
+			g.setLineage(this.append(known(g.getParent1(), known),
+				known(g.getParent2(), known), g.getID(), generation, s.getID(),
+				g.getOperators(), g.getFitness()));
+	}
+
+	/**
+	 * Hängt einen Datensatz an.
+	 *
+	 * @param parent1
+	 *           Datensatz des ersten (besseren) Elternteils oder
+	 *           {@link #NONE}
+	 * @param parent2
+	 *           Datensatz des zweiten Elternteils oder {@link #NONE}
+	 * @param id
+	 *           ID des Netzwerks
+	 * @param generation
+	 *           Generation der Erzeugung
+	 * @param species
+	 *           ID der Spezies
+	 * @param operators
+	 *           angewandte Operatoren ({@link #WEIGHTS}, ...)
+	 * @param fitness
+	 *           Bewertung
+	 * @return Nummer des neuen Datensatzes
+	 * @throws IOException
+	 *            falls die Datei nicht wachsen kann
+	 */
+	public long append(long parent1, long parent2, int id, int generation,
+			int species, int operators, double fitness) throws IOException {
+		long record = size;
+		if (parent1 >= record || parent2 >= record)
+			throw new IllegalArgumentException(
+				"Parent of record " + record + " not yet written");
+
+		MappedByteBuffer segment = this.segment(record, true);
+		int offset = (int) (record & SEGMENT_MASK) * RECORD;
+
+		segment.putLong(offset + PARENT1, parent1);
+		segment.putLong(offset + PARENT2, parent2);
+		segment.putInt(offset + ID, id);
+		segment.putInt(offset + GENERATION, generation);
+		segment.putInt(offset + SPECIES, species);
+		segment.putInt(offset + OPERATORS, operators);
+		segment.putDouble(offset + FITNESS, fitness);
+
+		size = record + 1;
+		header.putLong(COUNT, size);
+
+		return record;
+	}
+
+	/**
+	 * Gibt die Anzahl Datensätze zurück.
+	 *
+	 * @return Anzahl Datensätze
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return Datensatz des ersten (besseren) Elternteils oder {@link #NONE}
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public long getParent1(long record) throws IOException {
+		return this.segment(record, false).getLong(this.offset(record) + PARENT1);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return Datensatz des zweiten Elternteils oder {@link #NONE}
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public long getParent2(long record) throws IOException {
+		return this.segment(record, false).getLong(this.offset(record) + PARENT2);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return ID des Netzwerks
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public int getID(long record) throws IOException {
+		return this.segment(record, false).getInt(this.offset(record) + ID);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return Generation der Erzeugung
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public int getGeneration(long record) throws IOException {
+		return this.segment(record, false)
+			.getInt(this.offset(record) + GENERATION);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return ID der Spezies
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public int getSpecies(long record) throws IOException {
+		return this.segment(record, false).getInt(this.offset(record) + SPECIES);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return angewandte Operatoren ({@link #WEIGHTS}, ...)
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public int getOperators(long record) throws IOException {
+		return this.segment(record, false)
+			.getInt(this.offset(record) + OPERATORS);
+	}
+
+	/**
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @return Bewertung
+	 * @throws IOException
+	 *            falls das Segment nicht abgebildet werden kann
+	 */
+	public double getFitness(long record) throws IOException {
+		return this.segment(record, false)
+			.getDouble(this.offset(record) + FITNESS);
+	}
+
+	/**
+	 * Gibt die direkte Linie eines Netzwerks zurück: den Datensatz selbst,
+	 * dessen ersten (besseren) Elternteil, dessen ersten Elternteil usw.
+	 *
+	 * @param record
+	 *           Nummer des Datensatzes
+	 * @param max
+	 *           höchstens zurückgegebene Datensätze
+	 * @return Datensätze vom Netzwerk bis zum ältesten Vorfahren
+	 * @throws IOException
+	 *            falls ein Segment nicht abgebildet werden kann
+	 */
+	public long[] getLine(long record, int max) throws IOException {
+		long[] line = new long[Math.min(max, 64)];
+		int n = 0;
+
+		while (record != NONE && n < max) {
+			if (n == line.length)
+				line = Arrays.copyOf(line, Math.min(max, n * 2));
+			line[n++] = record;
+			record = this.getParent1(record);
+		}
+
+		return Arrays.copyOf(line, n);
+	}
+
+	/**
+	 * Durchläuft alle Vorfahren eines Netzwerks über beide Eltern, jeden
+	 * genau einmal, absteigend nach Nummer (also grob von jung nach alt). Da
+	 * Eltern immer kleinere Nummern als ihre Kinder haben, genügt dafür eine
+	 * Halde der noch offenen Nummern; doppelt erreichte Vorfahren liegen dort
+	 * direkt hintereinander.
+	 *
+	 * @param record
+	 *           Nummer des Datensatzes (wird selbst nicht besucht)
+	 * @param generations
+	 *           nur Vorfahren, die höchstens so viele Generationen vor dem
+	 *           Netzwerk erzeugt wurden (negativ für alle)
+	 * @param visitor
+	 *           erhält jede Nummer, bei <code>false</code> wird abgebrochen
+	 * @return Anzahl besuchter Vorfahren
+	 * @throws IOException
+	 *            falls ein Segment nicht abgebildet werden kann
+	 */
+	public long forEachAncestor(long record, int generations,
+			LongPredicate visitor) throws IOException {
+		long oldest = (generations < 0) ? Long.MIN_VALUE
+			: (long) this.getGeneration(record) - generations;
+		LongHeap open = new LongHeap();
+		long visited = 0;
+		long last = NONE;
+
+		this.push(open, record, oldest);
+
+		while (!open.isEmpty()) {
+			long r = open.poll();
+			if (r == last)
+				continue;
+			last = r;
+
+			if (r != record) {
+				visited++;
+				if (!visitor.test(r))
+					break;
+			}
+
+			this.push(open, this.getParent1(r), oldest);
+			this.push(open, this.getParent2(r), oldest);
+		}
+
+		return visited;
+	}
+
+	/**
+	 * Schreibt alle abgebildeten Segmente auf die Platte.
+	 */
+	public void flush() {
+		for (MappedByteBuffer segment : segments)
+			if (segment != null)
+			segment.force();
+		header.force();
+	}
+
+	/**
+	 * Gibt die Datei des Stammbaums zurück.
+	 *
+	 * @return Datei
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Schreibt alle Datensätze auf die Platte und schließt die Datei.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.flush();
+		segments = new MappedByteBuffer[0];
+		channel.close();
+	}
+
+	/* Datensatz oder NONE, wenn er hinter den ersten known Datensätzen liegt */
+	private static long known(long record, long known) {
+		return (record < known) ? record : NONE;
+	}
+
+	/* Legt einen Vorfahren auf die Halde, wenn er im Zeitfenster liegt */
+	private void push(LongHeap open, long record, long oldest)
+			throws IOException {
+		if (record == NONE)
+			return;
+		if (oldest != Long.MIN_VALUE && this.getGeneration(record) < oldest)
+			return;
+
+		open.add(record);
+	}
+
+	private int offset(long record) {
+		if (record < 0 || record >= size)
+			throw new IndexOutOfBoundsException(
+				"Record " + record + " of " + size);
+
+		return (int) (record & SEGMENT_MASK) * RECORD;
+	}
+
+	/* Segment eines Datensatzes, wird bei Bedarf abgebildet */
+	private MappedByteBuffer segment(long record, boolean write)
+			throws IOException {
+		if (!write)
+			this.offset(record);
+
+		long k = record >>> SEGMENT_SHIFT;
+		if (k >= Integer.MAX_VALUE)
+			throw new IOException("Lineage file too large");
+
+		if (k >= segments.length)
+			segments = Arrays.copyOf(segments,
+				(int) Math.max(k + 1, segments.length * 2L));
+
+		MappedByteBuffer segment = segments[(int) k];
+		if (segment == null) {
+			long position = HEADER + (k << SEGMENT_SHIFT) * RECORD;
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, position,
+				(long) SEGMENT * RECORD);
+			segment.order(ByteOrder.LITTLE_ENDIAN);
+			segments[(int) k] = segment;
+		}
+
+		return segment;
+	}
+
+	/* Max-Halde über long ohne Boxing */
+	private static final class LongHeap {
+		private long[] heap = new long[64];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void add(long value) {
+			if (size == heap.length)
+				heap = Arrays.copyOf(heap, size * 2);
+
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (heap[parent] >= value)
+					break;
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = value;
+		}
+
+		long poll() {
+			long top = heap[0];
+			long value = heap[--size];
+
+			int i = 0;
+			int half = size >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && heap[child + 1] > heap[child])
+					child++;
+				if (value >= heap[child])
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = value;
+
+			return top;
+		}
+	}
+}
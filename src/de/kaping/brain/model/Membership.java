@@ -0,0 +1,90 @@
+package de.kaping.brain.model;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mitgliedschaftsprüfung für eine Liste über die Identität ihrer Elemente.
+ * Kurze Listen werden einfach durchsucht; ab {@value #THRESHOLD} Elementen
+ * wird ein Hash-Index über die Identität aufgebaut und mit jedem
+ * {@link #add(List, Object)} und {@link #remove(List, Object)} fortgeführt.
+ * Damit bleibt z.B. das Einsortieren einer ganzen Generation in ihre Spezies
+ * linear.
+ * <p>
+ * Die Liste selbst bleibt die maßgebliche Datenhaltung und darf weiterhin
+ * von außen gelesen und umsortiert werden. Wird sie an diesem Index vorbei
+ * verändert (geleert, gekürzt, ersetzt), muss der Besitzer
+ * {@link #invalidate()} aufrufen; eine nur in der Länge geänderte Liste würde
+ * zwar erkannt, eine danach wieder gleich lange aber nicht.
+ *
+ * @author MPreloaded
+ */
+final class Membership<T> {
+
+	/* Listen darunter werden durchsucht */
+	static final int THRESHOLD = 16;
+
+	private final Map<T, Boolean> index;
+	private List<T> list;
+
+	Membership() {
+		super();
+		this.index = new IdentityHashMap<T, Boolean>();
+		this.list = null;
+	}
+
+	/* Prüft, ob element in list enthalten ist */
+	boolean contains(List<T> list, T element) {
+		if (list.size() < THRESHOLD) {
+			for (int i = 0; i < list.size(); i++)
+				if (list.get(i) == element)
+				return true;
+
+			return false;
+		}
+
+		return this.indexOf(list).containsKey(element);
+	}
+
+	/* Hängt element an list an, wenn es noch nicht enthalten ist */
+	boolean add(List<T> list, T element) {
+		if (this.contains(list, element))
+			return false;
+
+		list.add(element);
+		if (this.list == list)
+			index.put(element, Boolean.TRUE);
+
+		return true;
+	}
+
+	/* Entfernt element aus list */
+	boolean remove(List<T> list, T element) {
+		if (!list.remove(element))
+			return false;
+
+		if (this.list == list)
+			index.remove(element);
+
+		return true;
+	}
+
+	/* Verwirft den Index, er wird beim nächsten Zugriff neu aufgebaut */
+	void invalidate() {
+		index.clear();
+		this.list = null;
+	}
+
+	/* Gibt den aktuellen Index für list zurück */
+	private Map<T, Boolean> indexOf(List<T> list) {
+		if (this.list != list || index.size() != list.size()) {
+			index.clear();
+			for (T element : list)
+				index.put(element, Boolean.TRUE);
+			this.list = list;
+		}
+
+		return index;
+	}
+}
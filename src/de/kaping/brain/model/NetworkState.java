@@ -0,0 +1,97 @@
+package de.kaping.brain.model;
+
+/**
+ * Aktivierungszustand eines Threads für die Berechnung von Netzwerken. Enthält
+ * die Inputwerte, die berechneten Outputwerte und einen Zwischenspeicher für
+ * die Werte aller Neuronen. Die Neuronen selbst werden von allen Netzwerken
+ * des Pools geteilt und dürfen daher bei paralleler Bewertung nicht als
+ * Speicher verwendet werden.
+ * <p>
+ * Ein Zustand darf immer nur von einem Thread gleichzeitig verwendet werden,
+ * kann aber für beliebig viele Netzwerke nacheinander wiederverwendet werden.
+ *
+ * @author MPreloaded
+ */
+public class NetworkState {
+
+	private final double[] inputs;
+	private final double[] outputs;
+	private double[] values;
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param inputs
+	 *           Anzahl Inputneuronen
+	 * @param outputs
+	 *           Anzahl Outputneuronen
+	 */
+	public NetworkState(int inputs, int outputs) {
+		super();
+		this.inputs = new double[inputs];
+		this.outputs = new double[outputs];
+		this.values = new double[inputs + outputs + 1];
+	}
+
+	/**
+	 * Setzt den Wert eines Inputneurons.
+	 *
+	 * @param index
+	 *           Index des Inputneurons (Reihenfolge der Erzeugung im Pool)
+	 * @param value
+	 *           neuer Wert
+	 */
+	public void setInput(int index, double value) {
+		this.inputs[index] = value;
+	}
+
+	/**
+	 * Gibt den zuletzt berechneten Wert eines Outputneurons zurück.
+	 *
+	 * @param index
+	 *           Index des Outputneurons (Reihenfolge der Erzeugung im Pool)
+	 * @return Wert des Outputneurons
+	 */
+	public double getOutput(int index) {
+		return this.outputs[index];
+	}
+
+	/**
+	 * Berechnet ein Netzwerk mit den aktuellen Inputwerten.
+	 *
+	 * @param genome
+	 *           zu berechnendes Netzwerk
+	 */
+	public void simulate(Genome genome) {
+		genome.getNetwork().activate(this);
+	}
+
+	/**
+	 * Gibt die Inputwerte zurück.
+	 *
+	 * @return Inputwerte
+	 */
+	public double[] getInputs() {
+		return this.inputs;
+	}
+
+	/**
+	 * Gibt die Outputwerte der letzten Berechnung zurück.
+	 *
+	 * @return Outputwerte
+	 */
+	public double[] getOutputs() {
+		return this.outputs;
+	}
+
+	/*
+	 * Gibt den Zwischenspeicher für die Neuronenwerte zurück und vergrößert
+	 * ihn bei Bedarf.
+	 */
+	double[] getValues(int size) {
+		if (this.values.length < size)
+			this.values = new double[Math.max(size, this.values.length * 2)];
+
+		return this.values;
+	}
+}
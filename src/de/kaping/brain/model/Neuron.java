@@ -29,6 +29,8 @@ public class Neuron {
 
 	private Type type;
 	private List<Gene> incoming;
+	/* Index über incoming, erst bei vielen Verbindungen angelegt */
+	private Membership<Gene> incomingIndex;
 	private double value;
 	private int innovation;
 	private boolean calculated;
@@ -122,10 +124,18 @@ public class Neuron {
 		if(this.type == Type.INPUT || this.type == Type.BIAS)
 			return false;
 		
-		if (!incoming.contains(inc))
-			return incoming.add(inc);
+		if (incoming.size() < Membership.THRESHOLD)
+		{
+			if (!incoming.contains(inc))
+				return incoming.add(inc);
+
+			return false;
+		}
+
+		if (incomingIndex == null)
+			incomingIndex = new Membership<Gene>();
 
-		return false;
+		return incomingIndex.add(incoming, inc);
 	}
 
 	/**
@@ -136,6 +146,7 @@ public class Neuron {
 	public boolean resetIncoming()
 	{
 		incoming.clear();
+		this.incomingIndex = null;
 		this.calculated = false;
 		
 		return incoming.isEmpty();
@@ -150,6 +161,7 @@ public class Neuron {
 	public void setIncoming(List<Gene> incoming)
 	{
 		this.incoming = incoming;
+		this.incomingIndex = null;
 	}
 
 	/**
@@ -259,16 +271,14 @@ public class Neuron {
 	
 	/**
 	 * Verrechnet die Summe aller eingehenden Werte mit ihren Gewichtungen auf 
-	 * eine Sigmoid-Funktion.
-	 * TODO: Diese Funktion könnte auch von außen einstellbar sein.
+	 * eine Sigmoid-Funktion. Netzwerke verwenden beim Kompilieren die im Pool
+	 * eingestellte {@link ActivationFunction}.
 	 * @param value eingehender Wert
 	 * @return mit sigmoid-Funktion verrechneter Wert
 	 */
 	public static double sigmoid(double value)
 	{
-		double sig = 1/(1 + Math.pow(5., -1 * value));
-		
-		return sig;
+		return ActivationFunction.STEEPENED_SIGMOID.apply(value);
 	}
 	
 	@Override 
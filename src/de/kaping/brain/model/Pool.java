@@ -1,19 +1,27 @@
 package de.kaping.brain.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-
 /**
  * Zusammenfassung aller Netzwerke (Genomes) zu einer Population. Sorgt dafür,
  * dass Operationen über die gesamte Population durchgeführt werden können, und
@@ -28,39 +36,76 @@ public class Pool {
 	private static final Logger log = LogManager.getLogger();
 
 	private final int StaleSpecies = 15;
-	private final int Population = 100;
+	private int Population = 100;
 
 	private static Pool instance;
 
-	private IntegerProperty currentSpecies;
-	private IntegerProperty currentGenome;
+	private int currentSpecies;
+	private int currentGenome;
 
-	private DoubleProperty topFitness;
-	private IntegerProperty generation;
-	private IntegerProperty historicalMarking;
+	private double topFitness;
+	private int generation;
 
-	private ObservableList<Species> species;
-	private ObservableList<Gene> generationMarkings;
-	private List<Neuron> newNeurons;
+	private List<Species> species;
+	private final Membership<Species> members;
+	private final Leaderboard leaderboard;
+	private InnovationRegistry innovations;
+	private Map<Integer, Neuron> newNeurons;
 	private List<Neuron> essentialNeurons;
-	private AbstractFunction function;
+	private FitnessFunction function;
+	private ActivationFunction activation;
+
+	/* Zufallsquelle, aus der für jedes neue Netzwerk ein eigener Strom abgeleitet wird */
+	private RandomSource random;
+
+	/* Parallele Bewertung und Erzeugung: null bedeutet seriell */
+	private ExecutorService executor;
+	private boolean ownsExecutor;
+	private int parallelism;
+	private int inputs;
+	private int outputs;
+	private final ThreadLocal<EvaluationContext> contexts;
+
+	/* Wiederverwendeter Speicher für die Verbindungen, null bedeutet ohne */
+	private PopulationArena arena;
+
+	/* Innovationsnummern oberhalb davon sind während der Erzeugung vorläufig */
+	private int breedingBase;
+
+	/* Checkpoint, der noch im Hintergrund geschrieben wird, oder null */
+	private CompletableFuture<Void> checkpoint;
+	private int checkpointGeneration;
 
 	/**
 	 * Konstruktor
 	 */
 	private Pool() {
 		super();
-		this.currentGenome = new SimpleIntegerProperty(0);
-		this.currentSpecies = new SimpleIntegerProperty(0);
-		this.topFitness = new SimpleDoubleProperty(0.0);
-		this.generation = new SimpleIntegerProperty(1);
-		this.historicalMarking = new SimpleIntegerProperty(0);
-
-		this.species = FXCollections.observableArrayList();
-		this.generationMarkings = FXCollections.observableArrayList();
-
-		this.newNeurons = new ArrayList<Neuron>();
+		this.currentGenome = 0;
+		this.currentSpecies = 0;
+		this.topFitness = 0.0;
+		this.generation = 1;
+
+		this.species = new ArrayList<Species>();
+		this.members = new Membership<Species>();
+		this.leaderboard = new Leaderboard();
+		this.innovations = new InnovationRegistry(
+			InnovationRegistry.Scope.GENERATION, 1);
+
+		this.newNeurons = new ConcurrentHashMap<Integer, Neuron>();
 		this.function = null;
+		this.activation = ActivationFunction.STEEPENED_SIGMOID;
+
+		this.random = new RandomSource();
+		this.executor = null;
+		this.ownsExecutor = false;
+		this.parallelism = 1;
+		this.contexts = ThreadLocal
+			.withInitial(() -> new EvaluationContext(inputs, outputs));
+		this.arena = new PopulationArena();
+		this.breedingBase = Integer.MAX_VALUE;
+		this.checkpoint = null;
+		this.checkpointGeneration = 0;
 	}
 
 	/**
@@ -78,13 +123,15 @@ public class Pool {
 	 * @return Liste der erstellten Neuronen, um Werte zu übertragen und zu
 	 *         empfangen
 	 */
-	public ObservableList<Neuron> initializePool(int input, int output,
-			AbstractFunction function) {
+	public List<Neuron> initializePool(int input, int output,
+			FitnessFunction function) {
 		log.trace("ENTER " + this.getClass().getName() + ".initializePool()");
 
 		this.function = function;
+		this.inputs = input;
+		this.outputs = output;
 
-		ObservableList<Neuron> neurons = FXCollections.observableArrayList();
+		List<Neuron> neurons = new ArrayList<Neuron>();
 		int inn = -1;
 
 		/* Inputneuronen */
@@ -105,12 +152,10 @@ public class Pool {
 
 		for (int i = 0; i < Population; i++) {
 			/* Erstelle eigene Liste für jedes Netzwerk */
-			ObservableList<Neuron> ownNeurons = FXCollections
-				.observableArrayList();
-			for (Neuron n : neurons)
-			ownNeurons.add(n);
+			List<Neuron> ownNeurons = new ArrayList<Neuron>(neurons);
 
-			Genome genome = new Genome(ownNeurons, true, null);
+			Genome genome = new Genome(ownNeurons, false, 0);
+			genome.mutateGenome(random.stream(0, i));
 			this.addChildToSpecies(genome);
 		}
 
@@ -118,11 +163,7 @@ public class Pool {
 		this.essentialNeurons = neurons;
 
 		/* Führt die Bewertung der ersten Generation durch */
-		for (Species s : this.getSpecies()) {
-			for (Genome g : s.getGenomes())
-			g.setFitness(function.evaluateNetwork(g, neurons));
-			s.calculateAverageFitness();
-		}
+		this.evaluateGenomes(neurons);
 
 		log.trace(" EXIT " + this.getClass().getName() + ".initializePool()");
 		return neurons;
@@ -130,27 +171,403 @@ public class Pool {
 
 	/**
 	 * Simuliert alle Netzwerke innerhalb der Population und weißt ihnen eine
-	 * Bewertung zu. Danach werden für alle Spezies die durchschnittlichen
-	 * Bewertungen durchgeführt.
+	 * Bewertung zu. Danach wird die {@link Leaderboard Rangliste} aufgebaut,
+	 * die auch die durchschnittlichen Bewertungen aller Spezies berechnet.
+	 * <p>
+	 * Ist eine parallele Bewertung eingestellt und die Bewertungsfunktion dafür
+	 * geeignet ({@link FitnessFunction#isThreadSafe()}), werden die Netzwerke
+	 * auf alle Threads verteilt. Jeder Thread verwendet dabei einen eigenen
+	 * {@link EvaluationContext}, so dass keine geteilten Neuronen verändert
+	 * werden.
 	 * 
 	 * @param args
 	 *           weitere Argumente, die an die Bewertungsfunktion übergeben
 	 *           werden
 	 */
 	public void evaluateGenomes(Object... args) {
-		for (Species s : this.species) {
+		if (executor != null && function.isThreadSafe()) {
+			this.evaluateParallel(args);
+		} else {
+			EvaluationContext context = this.context();
+			context.setArguments(args);
+
+			for (Species s : this.species)
+				for (Genome g : s.getGenomes())
+					g.setFitness(function.evaluate(g, context));
+		}
+
+		this.updateLeaderboard();
+	}
+
+	/**
+	 * Baut die Rangliste aus den aktuellen Bewertungen neu auf. Wird von
+	 * {@link #evaluateGenomes(Object...)} selbst aufgerufen und ist nur nötig,
+	 * wenn Bewertungen auf anderem Weg gesetzt werden.
+	 */
+	public void updateLeaderboard() {
+		leaderboard.update(species);
+	}
+
+	/**
+	 * Gibt die Rangliste der letzten Bewertung zurück. Ist sie seitdem
+	 * veraltet (z.B. durch {@link #newGeneration()}), wird sie vorher neu
+	 * aufgebaut.
+	 * 
+	 * @return aktuelle Rangliste
+	 */
+	public Leaderboard getLeaderboard() {
+		if (!leaderboard.isCurrent())
+			this.updateLeaderboard();
+
+		return leaderboard;
+	}
+
+	/* Wahrheitswert, ob die Rangliste der letzten Bewertung noch gilt */
+	boolean isEvaluated() {
+		return leaderboard.isCurrent();
+	}
+
+	/**
+	 * Sichert den aktuellen Zustand des Pools in eine Datei (siehe
+	 * {@link Checkpoint}). Der Zustand wird sofort festgehalten, geschrieben
+	 * wird im Hintergrund, so dass die Evolution währenddessen weiterlaufen
+	 * kann. Ein noch laufender Checkpoint wird vorher abgewartet.
+	 * 
+	 * @param path
+	 *           Zieldatei
+	 * @return Abschluss des Schreibens
+	 */
+	public CompletableFuture<Void> checkpoint(Path path) {
+		this.awaitCheckpoint();
+
+		Checkpoint snapshot = Checkpoint.of(this);
+
+		return this.writeCheckpoint(() -> {
+			snapshot.write(path);
+			return null;
+		}, path);
+	}
+
+	/**
+	 * Sichert den aktuellen Zustand des Pools über ein Journal (siehe
+	 * {@link CheckpointJournal}): je nach Anzahl bisheriger Sicherungen nur
+	 * die Änderungen seit der letzten oder einen vollständigen Checkpoint.
+	 * Geschrieben wird wie bei {@link #checkpoint(Path)} im Hintergrund.
+	 * 
+	 * @param journal
+	 *           Journal, in das gesichert wird
+	 * @return Abschluss des Schreibens
+	 */
+	public CompletableFuture<Void> checkpoint(CheckpointJournal journal) {
+		this.awaitCheckpoint();
+
+		return this.writeCheckpoint(journal.capture(this), journal.getPath());
+	}
+
+	/* Schreibt einen festgehaltenen Zustand in einem eigenen Thread */
+	private CompletableFuture<Void> writeCheckpoint(Callable<Void> write,
+			Path path) {
+		this.checkpointGeneration = generation;
+		this.checkpoint = CompletableFuture.runAsync(() -> {
+			try {
+				write.call();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, task -> {
+			Thread t = new Thread(task, "Checkpoint " + path.getFileName());
+			t.setDaemon(true);
+			t.start();
+		});
+
+		return checkpoint;
+	}
+
+	/**
+	 * Wartet, bis ein im Hintergrund geschriebener Checkpoint abgeschlossen
+	 * ist. Fehler beim Schreiben werden nur im Log ausgegeben, sie erreichen
+	 * den Aufrufer über das Ergebnis von {@link #checkpoint(Path)}.
+	 */
+	public void awaitCheckpoint() {
+		if (checkpoint == null)
+			return;
+
+		try {
+			checkpoint.join();
+		} catch (CompletionException e) {
+			log.error("Checkpoint failed", e.getCause());
+		}
+		checkpoint = null;
+	}
+
+	/**
+	 * Setzt den Pool auf einen mit {@link #checkpoint(Path)} bzw.
+	 * {@link #checkpoint(CheckpointJournal)} gesicherten Zustand zurück. Ein
+	 * Journal neben dem Checkpoint wird dabei nachgespielt. Bei gleichem
+	 * Startwert entstehen danach die gleichen Generationen wie im
+	 * ursprünglichen Lauf.
+	 * 
+	 * @param path
+	 *           Datei des Checkpoints
+	 * @param function
+	 *           Bewertungsfunktion
+	 * @return Liste der notwendigen Neuronen (siehe
+	 *         {@link #initializePool(int, int, FitnessFunction)})
+	 * @throws IOException
+	 *            falls der Checkpoint nicht gelesen werden kann
+	 */
+	public List<Neuron> resume(Path path, FitnessFunction function)
+			throws IOException {
+		this.awaitCheckpoint();
+		CheckpointJournal.read(path).restore(this, function);
+
+		return essentialNeurons;
+	}
+
+	/* Bewertungsfunktion und Größe der Netzwerke, für Checkpoint */
+	void setFunction(FitnessFunction function, int inputs, int outputs) {
+		this.function = function;
+		this.inputs = inputs;
+		this.outputs = outputs;
+	}
+
+	int getInputs() {
+		return inputs;
+	}
+
+	int getOutputs() {
+		return outputs;
+	}
+
+	/* Ersetzt die Registry, für Checkpoint */
+	void setInnovationRegistry(InnovationRegistry innovations) {
+		this.innovations = innovations;
+	}
+
+	/**
+	 * Gibt die Aktivierungsfunktion aller Netzwerke des Pools zurück.
+	 * 
+	 * @return Aktivierungsfunktion
+	 */
+	public ActivationFunction getActivationFunction() {
+		return activation;
+	}
+
+	/**
+	 * Setzt die Aktivierungsfunktion aller Netzwerke des Pools. Bereits
+	 * kompilierte Netzwerke werden verworfen.
+	 * 
+	 * @param activation
+	 *           neue Aktivierungsfunktion
+	 */
+	public void setActivationFunction(ActivationFunction activation) {
+		if (activation == null)
+			throw new IllegalArgumentException("ActivationFunction is NULL!");
+
+		this.activation = activation;
+
+		for (Species s : this.species)
 			for (Genome g : s.getGenomes())
-			g.setFitness(function.evaluateNetwork(g, args));
-			s.calculateAverageFitness();
+				g.invalidateNetwork();
+	}
+
+	/**
+	 * Stellt die Anzahl der Threads für die Bewertung und Erzeugung der
+	 * Netzwerke ein. Bei <code>1</code> wird seriell gearbeitet, ansonsten wird ein eigener
+	 * {@link ForkJoinPool} verwendet.
+	 * 
+	 * @param threads
+	 *           Anzahl Threads
+	 */
+	public void setParallelism(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException(
+				"Parallelism must be positive: " + threads);
+
+		this.shutdownExecutor();
+
+		this.parallelism = threads;
+		this.executor = (threads > 1) ? new ForkJoinPool(threads) : null;
+		this.ownsExecutor = this.executor != null;
+	}
+
+	/**
+	 * Setzt einen eigenen Executor für die parallele Bewertung und Erzeugung.
+	 * Bei <code>null</code> wird seriell gearbeitet. Der Executor wird vom Pool
+	 * nicht beendet, ein zuvor über {@link #setParallelism(int)} erzeugter
+	 * dagegen schon.
+	 * 
+	 * @param executor
+	 *           Executor für die Bewertung
+	 * @param threads
+	 *           Anzahl der Threads des Executors, bestimmt die Aufteilung
+	 */
+	public void setExecutor(ExecutorService executor, int threads) {
+		this.shutdownExecutor();
+
+		this.executor = executor;
+		this.ownsExecutor = false;
+		this.parallelism = Math.max(1, threads);
+	}
+
+	/* Beendet den Executor, wenn der Pool ihn selbst erzeugt hat */
+	private void shutdownExecutor() {
+		if (this.executor != null && this.ownsExecutor)
+			this.executor.shutdown();
+	}
+
+	/**
+	 * Gibt die eingestellte Anzahl Threads zurück.
+	 * 
+	 * @return Anzahl Threads
+	 */
+	public int getParallelism() {
+		return (executor == null) ? 1 : parallelism;
+	}
+
+	/* Verteilt die Bewertung aller Netzwerke auf den Executor */
+	private void evaluateParallel(Object... args) {
+		List<Genome> all = new ArrayList<Genome>();
+		for (Species s : this.species)
+			all.addAll(s.getGenomes());
+
+		/* Mehrere Teile pro Thread gleichen unterschiedliche Laufzeiten aus */
+		int parts = Math.min(all.size(), parallelism * 4);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parts);
+
+		for (int p = 0; p < parts; p++) {
+			int from = all.size() * p / parts;
+			int to = all.size() * (p + 1) / parts;
+
+			tasks.add(() -> {
+				EvaluationContext context = this.context();
+				context.setArguments(args);
+
+				for (int i = from; i < to; i++) {
+					Genome g = all.get(i);
+					g.setFitness(function.evaluate(g, context));
+				}
+				return null;
+			});
+		}
+
+		this.invokeAll(tasks, "Evaluation");
+	}
+
+	/*
+	 * Gibt den Kontext des aktuellen Threads zurück. Nach einem erneuten
+	 * initializePool() oder resume() mit anderer Anzahl Inputs oder Outputs
+	 * wird er neu angelegt.
+	 */
+	private EvaluationContext context() {
+		EvaluationContext context = contexts.get();
+
+		if (context.getInputs().length != inputs
+			|| context.getOutputs().length != outputs) {
+			context = new EvaluationContext(inputs, outputs);
+			contexts.set(context);
+		}
+
+		return context;
+	}
+
+	/* Führt alle Aufgaben auf dem Executor aus und wartet auf deren Ende */
+	private void invokeAll(List<Callable<Void>> tasks, String name) {
+		try {
+			for (Future<Void> f : executor.invokeAll(tasks))
+				f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(name + " interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(name + " failed", e.getCause());
 		}
 	}
 
+	/**
+	 * Setzt den Startwert der Zufallsquelle für die Erzeugung neuer
+	 * Netzwerke. Bei gleichem Startwert entsteht unabhängig von der Anzahl
+	 * Threads die gleiche Population.
+	 * 
+	 * @param seed
+	 *           Startwert
+	 */
+	public void setSeed(long seed) {
+		this.setRandomSource(new RandomSource(seed));
+	}
+
+	/**
+	 * Gibt die Zufallsquelle des Pools zurück.
+	 * 
+	 * @return Zufallsquelle
+	 */
+	public RandomSource getRandomSource() {
+		return random;
+	}
+
+	/**
+	 * Setzt die Zufallsquelle des Pools. Muss vor
+	 * {@link #initializePool(int, int, FitnessFunction)} gesetzt werden, damit
+	 * der gesamte Lauf wiederholbar ist.
+	 * 
+	 * @param random
+	 *           neue Zufallsquelle
+	 */
+	public void setRandomSource(RandomSource random) {
+		if (random == null)
+			throw new IllegalArgumentException("RandomSource is NULL!");
+
+		this.random = random;
+	}
+
+	/**
+	 * Gibt den Speicher für die Verbindungen der Population zurück.
+	 * 
+	 * @return Speicher oder <code>null</code>, wenn jedes Netzwerk eigene
+	 *         Arrays verwendet
+	 */
+	public PopulationArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Setzt den Speicher für die Verbindungen der Population (siehe
+	 * {@link PopulationArena}). Bei <code>null</code> legt jedes Kind eigene
+	 * Arrays an.
+	 * 
+	 * @param arena
+	 *           neuer Speicher
+	 */
+	public void setArena(PopulationArena arena) {
+		this.arena = arena;
+	}
+
+	/* Puffer für die Verbindungen neuer Kinder oder null */
+	PopulationArena.Buffer getBreedingBuffer() {
+		return (arena == null) ? null : arena.target();
+	}
+
+	/*
+	 * Höchste endgültige Innovationsnummer während der Erzeugung neuer Kinder,
+	 * sonst Integer.MAX_VALUE
+	 */
+	int getBreedingBase() {
+		return breedingBase;
+	}
+
+	/* Wiederverwendete Sortierung des aktuellen Threads oder null */
+	TopologicalOrder getBreedingOrder() {
+		return (arena == null) ? null : arena.order();
+	}
+
 	/**
 	 * Gibt alle Spezies der Population innerhalb dieser Generation zurück.
 	 * 
 	 * @return Liste aller Spezies
 	 */
-	public ObservableList<Species> getSpecies() {
+	public List<Species> getSpecies() {
 		return species;
 	}
 
@@ -161,8 +578,10 @@ public class Pool {
 	 * @param species
 	 *           neue Liste von Spezies
 	 */
-	public void setSpecies(ObservableList<Species> species) {
+	public void setSpecies(List<Species> species) {
 		this.species = species;
+		members.invalidate();
+		leaderboard.invalidate();
 	}
 
 	/**
@@ -171,7 +590,7 @@ public class Pool {
 	 * @return zu simulierende Species
 	 */
 	public int getCurrentSpecies() {
-		return currentSpecies.get();
+		return currentSpecies;
 	}
 
 	/**
@@ -181,7 +600,7 @@ public class Pool {
 	 *           zu simulierende Species
 	 */
 	public void setCurrentSpecies(int currentSpecies) {
-		this.currentSpecies.set(currentSpecies);
+		this.currentSpecies = currentSpecies;
 	}
 
 	/**
@@ -190,7 +609,7 @@ public class Pool {
 	 * @return zu simulierendes Netzwerk
 	 */
 	public int getCurrentGenome() {
-		return currentGenome.get();
+		return currentGenome;
 	}
 
 	/**
@@ -200,7 +619,7 @@ public class Pool {
 	 *           zu simulierendes Netzwerk
 	 */
 	public void setCurrentGenome(int currentGenome) {
-		this.currentGenome.set(currentGenome);
+		this.currentGenome = currentGenome;
 	}
 
 	/**
@@ -209,7 +628,7 @@ public class Pool {
 	 * @return beste Bewertung eines Netzwerkes der Population
 	 */
 	public double getTopFitness() {
-		return topFitness.get();
+		return topFitness;
 	}
 
 	/**
@@ -219,7 +638,31 @@ public class Pool {
 	 *           neue höchste Bewertung
 	 */
 	public void setTopFitness(double topFitness) {
-		this.topFitness.set(topFitness);
+		this.topFitness = topFitness;
+	}
+
+	/**
+	 * Gibt die Anzahl Netzwerke der Population zurück.
+	 * 
+	 * @return Größe der Population
+	 */
+	public int getPopulation() {
+		return Population;
+	}
+
+	/**
+	 * Setzt die Anzahl Netzwerke der Population. Wirkt bei der nächsten
+	 * Initialisierung bzw. Generation.
+	 * 
+	 * @param population
+	 *           neue Größe der Population
+	 */
+	public void setPopulation(int population) {
+		if (population < 1)
+			throw new IllegalArgumentException(
+				"Population must be positive: " + population);
+
+		this.Population = population;
 	}
 
 	/**
@@ -228,7 +671,7 @@ public class Pool {
 	 * @return Generationsnummer
 	 */
 	public int getGeneration() {
-		return generation.get();
+		return generation;
 	}
 
 	/**
@@ -238,20 +681,58 @@ public class Pool {
 	 *           neue Generationsnummer
 	 */
 	public void setGeneration(int generation) {
-		this.generation.set(generation);
-	}
-
-	public IntegerProperty getGenerationProperty() {
-		return this.generation;
+		this.generation = generation;
 	}
 
 	/**
-	 * Gibt die Liste der neuen Neuronen dieser Generation zuück.
+	 * Gibt eine Liste aller durch Trennung von Verbindungen entstandenen
+	 * Neuronen zurück. Die Liste ist eine Kopie.
 	 * 
 	 * @return Liste der neuen Neuronen
 	 */
 	public List<Neuron> getNewNeurons() {
-		return newNeurons;
+		return new ArrayList<Neuron>(newNeurons.values());
+	}
+
+	/**
+	 * Gibt das Neuron zurück, das durch Trennung der Verbindung mit der
+	 * angegebenen Innovationsnummer entstanden ist.
+	 * 
+	 * @param innovation
+	 *           Innovationsnummer der getrennten Verbindung
+	 * @return Neuron oder <code>null</code>, wenn die Verbindung noch nicht
+	 *         getrennt wurde
+	 */
+	public Neuron getNewNeuron(int innovation) {
+		return newNeurons.get(innovation);
+	}
+
+	/**
+	 * Gibt das Neuron zurück, das beim Trennen einer Verbindung eingefügt
+	 * wird. Wurde die Verbindung bereits in einem anderen Netzwerk getrennt, so
+	 * wird das gleiche Neuron verwendet, ansonsten ein neues erzeugt. Darf von
+	 * mehreren Threads gleichzeitig aufgerufen werden.
+	 * 
+	 * @param gene
+	 *           zu trennende Verbindung
+	 * @return Neuron für die Trennung
+	 */
+	public Neuron splitNeuron(Gene gene) {
+		return this.splitNeuron(gene.getHistoricalMarking());
+	}
+
+	/**
+	 * Gibt das Neuron zurück, das beim Trennen der Verbindung mit der
+	 * angegebenen Innovationsnummer eingefügt wird (siehe
+	 * {@link #splitNeuron(Gene)}).
+	 * 
+	 * @param innovation
+	 *           Innovationsnummer der zu trennenden Verbindung
+	 * @return Neuron für die Trennung
+	 */
+	public Neuron splitNeuron(int innovation) {
+		return newNeurons.computeIfAbsent(innovation,
+			inn -> new Neuron(Type.HIDDEN, inn));
 	}
 
 	/**
@@ -281,7 +762,9 @@ public class Pool {
 	 *           neue Liste von Neuronen
 	 */
 	public void setNewNeurons(List<Neuron> newNeurons) {
-		this.newNeurons = newNeurons;
+		this.newNeurons.clear();
+		for (Neuron n : newNeurons)
+			this.newNeurons.putIfAbsent(n.getInnovation(), n);
 	}
 
 	/**
@@ -290,8 +773,7 @@ public class Pool {
 	 * @return neue Innovationsnummer
 	 */
 	public int newInnovation() {
-		this.historicalMarking.set(this.historicalMarking.get() + 1);
-		return this.historicalMarking.get();
+		return innovations.newInnovation();
 	}
 
 	/**
@@ -300,21 +782,42 @@ public class Pool {
 	 * @return Innovationsnummer
 	 */
 	public int getHistoricalMarking() {
-		return this.historicalMarking.get();
+		return innovations.getInnovation();
 	}
 
 	/**
-	 * Fügt eine neue Verbindung in die Liste aller neuen Verbindungen dieser
-	 * Generation ein.
+	 * Gibt die Registry aller Innovationsnummern zurück.
+	 * 
+	 * @return Registry der Innovationsnummern
+	 */
+	public InnovationRegistry getInnovationRegistry() {
+		return innovations;
+	}
+
+	/**
+	 * Stellt ein, wie lange sich der Pool an bereits aufgetretene Verbindungen
+	 * erinnert (siehe {@link InnovationRegistry.Scope}).
+	 * 
+	 * @param scope
+	 *           Zeitraum
+	 * @param window
+	 *           Anzahl Generationen bei {@link InnovationRegistry.Scope#WINDOW}
+	 */
+	public void setInnovationScope(InnovationRegistry.Scope scope,
+			int window) {
+		innovations.setScope(scope, window);
+	}
+
+	/**
+	 * Fügt eine neue Verbindung in die Registry der Innovationsnummern ein.
 	 * 
 	 * @param gen
 	 *           neue Verbindung
 	 * @return Wahrheitswert, ob Verbindung hinzugefügt werden konnte
 	 */
 	public boolean addNewGene(Gene gen) {
-		if (!generationMarkings.contains(gen))
-			return generationMarkings.add(gen);
-		return false;
+		return innovations.record(gen.getOrigin(), gen.getInto(),
+			gen.getHistoricalMarking());
 	}
 
 	/**
@@ -327,9 +830,7 @@ public class Pool {
 	 */
 	public boolean addNewNeuron(Neuron neuron) {
 		log.debug("   adding new Neuron to this generation!");
-		if (!newNeurons.contains(neuron))
-			return newNeurons.add(neuron);
-		return false;
+		return newNeurons.putIfAbsent(neuron.getInnovation(), neuron) == null;
 	}
 
 	/**
@@ -341,10 +842,8 @@ public class Pool {
 	 * @return Wahrheitswert, ob Spezies hinzugefügt werden konnte
 	 */
 	public boolean addSpecies(Species species) {
-		if (!this.species.contains(species))
-			return this.species.add(species);
-
-		return false;
+		leaderboard.invalidate();
+		return members.add(this.species, species);
 	}
 
 	/**
@@ -352,13 +851,14 @@ public class Pool {
 	 * neu.
 	 */
 	public void removeStaleSpecies() {
-		List<Species> remove = new ArrayList<Species>();
+		Set<Species> remove = Collections
+			.newSetFromMap(new IdentityHashMap<Species, Boolean>());
 
 		for (Species spe : species) {
-			spe.getGenomes().sort(null);
+			double best = spe.getRepresentative().getFitness();
 
-			if (spe.getGenomes().get(0).getFitness() > spe.getTopFitness()) {
-			spe.setTopFitness(spe.getGenomes().get(0).getFitness());
+			if (best > spe.getTopFitness()) {
+			spe.setTopFitness(best);
 			spe.setStaleness(0);
 			} else {
 			spe.setStaleness(spe.getStaleness() + 1);
@@ -366,13 +866,13 @@ public class Pool {
 
 			/* Entferne nur stagnierende, die nicht die beste Species sind */
 			if (spe.getStaleness() > StaleSpecies
-				&& !(spe.getTopFitness() >= this.topFitness.get())) {
+				&& !(spe.getTopFitness() >= this.topFitness)) {
 			remove.add(spe);
 			}
 		}
 
-		for (Species s : remove)
-			species.remove(s);
+		species.removeIf(remove::contains);
+		members.invalidate();
 	}
 
 	/**
@@ -380,13 +880,14 @@ public class Pool {
 	 */
 	public void removeWeakSpecies() {
 		double total = getTotalAverageFitness();
-		List<Species> remove = new ArrayList<Species>();
+		Set<Species> remove = Collections
+			.newSetFromMap(new IdentityHashMap<Species, Boolean>());
 
 		for (Species spe : species) {
-			spe.getGenomes().sort(null);
+			double best = spe.getRepresentative().getFitness();
 
-			if (spe.getGenomes().get(0).getFitness() > spe.getTopFitness())
-			spe.setTopFitness(spe.getGenomes().get(0).getFitness());
+			if (best > spe.getTopFitness())
+			spe.setTopFitness(best);
 
 			double strength = (spe.getAverageFitness() / total * Population);
 
@@ -394,8 +895,8 @@ public class Pool {
 			remove.add(spe);
 		}
 
-		for (Species s : remove)
-			species.remove(s);
+		species.removeIf(remove::contains);
+		members.invalidate();
 	}
 
 	/**
@@ -420,38 +921,54 @@ public class Pool {
 	}
 
 	/**
-	 * Kontrolliert, ob die Verbindung innerhalb dieser Generation bereits
-	 * aufgetreten ist und verteilt die gleiche, oder eine neue
+	 * Kontrolliert, ob die Verbindung innerhalb des eingestellten Zeitraums
+	 * bereits aufgetreten ist und verteilt die gleiche, oder eine neue
 	 * Innovationsnummer
 	 * 
 	 * @param gen
 	 *           neue Verbindung
 	 */
 	public void defineHistoricalMarking(Gene gen) {
-		/* durchsuche alle neuen Verbindungen dieser Generation */
-		for (Gene g : generationMarkings) {
-			if (gen.isEqual(g)) {
-			gen.setHistoricalMarking(g.getHistoricalMarking());
-			return;
-			}
-		}
-
-		/*
-		 * erstes Auftreten der Verbindung: neue Innovationsnummer und einfügen
-		 * in Liste der neuen Verbindungen dieser Generation.
-		 */
-		gen.setHistoricalMarking(this.newInnovation());
-		this.addNewGene(gen);
+		gen.setHistoricalMarking(
+			innovations.register(gen.getOrigin(), gen.getInto()));
 	}
 
 	/**
 	 * Leitet eine neue Generation ein.
+	 * <p>
+	 * Zunächst wird seriell festgelegt, welche Spezies wie viele Kinder
+	 * erzeugt, und für jedes Kind ein eigener Zufallsstrom abgeleitet. Die
+	 * Kinder werden dann (bei eingestellter Parallelität) auf alle Threads
+	 * verteilt erzeugt. Abschließend werden die neuen Innovationsnummern und
+	 * IDs in der Reihenfolge des Plans neu vergeben, so dass das Ergebnis
+	 * nicht von der Anzahl Threads abhängt.
+	 * <p>
+	 * Die Verbindungen der Kinder und Überlebenden landen im inaktiven Puffer
+	 * der {@link PopulationArena}, der danach zum aktiven wird.
 	 */
 	public void newGeneration() {
 		log.trace("ENTER " + this.getClass().getName() + ".newGeneration()");
-		Random rn = new Random();
 
+		int innovationBase = innovations.getInnovation();
+		this.breedingBase = innovationBase;
+		int idBase = Genome.getMaxID();
 		List<Genome> newGen = new ArrayList<Genome>();
+		List<Species> plan = new ArrayList<Species>();
+
+		/* Eltern teilen ihre Verbindungen ab jetzt mit ihren Kindern */
+		for (Species s : species)
+			for (Genome g : s.getGenomes())
+			g.getGeneTable().freeze();
+
+		/*
+		 * Kinder werden in den inaktiven Puffer geschrieben. Ein Checkpoint der
+		 * vorletzten Generation liest womöglich noch daraus.
+		 */
+		if (arena != null) {
+			if (checkpoint != null && checkpointGeneration < generation)
+				this.awaitCheckpoint();
+			arena.begin();
+		}
 
 		for (Species s : species)
 			s.removeWeakGenomes(false);
@@ -464,23 +981,41 @@ public class Pool {
 		for (Species s : species) {
 			int breed = (int) (s.getAverageFitness() / total * Population) - 1;
 			for (int i = 0; i < breed; i++)
-			newGen.add(s.breedChild());
+			plan.add(s);
 		}
 
+		this.breedChildren(plan, newGen);
+
 		for (Species s : species)
 			s.removeWeakGenomes(true);
 
 		/* Fülle restliche Plätze auf */
-		while (newGen.size() + species.size() < Population) {
-			Species s = species.get(rn.nextInt(species.size()));
-			newGen.add(s.breedChild());
-		}
+		SplittableRandom rn = random.stream(generation, RandomSource.PLAN);
+		plan.clear();
+		while (newGen.size() + plan.size() + species.size() < Population)
+			plan.add(species.get(rn.nextInt(species.size())));
+
+		this.breedChildren(plan, newGen);
+		this.renumberChildren(newGen, innovationBase, idBase);
+		this.breedingBase = Integer.MAX_VALUE;
 
 		for (Genome child : newGen)
 			this.addChildToSpecies(child);
 
-		/* TODO: Reset newNeurons / generationMarkings */
-		this.generation.set(this.generation.get() + 1);
+		/* vor dem Nachziehen, damit veränderte Abschnitte mitwandern */
+		this.compactInnovations(false);
+
+		/* Überlebende nachziehen, dann Puffer tauschen */
+		if (arena != null) {
+			for (Species s : species)
+			for (Genome g : s.getGenomes())
+				arena.retain(g);
+			arena.end();
+		}
+
+		this.generation++;
+		innovations.newGeneration(this.generation);
+		leaderboard.invalidate();
 
 		log.trace(" EXIT " + this.getClass().getName() + ".newGeneration()");
 	}
@@ -489,34 +1024,213 @@ public class Pool {
 	 * Gibt Informationen zum besten Netzwerk im Log aus.
 	 */
 	public void printBestGenome() {
-		List<Genome> global = new ArrayList<Genome>();
+		log.debug(this.getBestGenome());
+	}
 
-		for (Species s : species)
-			for (Genome g : s.getGenomes())
-			global.add(g);
+	/**
+	 * Gibt das Netzwerk mit der höchsten Bewertung zurück (siehe
+	 * {@link Leaderboard}).
+	 * 
+	 * @return bestes Netzwerk
+	 */
+	public Genome getBestGenome() {
+		return this.getLeaderboard().getBest();
+	}
 
-		global.sort(null);
+	/**
+	 * Gibt die <code>k</code> besten Netzwerke der Population absteigend nach
+	 * Bewertung zurück (siehe {@link Leaderboard#getTop(int)}).
+	 * 
+	 * @param k
+	 *           Anzahl Netzwerke
+	 * @return höchstens <code>k</code> Netzwerke
+	 */
+	public List<Genome> getTopGenomes(int k) {
+		return this.getLeaderboard().getTop(k);
+	}
+
+	/*
+	 * Erzeugt für jeden Eintrag des Plans ein Kind der Spezies und hängt es in
+	 * Reihenfolge des Plans an children an. Der Zufallsstrom jedes Kindes hängt
+	 * nur von Generation und Position ab, die Erzeugung erfolgt gegebenenfalls
+	 * parallel.
+	 */
+	private void breedChildren(List<Species> plan, List<Genome> children) {
+		int size = plan.size();
+		int offset = children.size();
+		SplittableRandom[] streams = new SplittableRandom[size];
+		Genome[] bred = new Genome[size];
+
+		for (int i = 0; i < size; i++)
+			streams[i] = random.stream(generation, offset + i);
+
+		if (executor == null || size < 2) {
+			for (int i = 0; i < size; i++)
+			bred[i] = this.breedChild(plan.get(i), streams[i]);
+		} else {
+			int parts = Math.min(size, parallelism * 4);
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(parts);
+
+			for (int p = 0; p < parts; p++) {
+			int from = size * p / parts;
+			int to = size * (p + 1) / parts;
+
+			tasks.add(() -> {
+				for (int i = from; i < to; i++)
+					bred[i] = this.breedChild(plan.get(i), streams[i]);
+				return null;
+			});
+			}
 
-		log.debug(global.get(0));
+			this.invokeAll(tasks, "Breeding");
+		}
+
+		for (Genome g : bred)
+			children.add(g);
 	}
 
-	public Genome getBestGenome() {
-		List<Genome> global = new ArrayList<Genome>();
+	/* Erzeugt ein Kind und gibt die geliehene Sortierung wieder frei */
+	private Genome breedChild(Species species, SplittableRandom random) {
+		Genome child = species.breedChild(random);
+		child.releaseOrder();
+
+		return child;
+	}
+
+	/*
+	 * Vergibt alle während der Erzeugung vergebenen Innovationsnummern und IDs
+	 * in der Reihenfolge der Kinder neu. Während der (parallelen) Erzeugung
+	 * hängen die Nummern von der Reihenfolge der Threads ab, danach nur noch
+	 * von der Reihenfolge des Plans. Innovationsnummern, die in keinem Kind
+	 * vorkommen, werden verworfen.
+	 */
+	private void renumberChildren(List<Genome> children, int innovationBase,
+			int idBase) {
+		int[] table = new int[innovations.getInnovation() - innovationBase];
+		int next = innovationBase;
+		int id = idBase;
+
+		for (Genome child : children) {
+			next = child.renumber(innovationBase, table, next);
+
+			if (child.getID() > idBase)
+			child.setID(++id);
+		}
+
+		Genome.setMaxID(id);
+
+		/* neue Neuronen tragen die Nummer der getrennten Verbindung */
+		List<Neuron> split = new ArrayList<Neuron>();
+		newNeurons.entrySet().removeIf(e -> {
+			if (e.getKey() <= innovationBase)
+			return false;
+			split.add(e.getValue());
+			return true;
+		});
+
+		for (Neuron n : split) {
+			n.setInnovation(table[n.getInnovation() - innovationBase - 1]);
+			newNeurons.put(n.getInnovation(), n);
+		}
+
+		innovations.renumber(innovationBase, table, next);
+	}
+
+	/**
+	 * Vergibt die Innovationsnummern aller noch in der Population vorhandenen
+	 * Verbindungen und Neuronen dicht und unter Beibehaltung ihrer Reihenfolge
+	 * neu. Nummern ausgestorbener Verbindungen werden dabei aus der
+	 * {@link InnovationRegistry} und der Liste der neuen Neuronen entfernt, so
+	 * dass Speicher und Vergleiche nur noch von der lebenden Population
+	 * abhängen. Da die Reihenfolge erhalten bleibt, ändern sich weder
+	 * Kreuzung noch Ähnlichkeitsgrad.
+	 * <p>
+	 * Wird von {@link #newGeneration()} selbst aufgerufen, sobald mindestens
+	 * die Hälfte aller vergebenen Nummern ausgestorben ist. Darf nicht
+	 * gleichzeitig mit der Erzeugung von Kindern aufgerufen werden.
+	 * 
+	 * @param force
+	 *           auch dann verdichten, wenn die Nummern noch dicht genug sind
+	 * @return Wahrheitswert, ob verdichtet wurde
+	 */
+	public boolean compactInnovations(boolean force) {
+		int max = innovations.getInnovation();
+		int[] table = new int[max];
+		boolean[] genes = new boolean[max];
+		Set<Neuron> neurons = Collections
+			.newSetFromMap(new IdentityHashMap<Neuron, Boolean>());
+
+		/*
+		 * lebende Nummern markieren; Verbindungen ohne gültige Nummer (z.B. über
+		 * Genome#addGene() ohne Markierung) behalten ihre Nummer
+		 */
+		for (Species s : species)
+			for (Genome g : s.getGenomes()) {
+			GeneTable t = g.getGeneTable();
+			for (int i = 0; i < t.size(); i++) {
+				int innovation = t.getInnovation(i);
+				if (innovation > 0 && innovation <= max)
+				genes[innovation - 1] = true;
+			}
+			neurons.addAll(g.getNeurons());
+			}
+
+		for (int i = 0; i < max; i++)
+			if (genes[i])
+			table[i] = 1;
+		for (Neuron n : neurons)
+			if (n.getInnovation() > 0 && n.getInnovation() <= max)
+			table[n.getInnovation() - 1] = 1;
+
+		int live = 0;
+		for (int i = 0; i < max; i++)
+			if (table[i] != 0)
+			table[i] = ++live;
+
+		if (live == max || !force && live * 2 > max)
+			return false;
+
+		log.debug("compacting innovations " + max + " -> " + live);
 
 		for (Species s : species)
 			for (Genome g : s.getGenomes())
-			global.add(g);
+			g.renumber(0, table, live);
+
+		/* Neuronen getrennter, noch lebender Verbindungen bleiben abrufbar */
+		List<Neuron> split = new ArrayList<Neuron>();
+		for (Map.Entry<Integer, Neuron> e : newNeurons.entrySet()) {
+			int key = e.getKey();
+			if (key > 0 && key <= max && genes[key - 1])
+			split.add(e.getValue());
+		}
+		newNeurons.clear();
+
+		for (Neuron n : neurons)
+			if (n.getInnovation() > 0 && n.getInnovation() <= max)
+			n.setInnovation(table[n.getInnovation() - 1]);
+		for (Neuron n : split) {
+			int innovation = n.getInnovation();
+			if (!neurons.contains(n) && innovation > 0 && innovation <= max)
+			n.setInnovation(table[innovation - 1]);
+			newNeurons.put(n.getInnovation(), n);
+		}
+
+		innovations.renumber(0, table, live);
+		leaderboard.invalidate();
 
-		global.sort(null);
-		return global.get(0);
+		return true;
 	}
 
-	/* Berechnet die Summe aller durchschnittlichen Bewertungen */
+	/*
+	 * Summe aller durchschnittlichen Bewertungen. Die Durchschnitte werden
+	 * von Species#updateFitness() bzw. Species#removeWeakGenomes(boolean)
+	 * zwischengespeichert.
+	 */
 	private double getTotalAverageFitness() {
 		double sum = 0.;
 
 		for (Species s : species) {
-			sum += s.calculateAverageFitness();
+			sum += s.getAverageFitness();
 		}
 
 		return sum;
@@ -0,0 +1,194 @@
+package de.kaping.brain.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gemeinsamer Speicher für die Verbindungen aller Netzwerke einer Generation.
+ * Statt für jedes Kind eigene Arrays anzulegen, erhält jede
+ * {@link GeneTable} ihre Abschnitte aus wenigen großen Arrays (Blöcken), die
+ * von Generation zu Generation wiederverwendet werden.
+ * <p>
+ * Es gibt zwei Puffer, die nach jeder Generation ihre Rollen tauschen. Im
+ * aktiven Puffer liegen die Netzwerke der aktuellen Generation. Während
+ * {@link Pool#newGeneration()} werden die Kinder in den inaktiven Puffer
+ * geschrieben und die überlebenden Netzwerke dorthin kopiert; danach werden
+ * die Puffer getauscht. Abschnitte, die sich mehrere Netzwerke teilen, werden
+ * dabei nur einmal kopiert. Der nun inaktive Puffer wird erst zu Beginn der
+ * nächsten Generation überschrieben. Netzwerke, die aus dem Pool entfernt
+ * wurden, bleiben also noch bis zum Ende der folgenden Generation lesbar.
+ * <p>
+ * Netzwerke, die außerhalb von {@link Pool#newGeneration()} entstehen (z.B.
+ * bei der Initialisierung), halten ihre Verbindungen in eigenen Arrays und
+ * wandern erst als Überlebende in den Puffer.
+ * <p>
+ * Zusätzlich erhält jeder Thread während der Erzeugung eine einzige
+ * {@link TopologicalOrder}, die er für alle seine Kinder wiederverwendet.
+ *
+ * @author MPreloaded
+ */
+public class PopulationArena {
+
+	/* Anzahl Verbindungen eines Blocks */
+	static final int BLOCK = 1 << 16;
+
+	private Buffer active;
+	private Buffer inactive;
+	private boolean open;
+	private final ThreadLocal<TopologicalOrder> orders;
+
+	/**
+	 * Konstruktor
+	 */
+	public PopulationArena() {
+		super();
+		this.active = new Buffer();
+		this.inactive = new Buffer();
+		this.open = false;
+		this.orders = ThreadLocal.withInitial(() -> new TopologicalOrder());
+	}
+
+	/**
+	 * Gibt die Anzahl der Verbindungen zurück, für die in beiden Puffern
+	 * zusammen Platz reserviert ist.
+	 *
+	 * @return Kapazität in Verbindungen
+	 */
+	public long getCapacity() {
+		return active.getCapacity() + inactive.getCapacity();
+	}
+
+	/**
+	 * Gibt die Anzahl der Verbindungen zurück, die im aktiven Puffer belegt
+	 * sind (einschließlich Verschnitt durch gewachsene Netzwerke).
+	 *
+	 * @return belegte Verbindungen
+	 */
+	public long getUsed() {
+		return active.getUsed();
+	}
+
+	/*
+	 * Beginnt eine neue Generation: der inaktive Puffer wird freigegeben und
+	 * nimmt ab jetzt die Kinder auf.
+	 */
+	void begin() {
+		inactive.reset();
+		open = true;
+	}
+
+	/*
+	 * Gibt den Puffer zurück, in den gerade geschrieben wird, oder null
+	 * außerhalb von begin()/end().
+	 */
+	Buffer target() {
+		return open ? inactive : null;
+	}
+
+	/*
+	 * Gibt die Sortierung des aktuellen Threads für die Mutation der Kinder
+	 * zurück, oder null außerhalb von begin()/end().
+	 */
+	TopologicalOrder order() {
+		return open ? orders.get() : null;
+	}
+
+	/* Kopiert ein überlebendes Netzwerk in den inaktiven Puffer */
+	void retain(Genome genome) {
+		genome.getGeneTable().moveTo(inactive);
+	}
+
+	/* Beendet die Generation und tauscht die Puffer */
+	void end() {
+		Buffer swap = active;
+		active = inactive;
+		inactive = swap;
+		open = false;
+	}
+
+	/**
+	 * Ein Puffer aus mehreren Blöcken, aus denen nacheinander Abschnitte
+	 * ({@link GeneTable.Segment}) vergeben werden. Blöcke werden nur
+	 * angelegt, wenn die vorhandenen nicht ausreichen, und nach
+	 * {@link #reset()} wiederverwendet. Die Vergabe ist threadsicher, da
+	 * Kinder parallel erzeugt werden.
+	 */
+	static final class Buffer {
+
+		private final List<Block> blocks = new ArrayList<Block>();
+		private int current;
+		private int epoch;
+
+		/* Gibt alle Abschnitte frei */
+		synchronized void reset() {
+			for (Block b : blocks)
+				b.top = 0;
+			current = 0;
+			epoch++;
+		}
+
+		/* Zählt die Freigaben, um veraltete Verweise zu erkennen */
+		synchronized int getEpoch() {
+			return epoch;
+		}
+
+		/*
+		 * Vergibt einen Abschnitt ohne Besitzer. Sein Inhalt ist undefiniert,
+		 * nur das Aktivitäts-Bitfeld ist gelöscht.
+		 */
+		synchronized GeneTable.Segment allocate() {
+			while (current < blocks.size() && blocks.get(current).isFull())
+				current++;
+			if (current == blocks.size())
+				blocks.add(new Block(this));
+
+			Block block = blocks.get(current);
+			GeneTable.Segment segment = block.views[block.top++];
+
+			segment.owner = null;
+			segment.enabled[segment.word] = 0L;
+
+			return segment;
+		}
+
+		synchronized long getCapacity() {
+			return (long) blocks.size() * BLOCK;
+		}
+
+		synchronized long getUsed() {
+			long used = 0;
+			for (Block b : blocks)
+				used += (long) b.top * GeneTable.SEGMENT;
+
+			return used;
+		}
+	}
+
+	/*
+	 * Ein Satz paralleler Arrays mit einer festen Sicht je Abschnitt, die
+	 * Abschnitte werden von vorne vergeben.
+	 */
+	private static final class Block {
+
+		final GeneTable.Segment[] views;
+		int top;
+
+		Block(Buffer buffer) {
+			int[] innovations = new int[BLOCK];
+			int[] sources = new int[BLOCK];
+			int[] targets = new int[BLOCK];
+			double[] weights = new double[BLOCK];
+			long[] enabled = new long[BLOCK / GeneTable.SEGMENT];
+
+			this.views = new GeneTable.Segment[BLOCK / GeneTable.SEGMENT];
+			for (int i = 0; i < views.length; i++)
+				views[i] = new GeneTable.Segment(buffer, innovations, sources,
+					targets, weights, enabled, i * GeneTable.SEGMENT);
+			this.top = 0;
+		}
+
+		boolean isFull() {
+			return top == views.length;
+		}
+	}
+}
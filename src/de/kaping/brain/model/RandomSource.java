@@ -0,0 +1,98 @@
+package de.kaping.brain.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Zentrale Zufallsquelle eines Pools. Aus einem einzigen Startwert werden
+ * voneinander unabhängige Ströme ({@link SplittableRandom}) abgeleitet, so dass
+ * kein Thread auf eine gemeinsame Quelle warten muss.
+ * <p>
+ * Ströme für geplante Aufgaben ({@link #stream(long, long)}) hängen nur vom
+ * Startwert, der Generation und dem Index der Aufgabe ab. Dadurch ist ein Lauf
+ * bei gleichem Startwert bitgenau wiederholbar, unabhängig von der Anzahl
+ * Threads, und kann ab jeder gespeicherten Generation fortgesetzt werden.
+ * Für Aufrufe außerhalb einer geplanten Aufgabe besitzt jeder Thread einen
+ * eigenen Strom ({@link #current()}).
+ *
+ * @author MPreloaded
+ */
+public class RandomSource {
+
+	/** Index des Stroms für die Planung einer Generation */
+	public static final long PLAN = -1L;
+
+	/* Generation der Ströme aus current() */
+	private static final long THREAD = -1L;
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+	private final AtomicLong threads;
+	private final ThreadLocal<SplittableRandom> current;
+
+	/**
+	 * Konstruktor mit zufälligem Startwert.
+	 */
+	public RandomSource() {
+		this(new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param seed
+	 *           Startwert
+	 */
+	public RandomSource(long seed) {
+		super();
+		this.seed = seed;
+		this.threads = new AtomicLong(0);
+		this.current = ThreadLocal
+			.withInitial(() -> this.stream(THREAD, threads.getAndIncrement()));
+	}
+
+	/**
+	 * Gibt den Startwert zurück.
+	 *
+	 * @return Startwert
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Gibt den Strom für eine Aufgabe einer Generation zurück. Gleiche
+	 * Argumente liefern bei gleichem Startwert immer die gleiche Folge.
+	 *
+	 * @param generation
+	 *           Generation
+	 * @param index
+	 *           Index der Aufgabe innerhalb der Generation
+	 * @return neuer Strom
+	 */
+	public SplittableRandom stream(long generation, long index) {
+		long h = mix(seed + GOLDEN_GAMMA);
+		h = mix(h ^ (generation + GOLDEN_GAMMA));
+		h = mix(h ^ (index + GOLDEN_GAMMA));
+
+		return new SplittableRandom(h);
+	}
+
+	/**
+	 * Gibt den Strom des aktuellen Threads zurück. Der Strom darf nur von
+	 * diesem Thread verwendet werden.
+	 *
+	 * @return Strom des aktuellen Threads
+	 */
+	public SplittableRandom current() {
+		return current.get();
+	}
+
+	/* Finalizer von SplitMix64 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
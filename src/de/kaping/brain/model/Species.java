@@ -1,17 +1,13 @@
 package de.kaping.brain.model;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleIntegerProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
-
 /**
  * Zusammenfassung verschiedener Netzwerke einer gewissen Ähnlichkeit zu einer
  * Spezies. Spezien dienen dazu verschiedene Evolutionen zu schützen, die in der
@@ -27,27 +23,33 @@ public class Species {
 
 	@SuppressWarnings("unused")
 	private static final Logger log = LogManager.getLogger();
-	private static int maxID;
+	private static final AtomicInteger maxID = new AtomicInteger(0);
+
+	private final int ID;
+	private double topFitness;
+	private double averageFitness;
+	private int staleness;
+
+	private final double CrossOverChance;
+	private final double DeltaDisjoint;
+	private final double DeltaWeight;
+	private final double DeltaThreshold;
 
-	private final IntegerProperty ID;
-	private final DoubleProperty topFitness;
-	private final DoubleProperty averageFitness;
-	private final IntegerProperty staleness;
-	private final IntegerProperty countGenomes;
+	private List<Genome> genomes;
+	private final Membership<Genome> members;
 
-	private final DoubleProperty CrossOverChance;
-	private final DoubleProperty DeltaDisjoint;
-	private final DoubleProperty DeltaWeight;
-	private final DoubleProperty DeltaThreshold;
+	/* Netzwerke seit der letzten Bewertung absteigend sortiert */
+	private boolean sorted;
 
-	private ObservableList<Genome> genomes;
+	/* bestes Netzwerk der Spezies, Vergleichsbasis für isSameSpecies */
+	private Genome representative;
 
 	/**
 	 * Default constructor.
 	 */
 	public Species()
 	{
-		this(0.0, 0, 0.0, String.valueOf((int) (Math.random() * 100000)));
+		this(0.0, 0, 0.0, null);
 	}
 
 	/**
@@ -60,19 +62,25 @@ public class Species {
 	public Species(double topFitness, int staleness, double averagefitness,
 			String ID)
 	{
-		this.ID = new SimpleIntegerProperty(maxID+1);
-		maxID++;
-		this.topFitness = new SimpleDoubleProperty(topFitness);
-		this.staleness = new SimpleIntegerProperty(staleness);
-		this.averageFitness = new SimpleDoubleProperty(averagefitness);
-		this.genomes = FXCollections.observableArrayList();
-		this.countGenomes = new SimpleIntegerProperty(genomes.size());
+		this(maxID.incrementAndGet(), topFitness, staleness, averagefitness);
+	}
+
+	/* Konstruktor mit fester ID, z.B. beim Laden eines Checkpoints */
+	Species(int ID, double topFitness, int staleness, double averagefitness)
+	{
+		this.ID = ID;
+		this.topFitness = topFitness;
+		this.staleness = staleness;
+		this.averageFitness = averagefitness;
+		this.genomes = new ArrayList<Genome>();
+		this.members = new Membership<Genome>();
+		this.sorted = false;
 
 		/* TODO: Hardcoding entfernen */
-		this.CrossOverChance = new SimpleDoubleProperty(0.75);
-		this.DeltaDisjoint = new SimpleDoubleProperty(1.3);
-		this.DeltaWeight = new SimpleDoubleProperty(0.4);
-		this.DeltaThreshold = new SimpleDoubleProperty(1.0);
+		this.CrossOverChance = 0.75;
+		this.DeltaDisjoint = 1.3;
+		this.DeltaWeight = 0.4;
+		this.DeltaThreshold = 1.0;
 	}
 
 	/**
@@ -82,12 +90,18 @@ public class Species {
 	 */
 	public int getID()
 	{
-		return ID.get();
+		return ID;
 	}
 
-	public IntegerProperty getIDProperty()
+	/* Zuletzt vergebene ID, für Checkpoints */
+	static int getMaxID()
 	{
-		return ID;
+		return maxID.get();
+	}
+
+	static void setMaxID(int id)
+	{
+		maxID.set(id);
 	}
 
 	/**
@@ -97,7 +111,7 @@ public class Species {
 	 */
 	public double getTopFitness()
 	{
-		return topFitness.get();
+		return topFitness;
 	}
 
 	/**
@@ -108,12 +122,7 @@ public class Species {
 	 */
 	public void setTopFitness(double topFitness)
 	{
-		this.topFitness.set(topFitness);
-	}
-
-	public DoubleProperty topFitnessProperty()
-	{
-		return topFitness;
+		this.topFitness = topFitness;
 	}
 
 	/**
@@ -124,7 +133,7 @@ public class Species {
 	 */
 	public int getStaleness()
 	{
-		return staleness.get();
+		return staleness;
 	}
 
 	/**
@@ -136,12 +145,7 @@ public class Species {
 	 */
 	public void setStaleness(int staleness)
 	{
-		this.staleness.set(staleness);
-	}
-
-	public IntegerProperty stalenessProperty()
-	{
-		return staleness;
+		this.staleness = staleness;
 	}
 
 	/**
@@ -152,7 +156,7 @@ public class Species {
 	 */
 	public double getAverageFitness()
 	{
-		return averageFitness.get();
+		return averageFitness;
 	}
 
 	/**
@@ -163,12 +167,7 @@ public class Species {
 	 */
 	public void setAverageFitness(double averageFitness)
 	{
-		this.averageFitness.set(averageFitness);
-	}
-
-	public DoubleProperty averageFitnessProperty()
-	{
-		return averageFitness;
+		this.averageFitness = averageFitness;
 	}
 
 	/**
@@ -176,10 +175,9 @@ public class Species {
 	 * 
 	 * @return Anzahl der Genomes dieser Spezies
 	 */
-	public IntegerProperty countGenomesProperty()
+	public int getGenomeCount()
 	{
-		this.countGenomes.set(this.genomes.size());
-		return countGenomes;
+		return genomes.size();
 	}
 
 	/**
@@ -187,7 +185,7 @@ public class Species {
 	 * 
 	 * @return Liste der Netzwerke dieser Spezies
 	 */
-	public ObservableList<Genome> getGenomes()
+	public List<Genome> getGenomes()
 	{
 		return genomes;
 	}
@@ -197,9 +195,12 @@ public class Species {
 	 * 
 	 * @param genomes neue Liste von Netzwerken für diese Spezies
 	 */
-	public void setGenomes(ObservableList<Genome> genomes)
+	public void setGenomes(List<Genome> genomes)
 	{
 		this.genomes = genomes;
+		this.members.invalidate();
+		this.representative = null;
+		this.sorted = false;
 	}
 
 	/**
@@ -211,10 +212,15 @@ public class Species {
 	 */
 	public boolean addGenome(Genome genome)
 	{
-		if (!genomes.contains(genome))
-			return genomes.add(genome);
+		if (!members.add(genomes, genome))
+			return false;
+
+		if (representative != null
+			&& genome.getFitness() > representative.getFitness())
+			representative = genome;
+		sorted = false;
 
-		return false;
+		return true;
 	}
 
 	/**
@@ -226,7 +232,9 @@ public class Species {
 	 */
 	public boolean deleteGenome(Genome genome)
 	{
-		return genomes.remove(genome);
+		if (genome == representative)
+			representative = null;
+		return members.remove(genomes, genome);
 	}
 
 	/**
@@ -243,13 +251,34 @@ public class Species {
 		for (Genome gen : this.genomes)
 			sum += gen.getFitness();
 
-		this.averageFitness.set(sum / genomes.size());
+		this.averageFitness = sum / genomes.size();
+		this.representative = null;
 
-		return averageFitness.get();
+		return averageFitness;
 	}
 
 	/**
-	 * Entfernt die schlechtesten Netzwerke der Spezies.
+	 * Übernimmt die aktuellen Bewertungen der Netzwerke: sortiert sie einmal
+	 * absteigend nach Bewertung und berechnet die durchschnittliche Bewertung
+	 * (siehe {@link Leaderboard}). Bis zum nächsten Hinzufügen eines
+	 * Netzwerkes muss danach nicht mehr sortiert werden. Wird Bewertungen
+	 * außerhalb von {@link Pool#evaluateGenomes(Object...)} gesetzt, muss
+	 * diese Methode (bzw. {@link Pool#updateLeaderboard()}) danach aufgerufen
+	 * werden.
+	 * 
+	 * @return durchschnittliche Bewertung
+	 */
+	public double updateFitness()
+	{
+		this.genomes.sort(null);
+		this.sorted = true;
+
+		return this.calculateAverageFitness();
+	}
+
+	/**
+	 * Entfernt die schlechtesten Netzwerke der Spezies und berechnet die
+	 * durchschnittliche Bewertung der verbleibenden neu.
 	 * 
 	 * @param leaveOne Gibt an, ob die Hälfte oder alle bis auf ein Netzwerk
 	 *           entfernt werden
@@ -262,10 +291,112 @@ public class Species {
 		if (leaveOne)
 			keep = 1;
 
+		if (!this.sorted)
+			this.selectBest(keep);
+
+		/* entfernte Netzwerke werden nicht mehr referenziert */
+		this.genomes.subList(keep, this.genomes.size()).clear();
+		this.members.invalidate();
+		this.sorted = true;
+		this.calculateAverageFitness();
+	}
+
+	/*
+	 * Verschiebt die keep besten Netzwerke absteigend sortiert an den Anfang
+	 * der Liste, ohne alle zu sortieren: die Schwelle wird über Quickselect
+	 * bestimmt, danach werden nur die besten sortiert. Bei gleicher Bewertung
+	 * bleibt die bisherige Reihenfolge erhalten, das Ergebnis entspricht also
+	 * dem Anfang einer vollständigen (stabilen) Sortierung.
+	 */
+	private void selectBest(int keep)
+	{
+		int size = this.genomes.size();
+		if (keep >= size)
+		{
+			this.genomes.sort(null);
+			return;
+		}
+
+		double[] fitness = new double[size];
+		for (int i = 0; i < size; i++)
+			fitness[i] = this.genomes.get(i).getFitness();
+
+		double threshold = select(fitness, keep - 1);
+		int above = 0;
+		for (Genome gen : this.genomes)
+			if (gen.getFitness() > threshold)
+				above++;
+
+		/* Netzwerke auf der Schwelle nur bis keep, in bisheriger Reihenfolge */
+		int ties = keep - above;
+		int n = 0;
+		for (int i = 0; i < size; i++)
+		{
+			Genome gen = this.genomes.get(i);
+			double f = gen.getFitness();
+
+			if (f > threshold || f == threshold && ties-- > 0)
+				this.genomes.set(n++, gen);
+		}
+
+		this.genomes.subList(keep, size).clear();
 		this.genomes.sort(null);
+	}
 
-		this.genomes = FXCollections
-			.observableList(this.genomes.subList(0, keep));
+	/* k-größter Wert (ab 0) über Quickselect, values wird umsortiert */
+	private static double select(double[] values, int k)
+	{
+		int lo = 0;
+		int hi = values.length - 1;
+
+		while (lo < hi)
+		{
+			double pivot = values[(lo + hi) >>> 1];
+			int i = lo;
+			int j = hi;
+
+			while (i <= j)
+			{
+				while (values[i] > pivot)
+					i++;
+				while (values[j] < pivot)
+					j--;
+				if (i <= j)
+				{
+					double t = values[i];
+					values[i++] = values[j];
+					values[j--] = t;
+				}
+			}
+
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				break;
+		}
+
+		return values[k];
+	}
+
+	/**
+	 * Gibt das Netzwerk mit der höchsten Bewertung zurück, mit dem neue
+	 * Netzwerke verglichen werden. Es wird zwischengespeichert, bis sich die
+	 * Netzwerke oder deren Bewertungen ändern.
+	 * 
+	 * @return bestes Netzwerk oder <code>null</code>, wenn die Spezies leer
+	 *         ist
+	 */
+	public Genome getRepresentative()
+	{
+		if (representative == null)
+			for (Genome gen : this.genomes)
+				if (representative == null
+					|| gen.getFitness() > representative.getFitness())
+					representative = gen;
+
+		return representative;
 	}
 
 	/**
@@ -278,46 +409,60 @@ public class Species {
 	 */
 	public Genome breedChild()
 	{
-		Random rn = new Random();
+		return this.breedChild(Pool.getInstance().getRandomSource().current());
+	}
+
+	/**
+	 * Erzeugt ein neues Netzwerk auf Basis dieser Spezies (siehe
+	 * {@link #breedChild()}). Alle Zufallsentscheidungen werden aus
+	 * <code>random</code> gezogen. Die Spezies und ihre Netzwerke werden dabei
+	 * nicht verändert, so dass mehrere Threads gleichzeitig Kinder erzeugen
+	 * können.
+	 * 
+	 * @param random Zufallsquelle
+	 * @return neues Netzwerk
+	 */
+	public Genome breedChild(SplittableRandom random)
+	{
 		Genome child = null;
 
-		if (Math.random() < CrossOverChance.get() && genomes.size() > 1)
+		if (random.nextDouble() < CrossOverChance && genomes.size() > 1)
 		{
-			Genome parent1 = genomes.get(rn.nextInt(genomes.size()));
-			Genome parent2 = genomes.get(rn.nextInt(genomes.size()));
+			Genome parent1 = genomes.get(random.nextInt(genomes.size()));
+			Genome parent2 = genomes.get(random.nextInt(genomes.size()));
 
-			child = parent1.matchGenomes(parent2);
+			child = parent1.matchGenomes(parent2, random);
 		}
 		else
 		{
-			Genome parent1 = genomes.get(rn.nextInt(genomes.size()));
+			Genome parent1 = genomes.get(random.nextInt(genomes.size()));
 
 			child = parent1.copyGenome();
 		}
 
-		child.mutateGenome();
+		child.mutateGenome(random);
 
 		return child;
 	}
 
 	/**
 	 * Prüft, ob ein gegebenes Netzwerk ähnlich genug ist, um Teil des
-	 * Netzwerkes zu sein. Hierbei wird immer nur die Ähnlichkeit zu einem
-	 * Netzwerk der Species geprüft.
+	 * Netzwerkes zu sein. Hierbei wird immer nur die Ähnlichkeit zum besten
+	 * Netzwerk der Species geprüft ({@link #getRepresentative()}).
 	 * 
 	 * @param genome zu prüfende Netzwerk
 	 * @return Wahrheitswert, ob Netzwerk ähnlich genug ist
 	 */
 	public boolean isSameSpecies(Genome genome)
 	{
-		genomes.sort(null);
-		Genome speciesGenome = genomes.get(0);
+		Genome speciesGenome = this.getRepresentative();
 
-		double deltaD = genome.deltaStructure(speciesGenome)
-			* DeltaDisjoint.get();
-		double deltaW = genome.deltaWeight(speciesGenome) * DeltaWeight.get();
+		if (speciesGenome == null)
+			return false;
 
-		return ((deltaD + deltaW) < DeltaThreshold.get());
+		return CompatibilityDistance.isCompatible(genome.getGeneTable(),
+			speciesGenome.getGeneTable(), DeltaDisjoint, DeltaWeight,
+			DeltaThreshold);
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,463 @@
+package de.kaping.brain.model;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dynamische topologische Sortierung der Neuronen eines Netzwerkes nach
+ * Pearce und Kelly ("A Dynamic Topological Sort Algorithm for Directed
+ * Acyclic Graphs", 2006). Jedes Neuron besitzt eine Position, so dass alle
+ * Verbindungen von einer kleineren zu einer größeren Position verlaufen.
+ * <p>
+ * Beim Einfügen einer Verbindung, die bereits in Richtung der Sortierung
+ * verläuft, ist nichts zu tun. Ansonsten wird nur der Bereich zwischen den
+ * Positionen der beiden Neuronen durchsucht und neu sortiert. Wird dabei der
+ * Ursprung vom Ziel aus erreicht, so würde die Verbindung einen Zyklus bilden
+ * und wird abgelehnt.
+ * <p>
+ * Zusätzlich werden alle bestehenden Verbindungen in einer Hashtabelle
+ * gehalten, so dass {@link #hasConnection(Neuron, Neuron)} ohne Durchlauf
+ * über die Verbindungen auskommt.
+ * <p>
+ * Die Sortierung gehört zu genau einem Netzwerk und verändert keine Neuronen.
+ * Während {@link Pool#newGeneration()} verwendet jeder Thread eine einzige
+ * Sortierung für alle seine Kinder (siehe {@link PopulationArena}), die für
+ * jedes Kind über {@link #rebuild(Genome)} neu aufgebaut wird.
+ *
+ * @author MPreloaded
+ */
+public class TopologicalOrder {
+
+	private final Map<Neuron, Integer> ids;
+	private int size;
+
+	/* Netzwerk, für das die Sortierung zuletzt aufgebaut wurde */
+	private Genome genome;
+
+	/* Position jedes Neurons (Index über id) */
+	private int[] ord;
+
+	/* ausgehende und eingehende Verbindungen jedes Neurons */
+	private int[][] out;
+	private int[] outCount;
+	private int[][] in;
+	private int[] inCount;
+
+	/* bestehende Verbindungen als (Ursprung + 1) << 32 | Ziel, 0 ist frei */
+	private long[] links;
+	private int linkCount;
+
+	/* Hilfsspeicher für die Suche, wird wiederverwendet */
+	private boolean[] visited;
+	private int[] stack;
+	private int[] deltaF;
+	private int[] deltaB;
+	private int[] merged;
+	private long[] keys;
+
+	/**
+	 * Konstruktor
+	 */
+	public TopologicalOrder() {
+		this(16);
+	}
+
+	/**
+	 * Konstruktor mit erwarteter Anzahl Neuronen.
+	 *
+	 * @param capacity
+	 *           erwartete Anzahl Neuronen
+	 */
+	public TopologicalOrder(int capacity) {
+		super();
+		capacity = Math.max(capacity, 4);
+		this.ids = new IdentityHashMap<Neuron, Integer>(capacity);
+		this.size = 0;
+		this.ord = new int[capacity];
+		this.out = new int[capacity][];
+		this.outCount = new int[capacity];
+		this.in = new int[capacity][];
+		this.inCount = new int[capacity];
+		this.visited = new boolean[capacity];
+		this.stack = new int[capacity];
+		this.deltaF = new int[capacity];
+		this.deltaB = new int[capacity];
+		this.merged = new int[capacity];
+		this.keys = new long[capacity];
+		this.links = new long[Integer.highestOneBit(capacity) * 4];
+		this.linkCount = 0;
+	}
+
+	/**
+	 * Erzeugt die Sortierung für ein bestehendes Netzwerk. Verbindungen, die
+	 * einen Zyklus bilden würden, werden nicht übernommen.
+	 *
+	 * @param genome
+	 *           Netzwerk
+	 * @return Sortierung der Neuronen des Netzwerkes
+	 */
+	public static TopologicalOrder of(Genome genome) {
+		TopologicalOrder order = new TopologicalOrder(
+			genome.getNeurons().size());
+		order.rebuild(genome);
+
+		return order;
+	}
+
+	/**
+	 * Verwirft die bisherige Sortierung und baut sie für ein anderes Netzwerk
+	 * neu auf. Die Arrays werden dabei weiterverwendet.
+	 *
+	 * @param genome
+	 *           Netzwerk
+	 */
+	public void rebuild(Genome genome) {
+		List<Neuron> neurons = genome.getNeurons();
+		GeneTable genes = genome.getGeneTable();
+
+		for (int i = 0; i < size; i++) {
+			outCount[i] = 0;
+			inCount[i] = 0;
+		}
+		ids.clear();
+		size = 0;
+		Arrays.fill(links, 0L);
+		linkCount = 0;
+		this.genome = genome;
+
+		for (Neuron n : neurons)
+			this.addNeuron(n);
+		for (int i = 0; i < genes.size(); i++) {
+			Neuron origin = neurons.get(genes.getSource(i));
+			Neuron into = neurons.get(genes.getTarget(i));
+
+			/* auch Verbindungen, die einen Zyklus bilden, bestehen */
+			if (!this.addConnection(origin, into) && origin != into)
+				this.link(ids.get(origin), ids.get(into));
+		}
+	}
+
+	/**
+	 * Prüft, ob die Sortierung zuletzt für das angegebene Netzwerk aufgebaut
+	 * wurde.
+	 *
+	 * @param genome
+	 *           Netzwerk
+	 * @return Wahrheitswert, ob die Sortierung zum Netzwerk gehört
+	 */
+	public boolean belongsTo(Genome genome) {
+		return this.genome == genome;
+	}
+
+	/**
+	 * Fügt ein Neuron am Ende der Sortierung ein.
+	 *
+	 * @param neuron
+	 *           neues Neuron
+	 * @return Wahrheitswert, ob das Neuron neu hinzugefügt wurde
+	 */
+	public boolean addNeuron(Neuron neuron) {
+		if (ids.containsKey(neuron))
+			return false;
+
+		if (size == ord.length)
+			this.grow();
+
+		ids.put(neuron, size);
+		ord[size] = size;
+		size++;
+
+		return true;
+	}
+
+	/**
+	 * Prüft, ob eine Verbindung einen Zyklus bilden würde, und fügt sie
+	 * andernfalls in die Sortierung ein. Unbekannte Neuronen werden vorher
+	 * hinzugefügt.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @return Wahrheitswert, ob die Verbindung eingefügt wurde (kein Zyklus)
+	 */
+	public boolean addConnection(Neuron origin, Neuron into) {
+		if (origin == into)
+			return false;
+
+		this.addNeuron(origin);
+		this.addNeuron(into);
+
+		int x = ids.get(origin);
+		int y = ids.get(into);
+		int lb = ord[y];
+		int ub = ord[x];
+
+		if (lb < ub) {
+			int f = this.searchForward(y, ub);
+
+			if (f < 0)
+				return false;
+
+			int b = this.searchBackward(x, lb);
+			this.reorder(f, b);
+		}
+
+		out[x] = append(out[x], outCount[x]++, y);
+		in[y] = append(in[y], inCount[y]++, x);
+		this.link(x, y);
+
+		return true;
+	}
+
+	/**
+	 * Prüft, ob eine Verbindung zwischen zwei Neuronen (in dieser Richtung)
+	 * besteht.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @return Wahrheitswert, ob die Verbindung besteht
+	 */
+	public boolean hasConnection(Neuron origin, Neuron into) {
+		Integer x = ids.get(origin);
+		Integer y = ids.get(into);
+
+		if (x == null || y == null)
+			return false;
+
+		long key = key(x, y);
+		int mask = links.length - 1;
+
+		for (int i = hash(key) & mask; links[i] != 0L; i = (i + 1) & mask)
+			if (links[i] == key)
+			return true;
+
+		return false;
+	}
+
+	/**
+	 * Prüft, ob eine Verbindung einen Zyklus bilden würde, ohne die Sortierung
+	 * zu verändern.
+	 *
+	 * @param origin
+	 *           Ursprung der Verbindung
+	 * @param into
+	 *           Ziel der Verbindung
+	 * @return Wahrheitswert, ob ein Zyklus entstehen würde
+	 */
+	public boolean wouldCreateCycle(Neuron origin, Neuron into) {
+		if (origin == into)
+			return true;
+
+		Integer x = ids.get(origin);
+		Integer y = ids.get(into);
+
+		if (x == null || y == null || ord[y] > ord[x])
+			return false;
+
+		int f = this.searchForward(y, ord[x]);
+
+		if (f < 0)
+			return true;
+
+		for (int i = 0; i < f; i++)
+			visited[deltaF[i]] = false;
+
+		return false;
+	}
+
+	/**
+	 * Gibt die Position eines Neurons in der Sortierung zurück.
+	 *
+	 * @param neuron
+	 *           Neuron
+	 * @return Position oder <code>-1</code>, wenn das Neuron unbekannt ist
+	 */
+	public int getPosition(Neuron neuron) {
+		Integer id = ids.get(neuron);
+
+		return (id == null) ? -1 : ord[id];
+	}
+
+	/**
+	 * Gibt die Anzahl der sortierten Neuronen zurück.
+	 *
+	 * @return Anzahl Neuronen
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Tiefensuche vorwärts ab start über alle Neuronen mit Position < ub.
+	 * Gibt die Anzahl der besuchten Neuronen (in deltaF) zurück, oder deren
+	 * negative Anzahl, wenn die Position ub erreicht wird (Zyklus). Bei einem
+	 * Zyklus werden die Markierungen bereits zurückgesetzt.
+	 */
+	private int searchForward(int start, int ub) {
+		int count = 0;
+		int top = 0;
+
+		visited[start] = true;
+		deltaF[count++] = start;
+		stack[top++] = start;
+
+		while (top > 0) {
+			int n = stack[--top];
+
+			for (int i = 0; i < outCount[n]; i++) {
+				int w = out[n][i];
+
+				if (ord[w] == ub) {
+					for (int k = 0; k < count; k++)
+						visited[deltaF[k]] = false;
+					return -count;
+				}
+
+				if (!visited[w] && ord[w] < ub) {
+					visited[w] = true;
+					deltaF[count++] = w;
+					stack[top++] = w;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/*
+	 * Tiefensuche rückwärts ab start über alle Neuronen mit Position > lb.
+	 * Gibt die Anzahl der besuchten Neuronen (in deltaB) zurück.
+	 */
+	private int searchBackward(int start, int lb) {
+		int count = 0;
+		int top = 0;
+
+		visited[start] = true;
+		deltaB[count++] = start;
+		stack[top++] = start;
+
+		while (top > 0) {
+			int n = stack[--top];
+
+			for (int i = 0; i < inCount[n]; i++) {
+				int w = in[n][i];
+
+				if (!visited[w] && ord[w] > lb) {
+					visited[w] = true;
+					deltaB[count++] = w;
+					stack[top++] = w;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/*
+	 * Verteilt die bisherigen Positionen aller besuchten Neuronen neu: zuerst
+	 * alle rückwärts gefundenen, dann alle vorwärts gefundenen, jeweils in
+	 * ihrer bisherigen Reihenfolge.
+	 */
+	private void reorder(int f, int b) {
+		sortByOrd(deltaF, f);
+		sortByOrd(deltaB, b);
+
+		int n = 0;
+		for (int i = 0; i < b; i++)
+			merged[n++] = ord[deltaB[i]];
+		for (int i = 0; i < f; i++)
+			merged[n++] = ord[deltaF[i]];
+		Arrays.sort(merged, 0, n);
+
+		n = 0;
+		for (int i = 0; i < b; i++) {
+			visited[deltaB[i]] = false;
+			ord[deltaB[i]] = merged[n++];
+		}
+		for (int i = 0; i < f; i++) {
+			visited[deltaF[i]] = false;
+			ord[deltaF[i]] = merged[n++];
+		}
+	}
+
+	/* Sortiert Neuronen nach ihrer aktuellen Position */
+	private void sortByOrd(int[] nodes, int count) {
+		for (int i = 0; i < count; i++)
+			keys[i] = ((long) ord[nodes[i]] << 32) | nodes[i];
+
+		Arrays.sort(keys, 0, count);
+
+		for (int i = 0; i < count; i++)
+			nodes[i] = (int) keys[i];
+	}
+
+	/* Trägt eine Verbindung in die Hashtabelle ein */
+	private void link(int x, int y) {
+		if (2 * (linkCount + 1) > links.length)
+			this.growLinks();
+
+		long key = key(x, y);
+		int mask = links.length - 1;
+		int i = hash(key) & mask;
+
+		while (links[i] != 0L) {
+			if (links[i] == key)
+				return;
+			i = (i + 1) & mask;
+		}
+
+		links[i] = key;
+		linkCount++;
+	}
+
+	private void growLinks() {
+		long[] old = links;
+
+		links = new long[old.length * 2];
+		linkCount = 0;
+		for (long key : old)
+			if (key != 0L)
+			this.link((int) (key >>> 32) - 1, (int) key);
+	}
+
+	private static long key(int x, int y) {
+		return ((long) (x + 1) << 32) | y;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+
+		return (int) (h >>> 32);
+	}
+
+	private void grow() {
+		int capacity = ord.length * 2;
+
+		ord = Arrays.copyOf(ord, capacity);
+		out = Arrays.copyOf(out, capacity);
+		outCount = Arrays.copyOf(outCount, capacity);
+		in = Arrays.copyOf(in, capacity);
+		inCount = Arrays.copyOf(inCount, capacity);
+		visited = Arrays.copyOf(visited, capacity);
+		stack = new int[capacity];
+		deltaF = new int[capacity];
+		deltaB = new int[capacity];
+		merged = new int[capacity];
+		keys = new long[capacity];
+	}
+
+	private static int[] append(int[] list, int count, int value) {
+		if (list == null)
+			list = new int[4];
+		else if (count == list.length)
+			list = Arrays.copyOf(list, count * 2);
+
+		list[count] = value;
+		return list;
+	}
+}
@@ -1,16 +1,16 @@
 package de.kaping.brain.view;
 
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.kaping.brain.MainApp;
 import de.kaping.brain.model.Gene;
+import de.kaping.brain.model.GenerationStats;
 import de.kaping.brain.model.Genome;
+import de.kaping.brain.model.GenomeHistory;
 import de.kaping.brain.model.Neuron;
 import de.kaping.brain.model.Species;
-import de.kaping.brain.model.SpeciesHistory;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
@@ -23,6 +23,9 @@ import javafx.scene.control.TableView;
 import javafx.scene.paint.Color;
 
 public class BrainOverviewController {
+	// Anzahl Generationen, die der Fitness-Verlauf höchstens zeigt
+	private static final int HISTORY_WINDOW = 200;
+
 	// Species Table:
 	@FXML
 	private TableView<Species> poolTable;
@@ -81,6 +84,7 @@ public class BrainOverviewController {
 
 	// Reference to the main application.
 	private MainApp mainApp;
+	private PoolAdapter adapter;
 
 	/**
 	 * The constructor. The constructor is called before the initialize()
@@ -97,11 +101,11 @@ public class BrainOverviewController {
 	private void initialize() {
 		// Initialize the person table with the two columns.
 		speciesColumn.setCellValueFactory(
-			cellData -> cellData.getValue().getIDProperty().asString());
-		genomeColumn.setCellValueFactory(
-			cellData -> cellData.getValue().countGenomesProperty().asString());
+			cellData -> PoolAdapter.cell(cellData.getValue().getID()));
+		genomeColumn.setCellValueFactory(cellData -> PoolAdapter
+			.cell(cellData.getValue().getGenomeCount()));
 		genomeDetailColumn.setCellValueFactory(
-			cellData -> cellData.getValue().getIDProperty().asString());
+			cellData -> PoolAdapter.cell(cellData.getValue().getID()));
 		// Clear person details.
 		showSpeciesDetails(null);
 
@@ -135,17 +139,20 @@ public class BrainOverviewController {
 			genesLabel.setText("");
 			fitnessLabel.setText(String.valueOf(species.getAverageFitness()));
 			stalenessLabel.setText(String.valueOf(species.getStaleness()));
-			genomeTable.setItems(species.getGenomes());
+			genomeTable.setItems(adapter.genomesOf(species));
 			// History anzeigen
 			fitHistoryChart.getData().clear();
 			XYChart.Series fitSeries = new XYChart.Series<>();
 			fitSeries.setName("Avg. Fitness");
-			int c = 0;
-			double[] histArray = SpeciesHistory.INSTANCE.getHistory(species);
-			if (histArray != null) {
-			for (Double d : histArray) {
-				fitSeries.getData().add(new XYChart.Data("G" + (c + 1), d));
-				c++;
+			// nur die letzten Generationen, direkt aus der History gelesen
+			GenerationStats.Series history = mainApp.getStatistics()
+				.getSeries(species.getID());
+			if (history.size() > 0) {
+			int last = history.getGeneration(history.size() - 1);
+			for (int c = history.indexOf(last - HISTORY_WINDOW + 1); c < history
+				.size(); c++) {
+				fitSeries.getData().add(new XYChart.Data(
+					"G" + history.getGeneration(c), history.getAverageFitness(c)));
 			}
 			fitHistoryChart.getData().add(fitSeries);
 			}
@@ -168,6 +175,7 @@ public class BrainOverviewController {
 	 * 
 	 * @param genome
 	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private void showGenomeDetails(Genome genome) {
 		if (genome != null) {
 			// Labels mit Daten füllen, Genome zur Auswahl anzeigen
@@ -177,26 +185,27 @@ public class BrainOverviewController {
 			genesLabel.setText(String.valueOf(genome.getGenes().size()));
 			fitnessLabel.setText(String.valueOf(genome.getFitness()));
 			renderGenome(genome, infoCanvas);
+			// History anzeigen
+			fitHistoryChart.getData().clear();
+			GenomeHistory history = mainApp.getGenomeHistory();
+			if (history != null) {
+			int[] generations = new int[history.getDepth()];
+			double[] fitness = new double[history.getDepth()];
+			int n = history.getHistory(genome.getID(), generations, fitness);
+			if (n > 0) {
+			XYChart.Series fitSeries = new XYChart.Series<>();
+			fitSeries.setName("Fitness");
+			for (int c = 0; c < n; c++) {
+				fitSeries.getData()
+					.add(new XYChart.Data("G" + generations[c], fitness[c]));
+			}
+			fitHistoryChart.getData().add(fitSeries);
+			}
+			}
 
 		}
 	}
 
-	/**
-	 * Sortiert die NeuronenListe nach Type
-	 * (Undefined->Bias->Input->hidden->Output)
-	 * 
-	 * @param neurons
-	 *           Liste, welche sortiert werden soll
-	 */
-	private void sortNeurons(ObservableList<Neuron> neurons) {
-		neurons.sort(new Comparator<Neuron>() {
-			@Override
-			public int compare(Neuron o1, Neuron o2) {
-			return o1.getType().compareTo(o2.getType());
-			}
-		});
-	}
-
 	/**
 	 * Rendert ein Genom und zeigt es auf dem Canvas an, das Canvas sollte
 	 * Quadratisch sein
@@ -216,11 +225,11 @@ public class BrainOverviewController {
 
 		// Neuronen so sortierem, dass sie in der Reihenfolge der Types
 		// angezeigt werden (undefined, bias, input, hidden, output)
-		sortNeurons(genome.getNeurons());
+		List<Neuron> neurons = PoolAdapter.sortedNeurons(genome);
 
 		Map<Neuron, Point2D> GridPos = new HashMap<Neuron, Point2D>();
 
-		for (Neuron n : genome.getNeurons()) {
+		for (Neuron n : neurons) {
 			// Verschiedene Typen von Neuronen, werden eingefärbt
 			switch (n.getType()) {
 			case BIAS:
@@ -293,14 +302,15 @@ public class BrainOverviewController {
 	 */
 	public void setMainApp(MainApp mainApp) {
 		this.mainApp = mainApp;
+		this.adapter = mainApp.getPoolAdapter();
 
 		// Bind Properties to Labels
 		// Aktuelle Generation anzeigen
 		generationLabel.textProperty()
-			.bind(mainApp.myPool.getGenerationProperty().asString());
+			.bind(adapter.generationProperty().asString());
 
 		// Add observable list data to the table
-		poolTable.setItems(mainApp.getPoolSpecies());
+		poolTable.setItems(adapter.getSpecies());
 	}
 
 	/**
@@ -0,0 +1,126 @@
+package de.kaping.brain.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.kaping.brain.model.Genome;
+import de.kaping.brain.model.Neuron;
+import de.kaping.brain.model.Pool;
+import de.kaping.brain.model.Species;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+/**
+ * Beobachtbare Sicht der Oberfläche auf einen {@link Pool}. Das Model selbst
+ * besteht nur aus einfachen Feldern und Listen und löst während der Evolution
+ * keine Ereignisse aus. Die Oberfläche fragt stattdessen nach jeder
+ * Generation {@link #refresh()} an und erzeugt beobachtbare Listen und Werte
+ * nur für das, was gerade angezeigt wird: die Liste der Spezies, die
+ * Netzwerke der ausgewählten Spezies und die Zellen der Tabellen.
+ *
+ * @author MPreloaded
+ */
+public class PoolAdapter {
+
+	private final Pool pool;
+	private final ObservableList<Species> species;
+	private final IntegerProperty generation;
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param pool
+	 *           anzuzeigender Pool
+	 */
+	public PoolAdapter(Pool pool) {
+		super();
+		this.pool = pool;
+		this.species = FXCollections.observableArrayList();
+		this.generation = new SimpleIntegerProperty();
+
+		this.refresh();
+	}
+
+	/**
+	 * Übernimmt den aktuellen Stand des Pools in die beobachtbaren Listen und
+	 * Werte. Muss nach jeder Generation aufgerufen werden.
+	 */
+	public void refresh() {
+		species.setAll(pool.getSpecies());
+		generation.set(pool.getGeneration());
+	}
+
+	/**
+	 * Gibt den Pool zurück.
+	 *
+	 * @return Pool
+	 */
+	public Pool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gibt die Spezies des Pools zum Zeitpunkt des letzten
+	 * {@link #refresh()} zurück.
+	 *
+	 * @return beobachtbare Liste der Spezies
+	 */
+	public ObservableList<Species> getSpecies() {
+		return species;
+	}
+
+	/**
+	 * Gibt die Generationsnummer zum Zeitpunkt des letzten {@link #refresh()}
+	 * zurück.
+	 *
+	 * @return Generationsnummer
+	 */
+	public ReadOnlyIntegerProperty generationProperty() {
+		return generation;
+	}
+
+	/**
+	 * Erzeugt eine beobachtbare Kopie der Netzwerke einer Spezies für die
+	 * Anzeige.
+	 *
+	 * @param species
+	 *           ausgewählte Spezies
+	 * @return beobachtbare Liste der Netzwerke
+	 */
+	public ObservableList<Genome> genomesOf(Species species) {
+		return FXCollections.observableArrayList(species.getGenomes());
+	}
+
+	/**
+	 * Gibt die Neuronen eines Netzwerkes in der Reihenfolge ihrer Typen
+	 * (Undefined-&gt;Bias-&gt;Input-&gt;Hidden-&gt;Output) zurück. Das Netzwerk
+	 * selbst wird nicht verändert.
+	 *
+	 * @param genome
+	 *           anzuzeigendes Netzwerk
+	 * @return sortierte Kopie der Neuronen
+	 */
+	public static List<Neuron> sortedNeurons(Genome genome) {
+		List<Neuron> neurons = new ArrayList<Neuron>(genome.getNeurons());
+		neurons.sort((o1, o2) -> o1.getType().compareTo(o2.getType()));
+
+		return neurons;
+	}
+
+	/**
+	 * Zellwert für eine Zahl, die sich bis zum nächsten {@link #refresh()}
+	 * nicht ändert.
+	 *
+	 * @param value
+	 *           anzuzeigender Wert
+	 * @return unveränderlicher Zellwert
+	 */
+	public static ObservableValue<String> cell(Number value) {
+		return new ReadOnlyStringWrapper(String.valueOf(value));
+	}
+}
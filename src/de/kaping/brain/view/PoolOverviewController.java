@@ -1,7 +1,7 @@
 package de.kaping.brain.view;
 
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.kaping.brain.MainApp;
@@ -9,7 +9,6 @@ import de.kaping.brain.model.Gene;
 import de.kaping.brain.model.Genome;
 import de.kaping.brain.model.Neuron;
 import de.kaping.brain.model.Species;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
@@ -53,6 +52,7 @@ public class PoolOverviewController {
 
 	// Reference to the main application.
 	private MainApp mainApp;
+	private PoolAdapter adapter;
 
 	/**
 	 * The constructor. The constructor is called before the initialize()
@@ -69,11 +69,11 @@ public class PoolOverviewController {
 	private void initialize() {
 		// Initialize the person table with the two columns.
 		speciesColumn.setCellValueFactory(
-			cellData -> cellData.getValue().getIDProperty().asString());
-		genomeColumn.setCellValueFactory(
-			cellData -> cellData.getValue().countGenomesProperty().asString());
+			cellData -> PoolAdapter.cell(cellData.getValue().getID()));
+		genomeColumn.setCellValueFactory(cellData -> PoolAdapter
+			.cell(cellData.getValue().getGenomeCount()));
 		genomeDetailColumn.setCellValueFactory(
-			cellData -> cellData.getValue().getIDProperty().asString());
+			cellData -> PoolAdapter.cell(cellData.getValue().getID()));
 		// Clear person details.
 		showSpeciesDetails(null);
 
@@ -107,7 +107,7 @@ public class PoolOverviewController {
 			fitnessCodeLabel
 				.setText(String.valueOf(species.getAverageFitness()));
 			stalenessLabel.setText(String.valueOf(species.getStaleness()));
-			genomeTable.setItems(species.getGenomes());
+			genomeTable.setItems(adapter.genomesOf(species));
 		} else {
 			// Labels und Listen clearen
 			headLabel.setText("");
@@ -137,22 +137,6 @@ public class PoolOverviewController {
 		}
 	}
 
-	/**
-	 * Sortiert die NeuronenListe nach Type
-	 * (Undefined->Bias->Input->hidden->Output)
-	 * 
-	 * @param neurons
-	 *           Liste, welche sortiert werden soll
-	 */
-	private void sortNeurons(ObservableList<Neuron> neurons) {
-		neurons.sort(new Comparator<Neuron>() {
-			@Override
-			public int compare(Neuron o1, Neuron o2) {
-			return o1.getType().compareTo(o2.getType());
-			}
-		});
-	}
-
 	/**
 	 * Rendert ein Genom und zeigt es auf dem Canvas an, das Canvas sollte
 	 * Quadratisch sein
@@ -172,11 +156,11 @@ public class PoolOverviewController {
 
 		// Neuronen so sortierem, dass sie in der Reihenfolge der Types
 		// angezeigt werden (undefined, bias, input, hidden, output)
-		sortNeurons(genome.getNeurons());
+		List<Neuron> neurons = PoolAdapter.sortedNeurons(genome);
 
 		Map<Neuron, Point2D> GridPos = new HashMap<Neuron, Point2D>();
 
-		for (Neuron n : genome.getNeurons()) {
+		for (Neuron n : neurons) {
 			// Verschiedene Typen von Neuronen, werden eingefärbt
 			switch (n.getType()) {
 			case BIAS:
@@ -236,14 +220,15 @@ public class PoolOverviewController {
 	 */
 	public void setMainApp(MainApp mainApp) {
 		this.mainApp = mainApp;
+		this.adapter = mainApp.getPoolAdapter();
 
 		// Bind Properties to Labels
 		// Aktuelle Generation anzeigen
 		generationLabel.textProperty()
-			.bind(mainApp.myPool.getGenerationProperty().asString());
+			.bind(adapter.generationProperty().asString());
 
 		// Add observable list data to the table
-		poolTable.setItems(mainApp.getPoolSpecies());
+		poolTable.setItems(adapter.getSpecies());
 	}
 
 	/**
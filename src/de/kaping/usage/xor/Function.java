@@ -1,19 +1,26 @@
 package de.kaping.usage.xor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import de.kaping.brain.model.AbstractFunction;
+import de.kaping.brain.model.EvaluationContext;
 import de.kaping.brain.model.Genome;
 import de.kaping.brain.model.Neuron;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 
 public class Function extends AbstractFunction {
 
 	private static Logger log = LogManager.getLogger();
 	private static Function instance;
 
+	/* Testfälle der XOR-Funktion */
+	private static final double[][] INPUTS = { { 0, 0 }, { 0, 1 }, { 1, 0 },
+		{ 1, 1 } };
+	private static final double[] OUTPUTS = { 0, 1, 1, 0 };
+
 	/**
 	 * args Stelle 0 sollte den Pointer auf neurons beinhalten.
 	 */
@@ -21,10 +28,10 @@ public class Function extends AbstractFunction {
 	@Override
 	public double evaluateNetwork(Genome genome, Object... args) {
 		double fit = 0.;
-		ObservableList<Neuron> neurons = FXCollections.observableArrayList();
+		List<Neuron> neurons = new ArrayList<Neuron>();
 
 		try {
-			neurons = (ObservableList<Neuron>) args[0];
+			neurons = (List<Neuron>) args[0];
 		} catch (Exception e) {
 			log.error("Wrong Paramter in evluateNetwork: " + e);
 		}
@@ -37,9 +44,34 @@ public class Function extends AbstractFunction {
 		return fit;
 	}
 
-	private double genomeTest(Genome g, ObservableList<Neuron> neurons, 
+	/**
+	 * Bewertung über die Puffer des Kontextes, kann parallel laufen.
+	 */
+	@Override
+	public double evaluate(Genome genome, EvaluationContext context) {
+		double[] in = context.getInputs();
+		double[] out = context.getOutputs();
+		double fit = 0.;
+
+		for (int i = 0; i < OUTPUTS.length; i++) {
+			in[0] = INPUTS[i][0];
+			in[1] = INPUTS[i][1];
+
+			context.activate(genome);
+
+			fit += score(out[0], OUTPUTS[i]);
+		}
+
+		return fit;
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	private double genomeTest(Genome g, List<Neuron> neurons, 
 								double in1, double in2, double out1) {
-		double result = 0.;
 		double outG   = 0.;
 
 		neurons.get(0).setValue(in1);
@@ -49,7 +81,11 @@ public class Function extends AbstractFunction {
 		
 		outG = neurons.get(3).getValue();
 		
-		result = Math.abs(outG - out1) <= 0.04 ? 0.04 : Math.abs(outG - out1);
+		return score(outG, out1);
+	}
+
+	private double score(double outG, double out1) {
+		double result = Math.abs(outG - out1) <= 0.04 ? 0.04 : Math.abs(outG - out1);
 
 		return 1 / result;
 	}